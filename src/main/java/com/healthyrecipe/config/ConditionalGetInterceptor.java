@@ -0,0 +1,49 @@
+package com.healthyrecipe.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.function.Function;
+
+/**
+ * Answers conditional GETs before the handler runs. The ETag of the requested resource
+ * is computed up front (from version counters, not from the response body); a matching
+ * {@code If-None-Match} gets 304 and the handler never loads anything. Otherwise the
+ * ETag is set on the response and the handler proceeds.
+ *
+ * The ETag must be taken before the handler reads its data: a change landing in between
+ * then only makes the tag older than the body, which costs the client a refetch rather
+ * than a stale 304. A request the ETag function cannot tag (it returns null) is
+ * passed to the handler unchecked.
+ */
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+    
+    // Clients may store responses but must revalidate them on every use
+    private static final String CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+    
+    private final Function<HttpServletRequest, String> eTags;
+    
+    public ConditionalGetInterceptor(Function<HttpServletRequest, String> eTags) {
+        this.eTags = eTags;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        
+        String eTag = eTags.apply(request);
+        if (eTag == null) {
+            return true;
+        }
+        
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        // Sets the ETag header, and the 304 status when If-None-Match matches
+        return !new ServletWebRequest(request, response).checkNotModified(eTag);
+    }
+}
@@ -1,13 +1,24 @@
 package com.healthyrecipe.config;
 
+import com.healthyrecipe.service.CatalogVersions;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    @Autowired
+    private CatalogVersions catalogVersions;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Serve static resources
@@ -29,4 +40,43 @@ public class WebConfig implements WebMvcConfigurer {
         // Forward all non-API requests to index.html for SPA routing
         registry.addViewController("/").setViewName("forward:/index.html");
     }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Conditional GET: recipe details are tagged with the recipe's version...
+        registry.addInterceptor(new ConditionalGetInterceptor(request -> {
+                    @SuppressWarnings("unchecked")
+                    Map<String, String> variables = (Map<String, String>) request.getAttribute(
+                            HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+                    try {
+                        return catalogVersions.recipeETag(Long.valueOf(variables.get("id")));
+                    } catch (NumberFormatException e) {
+                        // Too many digits for a recipe id; the handler answers it
+                        return null;
+                    }
+                }))
+                .addPathPatterns("/api/recipes/{id:\\d+}");
+
+        // ...and listings that look the same to every user with the catalog version
+        registry.addInterceptor(new ConditionalGetInterceptor(
+                        request -> catalogVersions.catalogETag(normalizedListing(request))))
+                .addPathPatterns("/api/recipes/public", "/api/recipes/search", "/api/recipes/category",
+                        "/api/recipes/dietary-tags", "/api/recipes/calories", "/api/recipes/quick",
+                        "/api/recipes/difficulty", "/api/recipes/query", "/api/recipes/pantry",
+                        "/api/recipes/top-rated", "/api/recipes/latest", "/api/recipes/most-favorited",
+                        "/api/recommendations/fitness-goal", "/api/recommendations/quick",
+                        "/api/recommendations/healthy", "/api/recommendations/beginner",
+                        "/api/recommendations/allergy-free", "/api/recommendations/similar/*");
+    }
+
+    // Path and parameters ordered by name, so the same listing gets the same ETag however its URL is written
+    private static String normalizedListing(HttpServletRequest request) {
+        StringBuilder listing = new StringBuilder(request.getRequestURI());
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+            for (String value : values) {
+                listing.append('\0').append(name).append('=').append(value);
+            }
+        });
+        return listing.toString();
+    }
 }
\ No newline at end of file
@@ -1,18 +1,28 @@
 package com.healthyrecipe.controller;
 
+import com.healthyrecipe.dto.recipe.RecipeImportReport;
 import com.healthyrecipe.entity.Recipe;
 import com.healthyrecipe.entity.User;
 import com.healthyrecipe.repository.UserRepository;
+import com.healthyrecipe.security.UserPrincipalCache;
+import com.healthyrecipe.service.RecipeCache;
+import com.healthyrecipe.service.RecipeExportService;
+import com.healthyrecipe.service.RecipeImportService;
 import com.healthyrecipe.service.RecipeService;
+import com.healthyrecipe.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -20,12 +30,30 @@ import java.util.List;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
     
+    // Largest user page returned, so a single request cannot load the whole user table
+    private static final int MAX_USER_PAGE_SIZE = 100;
+    
     @Autowired
     private RecipeService recipeService;
     
+    @Autowired
+    private RecipeImportService recipeImportService;
+    
+    @Autowired
+    private RecipeExportService recipeExportService;
+    
+    @Autowired
+    private UserService userService;
+    
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserPrincipalCache principalCache;
+    
+    @Autowired
+    private RecipeCache recipeCache;
+    
     @GetMapping("/recipes/pending")
     public ResponseEntity<Page<Recipe>> getPendingRecipes(
             @RequestParam(defaultValue = "0") int page,
@@ -56,10 +84,70 @@ public class AdminController {
         }
     }
     
+    /**
+     * Bulk-imports recipes from an NDJSON ({@code application/x-ndjson}) or CSV
+     * ({@code text/csv}) request body. The body is streamed, so catalogs of any size can
+     * be posted in one request.
+     */
+    @PostMapping(value = "/recipes/import", consumes = {RecipeImportService.NDJSON, RecipeImportService.CSV})
+    public ResponseEntity<?> importRecipes(HttpServletRequest request) {
+        try {
+            RecipeImportReport report = recipeImportService.importRecipes(
+                    request.getInputStream(), request.getContentType());
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error importing recipes: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Streams every approved recipe, with ingredients and nutrition, as NDJSON. The
+     * output can be posted back to {@code /recipes/import}.
+     */
+    @GetMapping(value = "/recipes/export", produces = RecipeImportService.NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportRecipes() {
+        StreamingResponseBody body = recipeExportService::exportApprovedRecipes;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(RecipeImportService.NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"recipes.ndjson\"")
+                .body(body);
+    }
+    
+    // Size, hit/miss and eviction counters of the recipe detail and listing page caches
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, RecipeCache.Stats>> getCacheStats() {
+        return ResponseEntity.ok(recipeCache.getStats());
+    }
+    
+    // User listings are paged by `page`/`size`, or by keyset when `after` is given (empty for the first page)
+    
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userRepository.findAll();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<?> getAllUsers(
+            @RequestParam(required = false) User.Role role,
+            @RequestParam(required = false) User.AccountStatus status,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        return listUsers(role, status, name, after, page, size);
+    }
+    
+    /**
+     * Streams every user matching the optional filters as NDJSON, with dietary
+     * preferences and allergies. Memory use does not depend on the number of users.
+     */
+    @GetMapping(value = "/users/export", produces = RecipeImportService.NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(required = false) User.Role role,
+            @RequestParam(required = false) User.AccountStatus status,
+            @RequestParam(required = false) String name) {
+        
+        StreamingResponseBody body = output -> userService.exportUsers(role, status, name, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(RecipeImportService.NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson\"")
+                .body(body);
     }
     
     @PutMapping("/users/{id}/status")
@@ -71,7 +159,8 @@ public class AdminController {
                     .orElseThrow(() -> new RuntimeException("User not found"));
             
             user.setStatus(status);
-            userRepository.save(user);
+            userService.saveUser(user);
+            principalCache.invalidate(user.getUsername());
             
             return ResponseEntity.ok(user);
         } catch (Exception e) {
@@ -88,7 +177,8 @@ public class AdminController {
                     .orElseThrow(() -> new RuntimeException("User not found"));
             
             user.setRole(role);
-            userRepository.save(user);
+            userService.saveUser(user);
+            principalCache.invalidate(user.getUsername());
             
             return ResponseEntity.ok(user);
         } catch (Exception e) {
@@ -97,20 +187,46 @@ public class AdminController {
     }
     
     @GetMapping("/users/search")
-    public ResponseEntity<List<User>> searchUsers(@RequestParam String name) {
-        List<User> users = userRepository.findByNameContaining(name);
-        return ResponseEntity.ok(users);
+    public ResponseEntity<?> searchUsers(
+            @RequestParam String name,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        return listUsers(null, null, name, after, page, size);
     }
     
     @GetMapping("/users/by-role")
-    public ResponseEntity<List<User>> getUsersByRole(@RequestParam User.Role role) {
-        List<User> users = userRepository.findByRole(role);
-        return ResponseEntity.ok(users);
+    public ResponseEntity<?> getUsersByRole(
+            @RequestParam User.Role role,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        return listUsers(role, null, null, after, page, size);
     }
     
     @GetMapping("/users/by-status")
-    public ResponseEntity<List<User>> getUsersByStatus(@RequestParam User.AccountStatus status) {
-        List<User> users = userRepository.findByStatus(status);
-        return ResponseEntity.ok(users);
+    public ResponseEntity<?> getUsersByStatus(
+            @RequestParam User.AccountStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        return listUsers(null, status, null, after, page, size);
+    }
+    
+    private ResponseEntity<?> listUsers(User.Role role, User.AccountStatus status, String name,
+                                        String after, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_USER_PAGE_SIZE));
+        if (after != null) {
+            return ResponseEntity.ok(userService.getUsers(role, status, name, after, pageSize));
+        }
+        return ResponseEntity.ok(userService.getUsers(role, status, name, PageRequest.of(page, pageSize)));
+    }
+    
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleInvalidArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body("Error: " + e.getMessage());
     }
 }
\ No newline at end of file
@@ -1,7 +1,6 @@
 package com.healthyrecipe.controller;
 
-import com.healthyrecipe.entity.Favorite;
-import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.service.FavoriteService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -23,8 +22,8 @@ public class FavoriteController {
     @PostMapping("/recipe/{recipeId}")
     public ResponseEntity<?> addToFavorites(@PathVariable Long recipeId) {
         try {
-            Favorite favorite = favoriteService.addToFavorites(recipeId);
-            return ResponseEntity.ok(favorite);
+            favoriteService.addToFavorites(recipeId);
+            return ResponseEntity.ok(new FavoriteStatus(true));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error adding to favorites: " + e.getMessage());
         }
@@ -41,12 +40,12 @@ public class FavoriteController {
     }
     
     @GetMapping("/my-favorites")
-    public ResponseEntity<Page<Recipe>> getMyFavorites(
+    public ResponseEntity<Page<RecipeSummary>> getMyFavorites(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> favorites = favoriteService.getUserFavoriteRecipes(pageable);
+        Page<RecipeSummary> favorites = favoriteService.getUserFavoriteRecipes(pageable);
         return ResponseEntity.ok(favorites);
     }
     
@@ -0,0 +1,27 @@
+package com.healthyrecipe.controller;
+
+import com.healthyrecipe.index.IngredientDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/ingredients")
+public class IngredientController {
+    
+    @Autowired
+    private IngredientDictionary ingredientDictionary;
+    
+    // Typeahead for the recipe editor, served from memory
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<IngredientDictionary.Suggestion>> autocomplete(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        int cappedLimit = Math.max(1, Math.min(limit, IngredientDictionary.MAX_SUGGESTIONS));
+        return ResponseEntity.ok(ingredientDictionary.suggest(prefix, cappedLimit));
+    }
+}
@@ -1,10 +1,12 @@
 package com.healthyrecipe.controller;
 
-import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.entity.User;
 import com.healthyrecipe.repository.UserRepository;
+import com.healthyrecipe.security.UserPrincipalCache;
 import com.healthyrecipe.service.AuthService;
 import com.healthyrecipe.service.RecipeService;
+import com.healthyrecipe.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -31,9 +33,15 @@ public class ProfileController {
     @Autowired
     private RecipeService recipeService;
     
+    @Autowired
+    private UserService userService;
+    
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private UserPrincipalCache principalCache;
+    
     @GetMapping
     public ResponseEntity<?> getCurrentUserProfile() {
         try {
@@ -85,7 +93,7 @@ public class ProfileController {
                 currentUser.setDailyCalorieTarget(request.getDailyCalorieTarget());
             }
             
-            User updatedUser = userRepository.save(currentUser);
+            User updatedUser = userService.saveUser(currentUser);
             return ResponseEntity.ok(updatedUser);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error updating profile: " + e.getMessage());
@@ -105,6 +113,7 @@ public class ProfileController {
             // Update password
             currentUser.setPassword(passwordEncoder.encode(request.getNewPassword()));
             userRepository.save(currentUser);
+            principalCache.invalidate(currentUser.getUsername());
             
             return ResponseEntity.ok("Password changed successfully");
         } catch (Exception e) {
@@ -113,13 +122,13 @@ public class ProfileController {
     }
     
     @GetMapping("/my-recipes")
-    public ResponseEntity<Page<Recipe>> getMyRecipes(
+    public ResponseEntity<Page<RecipeSummary>> getMyRecipes(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
         User currentUser = authService.getCurrentUser();
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getUserRecipes(currentUser, pageable);
+        Page<RecipeSummary> recipes = recipeService.getUserRecipes(currentUser, pageable);
         return ResponseEntity.ok(recipes);
     }
     
@@ -148,7 +157,7 @@ public class ProfileController {
     }
     
     @GetMapping("/user/{userId}/recipes")
-    public ResponseEntity<Page<Recipe>> getUserRecipes(
+    public ResponseEntity<Page<RecipeSummary>> getUserRecipes(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
@@ -158,7 +167,7 @@ public class ProfileController {
                     .orElseThrow(() -> new RuntimeException("User not found"));
             
             Pageable pageable = PageRequest.of(page, size);
-            Page<Recipe> recipes = recipeService.getUserRecipes(user, pageable);
+            Page<RecipeSummary> recipes = recipeService.getUserRecipes(user, pageable);
             return ResponseEntity.ok(recipes);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
@@ -1,6 +1,8 @@
 package com.healthyrecipe.controller;
 
 import com.healthyrecipe.entity.Rating;
+import com.healthyrecipe.entity.RecipeRatingStats;
+import com.healthyrecipe.service.RatingBuffer;
 import com.healthyrecipe.service.RatingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -10,6 +12,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -20,19 +24,32 @@ public class RatingController {
     @Autowired
     private RatingService ratingService;
     
+    @Autowired
+    private RatingBuffer ratingBuffer;
+    
+    /**
+     * Buffers the vote and answers 202 (see {@link RatingBuffer} for when it is written).
+     * With {@code sync=true}, or when the buffer is full, the vote is written before
+     * answering 200, along with the rating it replaced.
+     */
     @PostMapping("/recipe/{recipeId}")
     @PreAuthorize("hasRole('USER') or hasRole('CHEF') or hasRole('ADMIN')")
     public ResponseEntity<?> rateRecipe(
             @PathVariable Long recipeId,
             @RequestParam Integer rating,
-            @RequestParam(required = false) String comment) {
+            @RequestParam(required = false) String comment,
+            @RequestParam(defaultValue = "false") boolean sync) {
         try {
             if (rating < 1 || rating > 5) {
                 return ResponseEntity.badRequest().body("Rating must be between 1 and 5");
             }
             
-            Rating ratingEntity = ratingService.createOrUpdateRating(recipeId, rating, comment);
-            return ResponseEntity.ok(ratingEntity);
+            if (!sync && ratingBuffer.submit(recipeId, rating, comment)) {
+                return ResponseEntity.accepted().body(new AcceptedRating(recipeId, rating, comment));
+            }
+            int previousRating = ratingBuffer.rateNow(recipeId, rating, comment);
+            return ResponseEntity.ok(new SavedRating(recipeId, rating, comment,
+                    previousRating == 0 ? null : previousRating));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error rating recipe: " + e.getMessage());
         }
@@ -64,7 +81,7 @@ public class RatingController {
     @PreAuthorize("hasRole('USER') or hasRole('CHEF') or hasRole('ADMIN')")
     public ResponseEntity<?> getMyRatingForRecipe(@PathVariable Long recipeId) {
         try {
-            Optional<Rating> rating = ratingService.getUserRatingForRecipe(recipeId);
+            Optional<Rating> rating = ratingBuffer.getUserRatingForRecipe(recipeId);
             if (rating.isPresent()) {
                 return ResponseEntity.ok(rating.get());
             } else {
@@ -79,7 +96,7 @@ public class RatingController {
     @PreAuthorize("hasRole('USER') or hasRole('CHEF') or hasRole('ADMIN')")
     public ResponseEntity<?> deleteRating(@PathVariable Long ratingId) {
         try {
-            ratingService.deleteRating(ratingId);
+            ratingBuffer.deleteRating(ratingId);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error deleting rating: " + e.getMessage());
@@ -89,25 +106,59 @@ public class RatingController {
     @GetMapping("/recipe/{recipeId}/average")
     public ResponseEntity<?> getAverageRating(@PathVariable Long recipeId) {
         try {
-            Double avgRating = ratingService.getAverageRatingForRecipe(recipeId);
-            Long totalRatings = ratingService.getTotalRatingsForRecipe(recipeId);
+            RecipeRatingStats stats = ratingService.getRatingStatsForRecipe(recipeId);
+            
+            Map<Integer, Integer> distribution = new LinkedHashMap<>();
+            for (int star = 5; star >= 1; star--) {
+                distribution.put(star, stats.getStarCount(star));
+            }
             
             return ResponseEntity.ok(new RatingStats(
-                avgRating != null ? avgRating : 0.0,
-                totalRatings
+                stats.getAverageRating(),
+                stats.getRatingCount().longValue(),
+                distribution
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error getting rating statistics: " + e.getMessage());
         }
     }
     
+    public static class AcceptedRating {
+        public final Long recipeId;
+        public final Integer rating;
+        public final String comment;
+        
+        public AcceptedRating(Long recipeId, Integer rating, String comment) {
+            this.recipeId = recipeId;
+            this.rating = rating;
+            this.comment = comment;
+        }
+    }
+    
+    public static class SavedRating {
+        public final Long recipeId;
+        public final Integer rating;
+        public final String comment;
+        // Null when the recipe had not been rated by the user
+        public final Integer previousRating;
+        
+        public SavedRating(Long recipeId, Integer rating, String comment, Integer previousRating) {
+            this.recipeId = recipeId;
+            this.rating = rating;
+            this.comment = comment;
+            this.previousRating = previousRating;
+        }
+    }
+    
     public static class RatingStats {
         public final Double averageRating;
         public final Long totalRatings;
+        public final Map<Integer, Integer> ratingDistribution;
         
-        public RatingStats(Double averageRating, Long totalRatings) {
+        public RatingStats(Double averageRating, Long totalRatings, Map<Integer, Integer> ratingDistribution) {
             this.averageRating = averageRating;
             this.totalRatings = totalRatings;
+            this.ratingDistribution = ratingDistribution;
         }
     }
 }
\ No newline at end of file
@@ -1,7 +1,12 @@
 package com.healthyrecipe.controller;
 
 import com.healthyrecipe.dto.recipe.RecipeCreateRequest;
+import com.healthyrecipe.dto.recipe.RecipeDetail;
+import com.healthyrecipe.dto.recipe.RecipeQuery;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.service.FavoriteService;
+import com.healthyrecipe.service.RatingBuffer;
 import com.healthyrecipe.service.RecipeService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,16 +18,32 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/recipes")
 public class RecipeController {
     
+    // Largest page served by the listings ranked in memory (pantry) and by cursor pages
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    // Recipe ids accepted by one my-status request
+    private static final int MAX_STATUS_RECIPES = 100;
+    
     @Autowired
     private RecipeService recipeService;
     
+    @Autowired
+    private FavoriteService favoriteService;
+    
+    @Autowired
+    private RatingBuffer ratingBuffer;
+    
     @PostMapping
     @PreAuthorize("hasRole('USER') or hasRole('CHEF') or hasRole('ADMIN')")
     public ResponseEntity<?> createRecipe(@Valid @RequestBody RecipeCreateRequest request) {
@@ -48,7 +69,7 @@ public class RecipeController {
     @GetMapping("/{id}")
     public ResponseEntity<?> getRecipe(@PathVariable Long id) {
         try {
-            Recipe recipe = recipeService.getRecipeById(id);
+            RecipeDetail recipe = recipeService.getRecipeDetail(id);
             return ResponseEntity.ok(recipe);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
@@ -56,117 +77,227 @@ public class RecipeController {
     }
     
     @GetMapping("/public")
-    public ResponseEntity<Page<Recipe>> getAllRecipes(
+    public ResponseEntity<?> getAllRecipes(
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir) {
         
+        if (after != null) {
+            // The cursor encodes a position in the newest-first order only
+            if (!sortBy.equals("createdAt") || !sortDir.equalsIgnoreCase("desc")) {
+                throw new IllegalArgumentException("after requires sortBy=createdAt and sortDir=desc");
+            }
+            return ResponseEntity.ok(recipeService.getLatestRecipes(after, cursorSize(size)));
+        }
+        
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        Page<Recipe> recipes = recipeService.getAllApprovedRecipes(pageable);
+        Page<RecipeSummary> recipes = recipeService.getAllApprovedRecipes(pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/search")
-    public ResponseEntity<Page<Recipe>> searchRecipes(
+    public ResponseEntity<?> searchRecipes(
             @RequestParam String keyword,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.searchRecipes(keyword, after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.searchRecipes(keyword, pageable);
+        Page<RecipeSummary> recipes = recipeService.searchRecipes(keyword, pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/category")
-    public ResponseEntity<Page<Recipe>> getRecipesByCategory(
+    public ResponseEntity<?> getRecipesByCategory(
             @RequestParam List<Recipe.RecipeCategory> categories,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getRecipesByCategories(categories, after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getRecipesByCategories(categories, pageable);
+        Page<RecipeSummary> recipes = recipeService.getRecipesByCategories(categories, pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/dietary-tags")
-    public ResponseEntity<Page<Recipe>> getRecipesByDietaryTags(
+    public ResponseEntity<?> getRecipesByDietaryTags(
             @RequestParam List<String> tags,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getRecipesByDietaryTags(tags, after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getRecipesByDietaryTags(tags, pageable);
+        Page<RecipeSummary> recipes = recipeService.getRecipesByDietaryTags(tags, pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/calories")
-    public ResponseEntity<Page<Recipe>> getRecipesByCalorieRange(
+    public ResponseEntity<?> getRecipesByCalorieRange(
             @RequestParam Integer minCalories,
             @RequestParam Integer maxCalories,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getRecipesByCalorieRange(minCalories, maxCalories, after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getRecipesByCalorieRange(minCalories, maxCalories, pageable);
+        Page<RecipeSummary> recipes = recipeService.getRecipesByCalorieRange(minCalories, maxCalories, pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/quick")
-    public ResponseEntity<Page<Recipe>> getQuickRecipes(
+    public ResponseEntity<?> getQuickRecipes(
             @RequestParam Integer maxTime,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getRecipesByMaxTime(maxTime, after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getRecipesByMaxTime(maxTime, pageable);
+        Page<RecipeSummary> recipes = recipeService.getRecipesByMaxTime(maxTime, pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/difficulty")
-    public ResponseEntity<Page<Recipe>> getRecipesByDifficulty(
+    public ResponseEntity<?> getRecipesByDifficulty(
             @RequestParam Recipe.DifficultyLevel difficulty,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getRecipesByDifficulty(difficulty, after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getRecipesByDifficulty(difficulty, pageable);
+        Page<RecipeSummary> recipes = recipeService.getRecipesByDifficulty(difficulty, pageable);
         return ResponseEntity.ok(recipes);
     }
     
+    @GetMapping("/query")
+    public ResponseEntity<?> queryRecipes(
+            @RequestParam(required = false) List<Recipe.RecipeCategory> categories,
+            @RequestParam(required = false) List<String> tags,
+            @RequestParam(required = false) Integer minCalories,
+            @RequestParam(required = false) Integer maxCalories,
+            @RequestParam(required = false) Integer maxTime,
+            @RequestParam(required = false) List<Recipe.DifficultyLevel> difficulty,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        RecipeQuery query = new RecipeQuery(categories, tags, minCalories, maxCalories, maxTime, difficulty);
+        Pageable pageable = PageRequest.of(page, size);
+        return ResponseEntity.ok(recipeService.queryRecipes(query, pageable));
+    }
+    
+    @GetMapping("/pantry")
+    public ResponseEntity<?> getRecipesByPantry(
+            @RequestParam List<String> items,
+            @RequestParam(required = false) Integer maxMissing,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        if (maxMissing != null && maxMissing < 0) {
+            throw new IllegalArgumentException("maxMissing must not be negative");
+        }
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        return ResponseEntity.ok(recipeService.findRecipesByPantry(items, maxMissing, pageable));
+    }
+    
     @GetMapping("/top-rated")
-    public ResponseEntity<Page<Recipe>> getTopRatedRecipes(
+    public ResponseEntity<?> getTopRatedRecipes(
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getTopRatedRecipes(after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getTopRatedRecipes(pageable);
+        Page<RecipeSummary> recipes = recipeService.getTopRatedRecipes(pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/latest")
-    public ResponseEntity<Page<Recipe>> getLatestRecipes(
+    public ResponseEntity<?> getLatestRecipes(
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getLatestRecipes(after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getLatestRecipes(pageable);
+        Page<RecipeSummary> recipes = recipeService.getLatestRecipes(pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/most-favorited")
-    public ResponseEntity<Page<Recipe>> getMostFavoritedRecipes(
+    public ResponseEntity<?> getMostFavoritedRecipes(
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        if (after != null) {
+            return ResponseEntity.ok(recipeService.getMostFavoritedRecipes(after, cursorSize(size)));
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recipeService.getMostFavoritedRecipes(pageable);
+        Page<RecipeSummary> recipes = recipeService.getMostFavoritedRecipes(pageable);
         return ResponseEntity.ok(recipes);
     }
     
+    /**
+     * The current user's favorite flag and rating for each of the given recipes (e.g. the
+     * cards of a listing page), in the order of the ids. Costs at most two queries
+     * whatever the number of recipes; recipes that do not exist come back unfavorited
+     * and unrated. Votes still held by the {@link RatingBuffer} are included.
+     */
+    @GetMapping("/my-status")
+    @PreAuthorize("hasRole('USER') or hasRole('CHEF') or hasRole('ADMIN')")
+    public ResponseEntity<List<RecipeUserStatus>> getMyStatus(@RequestParam List<Long> ids) {
+        Set<Long> recipeIds = new LinkedHashSet<>(ids);
+        if (recipeIds.size() > MAX_STATUS_RECIPES) {
+            throw new IllegalArgumentException("At most " + MAX_STATUS_RECIPES + " recipe ids are allowed");
+        }
+        if (recipeIds.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        
+        Set<Long> favorited = favoriteService.getFavoritedRecipeIds(recipeIds);
+        Map<Long, Integer> ratings = ratingBuffer.getUserRatingsForRecipes(recipeIds);
+        List<RecipeUserStatus> statuses = new ArrayList<>(recipeIds.size());
+        for (Long recipeId : recipeIds) {
+            statuses.add(new RecipeUserStatus(recipeId, favorited.contains(recipeId), ratings.get(recipeId)));
+        }
+        return ResponseEntity.ok(statuses);
+    }
+    
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('USER') or hasRole('CHEF') or hasRole('ADMIN')")
     public ResponseEntity<?> deleteRecipe(@PathVariable Long id) {
@@ -177,4 +308,26 @@ public class RecipeController {
             return ResponseEntity.badRequest().body("Error deleting recipe: " + e.getMessage());
         }
     }
+    
+    private static int cursorSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+    
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleInvalidArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+    }
+    
+    public static class RecipeUserStatus {
+        public final Long recipeId;
+        public final Boolean isFavorited;
+        // Null when the user has not rated the recipe
+        public final Integer myRating;
+        
+        public RecipeUserStatus(Long recipeId, Boolean isFavorited, Integer myRating) {
+            this.recipeId = recipeId;
+            this.isFavorited = isFavorited;
+            this.myRating = myRating;
+        }
+    }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package com.healthyrecipe.controller;
 
-import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.entity.User;
 import com.healthyrecipe.service.RecommendationService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,80 +18,85 @@ import java.util.Set;
 @RequestMapping("/api/recommendations")
 public class RecommendationController {
     
+    private static final int MAX_PAGE_SIZE = 100;
+    
     @Autowired
     private RecommendationService recommendationService;
     
     @GetMapping("/personalized")
     @PreAuthorize("hasRole('USER') or hasRole('CHEF') or hasRole('ADMIN')")
-    public ResponseEntity<Page<Recipe>> getPersonalizedRecommendations(
+    public ResponseEntity<Page<RecipeSummary>> getPersonalizedRecommendations(
+            @RequestParam(defaultValue = "content") String mode,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recommendations = recommendationService.getPersonalizedRecommendations(pageable);
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Page<RecipeSummary> recommendations = "collaborative".equalsIgnoreCase(mode)
+                ? recommendationService.getCollaborativeRecommendations(pageable)
+                : recommendationService.getPersonalizedRecommendations(pageable);
         return ResponseEntity.ok(recommendations);
     }
     
     @GetMapping("/fitness-goal")
-    public ResponseEntity<Page<Recipe>> getRecipesByFitnessGoal(
+    public ResponseEntity<Page<RecipeSummary>> getRecipesByFitnessGoal(
             @RequestParam User.FitnessGoal fitnessGoal,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recommendationService.getRecipesByFitnessGoal(fitnessGoal, pageable);
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Page<RecipeSummary> recipes = recommendationService.getRecipesByFitnessGoal(fitnessGoal, pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/quick")
-    public ResponseEntity<Page<Recipe>> getQuickRecipes(
+    public ResponseEntity<Page<RecipeSummary>> getQuickRecipes(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recommendationService.getQuickRecipes(pageable);
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Page<RecipeSummary> recipes = recommendationService.getQuickRecipes(pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/healthy")
-    public ResponseEntity<Page<Recipe>> getHealthyRecipes(
+    public ResponseEntity<Page<RecipeSummary>> getHealthyRecipes(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recommendationService.getHealthyRecipes(pageable);
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Page<RecipeSummary> recipes = recommendationService.getHealthyRecipes(pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/beginner")
-    public ResponseEntity<Page<Recipe>> getBeginnerFriendlyRecipes(
+    public ResponseEntity<Page<RecipeSummary>> getBeginnerFriendlyRecipes(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recommendationService.getBeginnerFriendlyRecipes(pageable);
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Page<RecipeSummary> recipes = recommendationService.getBeginnerFriendlyRecipes(pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/allergy-free")
-    public ResponseEntity<Page<Recipe>> getAllergyFreeRecipes(
+    public ResponseEntity<Page<RecipeSummary>> getAllergyFreeRecipes(
             @RequestParam Set<String> allergies,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recommendationService.getRecipesForAllergies(allergies, pageable);
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Page<RecipeSummary> recipes = recommendationService.getRecipesForAllergies(allergies, pageable);
         return ResponseEntity.ok(recipes);
     }
     
     @GetMapping("/similar/{recipeId}")
-    public ResponseEntity<Page<Recipe>> getSimilarRecipes(
+    public ResponseEntity<Page<RecipeSummary>> getSimilarRecipes(
             @PathVariable Long recipeId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Recipe> recipes = recommendationService.getSimilarRecipes(recipeId, pageable);
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        Page<RecipeSummary> recipes = recommendationService.getSimilarRecipes(recipeId, pageable);
         return ResponseEntity.ok(recipes);
     }
 }
\ No newline at end of file
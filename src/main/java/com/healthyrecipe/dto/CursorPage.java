@@ -0,0 +1,53 @@
+package com.healthyrecipe.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a keyset (seek) paginated listing. Clients pass {@code nextCursor} back
+ * as the {@code after} parameter to fetch the following page; no total count is computed.
+ */
+public class CursorPage<T> {
+    
+    private final List<T> content;
+    private final String nextCursor;
+    
+    public CursorPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<T> getContent() { return content; }
+    
+    public String getNextCursor() { return nextCursor; }
+    
+    public boolean isHasNext() { return nextCursor != null; }
+    
+    public int getSize() { return content.size(); }
+    
+    // Cursors are opaque to clients: the sort key values, base64url encoded
+    public static String encodeCursor(Object... values) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                raw.append('|');
+            }
+            raw.append(values[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static String[] decodeCursor(String cursor, int expectedValues) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] values = raw.split("\\|", -1);
+            if (values.length != expectedValues) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return values;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
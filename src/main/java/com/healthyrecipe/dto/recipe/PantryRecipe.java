@@ -0,0 +1,36 @@
+package com.healthyrecipe.dto.recipe;
+
+import java.util.List;
+
+/**
+ * A recipe found by pantry search, with how much of it the pantry covers. Ingredient
+ * names are in the normalized form the search matched on.
+ */
+public class PantryRecipe {
+    
+    private final RecipeSummary recipe;
+    private final int matchedIngredients;
+    private final int totalIngredients;
+    private final List<String> missingIngredients;
+    
+    public PantryRecipe(RecipeSummary recipe, int matchedIngredients, int totalIngredients,
+                        List<String> missingIngredients) {
+        this.recipe = recipe;
+        this.matchedIngredients = matchedIngredients;
+        this.totalIngredients = totalIngredients;
+        this.missingIngredients = missingIngredients;
+    }
+    
+    // Getters
+    public RecipeSummary getRecipe() { return recipe; }
+    
+    public int getMatchedIngredients() { return matchedIngredients; }
+    
+    public int getTotalIngredients() { return totalIngredients; }
+    
+    public double getCoverage() {
+        return totalIngredients > 0 ? (double) matchedIngredients / totalIngredients : 0;
+    }
+    
+    public List<String> getMissingIngredients() { return missingIngredients; }
+}
@@ -1,6 +1,7 @@
 package com.healthyrecipe.dto.recipe;
 
 import com.healthyrecipe.entity.Recipe;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -53,6 +54,7 @@ public class RecipeCreateRequest {
     private Integer sodium;
     
     // Ingredients
+    @Valid
     private List<IngredientDto> ingredients;
     
     public RecipeCreateRequest() {}
@@ -0,0 +1,123 @@
+package com.healthyrecipe.dto.recipe;
+
+import com.healthyrecipe.entity.Ingredient;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Full recipe as returned by {@code GET /api/recipes/{id}}: every recipe field, its
+ * ingredients and rating aggregates, with the author reduced to id and username.
+ * Immutable and detached from the persistence context, so it can be cached and
+ * shared between requests.
+ */
+public class RecipeDetail {
+    
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final String instructions;
+    private final Integer preparationTime;
+    private final Integer cookingTime;
+    private final Integer servings;
+    private final Recipe.DifficultyLevel difficultyLevel;
+    private final String imageUrl;
+    private final Recipe.RecipeStatus status;
+    private final Recipe.NutritionInfo nutritionInfo;
+    private final Set<Recipe.RecipeCategory> categories;
+    private final Set<String> dietaryTags;
+    private final List<RecipeCreateRequest.IngredientDto> ingredients;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final Long authorId;
+    private final String authorUsername;
+    private final Double averageRating;
+    private final Integer totalRatings;
+    
+    public RecipeDetail(Recipe recipe, List<Ingredient> ingredients, RecipeRatingStats stats) {
+        this.id = recipe.getId();
+        this.title = recipe.getTitle();
+        this.description = recipe.getDescription();
+        this.instructions = recipe.getInstructions();
+        this.preparationTime = recipe.getPreparationTime();
+        this.cookingTime = recipe.getCookingTime();
+        this.servings = recipe.getServings();
+        this.difficultyLevel = recipe.getDifficultyLevel();
+        this.imageUrl = recipe.getImageUrl();
+        this.status = recipe.getStatus();
+        this.nutritionInfo = copyOf(recipe.getNutritionInfo());
+        this.categories = Set.copyOf(recipe.getCategories());
+        this.dietaryTags = Set.copyOf(recipe.getDietaryTags());
+        this.ingredients = ingredients.stream()
+                .map(i -> new RecipeCreateRequest.IngredientDto(i.getName(), i.getQuantity(), i.getUnit(), i.getNotes()))
+                .toList();
+        this.createdAt = recipe.getCreatedAt();
+        this.updatedAt = recipe.getUpdatedAt();
+        this.authorId = recipe.getAuthor().getId();
+        this.authorUsername = recipe.getAuthor().getUsername();
+        this.averageRating = stats.getAverageRating();
+        this.totalRatings = stats.getRatingCount();
+    }
+    
+    private static Recipe.NutritionInfo copyOf(Recipe.NutritionInfo source) {
+        Recipe.NutritionInfo copy = new Recipe.NutritionInfo();
+        if (source != null) {
+            copy.setCalories(source.getCalories());
+            copy.setProtein(source.getProtein());
+            copy.setCarbohydrates(source.getCarbohydrates());
+            copy.setFat(source.getFat());
+            copy.setFiber(source.getFiber());
+            copy.setSugar(source.getSugar());
+            copy.setSodium(source.getSodium());
+        }
+        return copy;
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    
+    public String getTitle() { return title; }
+    
+    public String getDescription() { return description; }
+    
+    public String getInstructions() { return instructions; }
+    
+    public Integer getPreparationTime() { return preparationTime; }
+    
+    public Integer getCookingTime() { return cookingTime; }
+    
+    public Integer getTotalTime() {
+        return (preparationTime != null ? preparationTime : 0) + (cookingTime != null ? cookingTime : 0);
+    }
+    
+    public Integer getServings() { return servings; }
+    
+    public Recipe.DifficultyLevel getDifficultyLevel() { return difficultyLevel; }
+    
+    public String getImageUrl() { return imageUrl; }
+    
+    public Recipe.RecipeStatus getStatus() { return status; }
+    
+    public Recipe.NutritionInfo getNutritionInfo() { return nutritionInfo; }
+    
+    public Set<Recipe.RecipeCategory> getCategories() { return categories; }
+    
+    public Set<String> getDietaryTags() { return dietaryTags; }
+    
+    public List<RecipeCreateRequest.IngredientDto> getIngredients() { return ingredients; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    
+    public Long getAuthorId() { return authorId; }
+    
+    public String getAuthorUsername() { return authorUsername; }
+    
+    public Double getAverageRating() { return averageRating; }
+    
+    public Integer getTotalRatings() { return totalRatings; }
+}
@@ -0,0 +1,111 @@
+package com.healthyrecipe.dto.recipe;
+
+import com.healthyrecipe.entity.Recipe;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One line of the recipe NDJSON export. Field names follow {@link RecipeCreateRequest},
+ * so an export can be loaded back through the bulk import endpoint.
+ */
+public class RecipeExportRecord {
+    
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final String instructions;
+    private final Integer preparationTime;
+    private final Integer cookingTime;
+    private final Integer servings;
+    private final Recipe.DifficultyLevel difficultyLevel;
+    private final String imageUrl;
+    
+    // Nutrition Information
+    private final Integer calories;
+    private final Double protein;
+    private final Double carbohydrates;
+    private final Double fat;
+    private final Double fiber;
+    private final Double sugar;
+    private final Integer sodium;
+    
+    private final String authorUsername;
+    private final LocalDateTime createdAt;
+    
+    private final Set<Recipe.RecipeCategory> categories = new HashSet<>();
+    private final Set<String> dietaryTags = new HashSet<>();
+    private final List<RecipeCreateRequest.IngredientDto> ingredients = new ArrayList<>();
+    
+    public RecipeExportRecord(Long id, String title, String description, String instructions,
+                              Integer preparationTime, Integer cookingTime, Integer servings,
+                              Recipe.DifficultyLevel difficultyLevel, String imageUrl,
+                              Integer calories, Double protein, Double carbohydrates, Double fat,
+                              Double fiber, Double sugar, Integer sodium,
+                              String authorUsername, LocalDateTime createdAt) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.instructions = instructions;
+        this.preparationTime = preparationTime;
+        this.cookingTime = cookingTime;
+        this.servings = servings;
+        this.difficultyLevel = difficultyLevel;
+        this.imageUrl = imageUrl;
+        this.calories = calories;
+        this.protein = protein;
+        this.carbohydrates = carbohydrates;
+        this.fat = fat;
+        this.fiber = fiber;
+        this.sugar = sugar;
+        this.sodium = sodium;
+        this.authorUsername = authorUsername;
+        this.createdAt = createdAt;
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    
+    public String getTitle() { return title; }
+    
+    public String getDescription() { return description; }
+    
+    public String getInstructions() { return instructions; }
+    
+    public Integer getPreparationTime() { return preparationTime; }
+    
+    public Integer getCookingTime() { return cookingTime; }
+    
+    public Integer getServings() { return servings; }
+    
+    public Recipe.DifficultyLevel getDifficultyLevel() { return difficultyLevel; }
+    
+    public String getImageUrl() { return imageUrl; }
+    
+    public Integer getCalories() { return calories; }
+    
+    public Double getProtein() { return protein; }
+    
+    public Double getCarbohydrates() { return carbohydrates; }
+    
+    public Double getFat() { return fat; }
+    
+    public Double getFiber() { return fiber; }
+    
+    public Double getSugar() { return sugar; }
+    
+    public Integer getSodium() { return sodium; }
+    
+    public String getAuthorUsername() { return authorUsername; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    
+    public Set<Recipe.RecipeCategory> getCategories() { return categories; }
+    
+    public Set<String> getDietaryTags() { return dietaryTags; }
+    
+    public List<RecipeCreateRequest.IngredientDto> getIngredients() { return ingredients; }
+}
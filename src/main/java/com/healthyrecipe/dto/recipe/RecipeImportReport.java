@@ -0,0 +1,71 @@
+package com.healthyrecipe.dto.recipe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk recipe import. Only the first {@code maxErrors} record errors are
+ * kept so a badly broken file cannot grow the report without bound.
+ */
+public class RecipeImportReport {
+    
+    private long totalRecords;
+    private long imported;
+    private long failed;
+    private final List<RecordError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+    private long elapsedMillis;
+    
+    public void recordImported(int count) {
+        totalRecords += count;
+        imported += count;
+    }
+    
+    public void recordFailed(long recordNumber, String title, String message, int maxErrors) {
+        totalRecords++;
+        failed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RecordError(recordNumber, title, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+    
+    public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+    
+    // Getters
+    public long getTotalRecords() { return totalRecords; }
+    
+    public long getImported() { return imported; }
+    
+    public long getFailed() { return failed; }
+    
+    public List<RecordError> getErrors() { return errors; }
+    
+    public boolean isErrorsTruncated() { return errorsTruncated; }
+    
+    public long getElapsedMillis() { return elapsedMillis; }
+    
+    public double getRecordsPerSecond() {
+        return elapsedMillis > 0 ? totalRecords * 1000.0 / elapsedMillis : totalRecords;
+    }
+    
+    public static class RecordError {
+        private final long recordNumber;
+        private final String title;
+        private final String message;
+        
+        public RecordError(long recordNumber, String title, String message) {
+            this.recordNumber = recordNumber;
+            this.title = title;
+            this.message = message;
+        }
+        
+        // 1-based position of the record in the input (CSV header excluded)
+        public long getRecordNumber() { return recordNumber; }
+        
+        public String getTitle() { return title; }
+        
+        public String getMessage() { return message; }
+    }
+}
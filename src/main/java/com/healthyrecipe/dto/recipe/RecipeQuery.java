@@ -0,0 +1,53 @@
+package com.healthyrecipe.dto.recipe;
+
+import com.healthyrecipe.entity.Recipe;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Filters of a combined recipe query. Every filter is optional; unset filters match
+ * all approved recipes. Categories and difficulties match any of the given values,
+ * dietary tags must all be present.
+ */
+public class RecipeQuery {
+    
+    private final List<Recipe.RecipeCategory> categories;
+    private final List<String> dietaryTags;
+    private final Integer minCalories;
+    private final Integer maxCalories;
+    private final Integer maxTime;
+    private final List<Recipe.DifficultyLevel> difficulties;
+    
+    public RecipeQuery(List<Recipe.RecipeCategory> categories, List<String> dietaryTags,
+                       Integer minCalories, Integer maxCalories, Integer maxTime,
+                       List<Recipe.DifficultyLevel> difficulties) {
+        if (minCalories != null && maxCalories != null && minCalories > maxCalories) {
+            throw new IllegalArgumentException("minCalories must not be greater than maxCalories");
+        }
+        this.categories = distinct(categories);
+        this.dietaryTags = distinct(dietaryTags);
+        this.minCalories = minCalories;
+        this.maxCalories = maxCalories;
+        this.maxTime = maxTime;
+        this.difficulties = distinct(difficulties);
+    }
+    
+    private static <T> List<T> distinct(List<T> values) {
+        return values != null ? new ArrayList<>(new LinkedHashSet<>(values)) : List.of();
+    }
+    
+    // Getters
+    public List<Recipe.RecipeCategory> getCategories() { return categories; }
+    
+    public List<String> getDietaryTags() { return dietaryTags; }
+    
+    public Integer getMinCalories() { return minCalories; }
+    
+    public Integer getMaxCalories() { return maxCalories; }
+    
+    public Integer getMaxTime() { return maxTime; }
+    
+    public List<Recipe.DifficultyLevel> getDifficulties() { return difficulties; }
+}
@@ -0,0 +1,39 @@
+package com.healthyrecipe.dto.recipe;
+
+import com.healthyrecipe.entity.Recipe;
+import org.springframework.data.domain.Page;
+
+import java.util.Map;
+
+/**
+ * A page of a combined recipe query together with the facet counts for the filter UI.
+ * Category and difficulty counts ignore the query's own category and difficulty filter
+ * respectively, so values that are not selected yet still show their counts; dietary
+ * tag counts apply every filter, since each selected tag narrows the result.
+ */
+public class RecipeQueryResult {
+    
+    private final Page<RecipeSummary> recipes;
+    private final Map<Recipe.RecipeCategory, Long> categories;
+    private final Map<String, Long> dietaryTags;
+    private final Map<Recipe.DifficultyLevel, Long> difficulties;
+    
+    public RecipeQueryResult(Page<RecipeSummary> recipes,
+                             Map<Recipe.RecipeCategory, Long> categories,
+                             Map<String, Long> dietaryTags,
+                             Map<Recipe.DifficultyLevel, Long> difficulties) {
+        this.recipes = recipes;
+        this.categories = categories;
+        this.dietaryTags = dietaryTags;
+        this.difficulties = difficulties;
+    }
+    
+    // Getters
+    public Page<RecipeSummary> getRecipes() { return recipes; }
+    
+    public Map<Recipe.RecipeCategory, Long> getCategories() { return categories; }
+    
+    public Map<String, Long> getDietaryTags() { return dietaryTags; }
+    
+    public Map<Recipe.DifficultyLevel, Long> getDifficulties() { return difficulties; }
+}
@@ -0,0 +1,110 @@
+package com.healthyrecipe.dto.recipe;
+
+import com.healthyrecipe.entity.Recipe;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lightweight recipe card used by listing endpoints. Scalar fields are read with a
+ * single constructor-expression query per page; categories and dietary tags are then
+ * filled in with one batched query each.
+ */
+public class RecipeSummary {
+    
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final String imageUrl;
+    private final Integer preparationTime;
+    private final Integer cookingTime;
+    private final Integer servings;
+    private final Recipe.DifficultyLevel difficultyLevel;
+    private final Recipe.RecipeStatus status;
+    private final Integer calories;
+    private final Double protein;
+    private final Double carbohydrates;
+    private final Double fat;
+    private final LocalDateTime createdAt;
+    private final Long authorId;
+    private final String authorUsername;
+    private final Double averageRating;
+    private final Integer totalRatings;
+    
+    private Set<Recipe.RecipeCategory> categories = new HashSet<>();
+    private Set<String> dietaryTags = new HashSet<>();
+    
+    public RecipeSummary(Long id, String title, String description, String imageUrl,
+                         Integer preparationTime, Integer cookingTime, Integer servings,
+                         Recipe.DifficultyLevel difficultyLevel, Recipe.RecipeStatus status,
+                         Integer calories, Double protein, Double carbohydrates, Double fat,
+                         LocalDateTime createdAt, Long authorId, String authorUsername,
+                         Long ratingSum, Integer ratingCount) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.imageUrl = imageUrl;
+        this.preparationTime = preparationTime;
+        this.cookingTime = cookingTime;
+        this.servings = servings;
+        this.difficultyLevel = difficultyLevel;
+        this.status = status;
+        this.calories = calories;
+        this.protein = protein;
+        this.carbohydrates = carbohydrates;
+        this.fat = fat;
+        this.createdAt = createdAt;
+        this.authorId = authorId;
+        this.authorUsername = authorUsername;
+        this.totalRatings = ratingCount != null ? ratingCount : 0;
+        this.averageRating = ratingSum != null && totalRatings > 0 ? (double) ratingSum / totalRatings : 0.0;
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    
+    public String getTitle() { return title; }
+    
+    public String getDescription() { return description; }
+    
+    public String getImageUrl() { return imageUrl; }
+    
+    public Integer getPreparationTime() { return preparationTime; }
+    
+    public Integer getCookingTime() { return cookingTime; }
+    
+    public Integer getTotalTime() {
+        return (preparationTime != null ? preparationTime : 0) + (cookingTime != null ? cookingTime : 0);
+    }
+    
+    public Integer getServings() { return servings; }
+    
+    public Recipe.DifficultyLevel getDifficultyLevel() { return difficultyLevel; }
+    
+    public Recipe.RecipeStatus getStatus() { return status; }
+    
+    public Integer getCalories() { return calories; }
+    
+    public Double getProtein() { return protein; }
+    
+    public Double getCarbohydrates() { return carbohydrates; }
+    
+    public Double getFat() { return fat; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    
+    public Long getAuthorId() { return authorId; }
+    
+    public String getAuthorUsername() { return authorUsername; }
+    
+    public Double getAverageRating() { return averageRating; }
+    
+    public Integer getTotalRatings() { return totalRatings; }
+    
+    public Set<Recipe.RecipeCategory> getCategories() { return categories; }
+    public void setCategories(Set<Recipe.RecipeCategory> categories) { this.categories = categories; }
+    
+    public Set<String> getDietaryTags() { return dietaryTags; }
+    public void setDietaryTags(Set<String> dietaryTags) { this.dietaryTags = dietaryTags; }
+}
@@ -0,0 +1,69 @@
+package com.healthyrecipe.dto.user;
+
+import com.healthyrecipe.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * User row of the admin listings and export. Scalar fields are read with a single
+ * constructor-expression query; dietary preferences and allergies are then filled in
+ * with one batched query each (or merged from ordered cursors when exporting).
+ */
+public class UserSummary {
+    
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final User.Role role;
+    private final User.AccountStatus status;
+    private final User.FitnessGoal fitnessGoal;
+    private final Integer dailyCalorieTarget;
+    private final LocalDateTime createdAt;
+    
+    private final Set<User.DietaryPreference> dietaryPreferences = new HashSet<>();
+    private final Set<String> allergies = new HashSet<>();
+    
+    public UserSummary(Long id, String username, String email, String firstName, String lastName,
+                       User.Role role, User.AccountStatus status, User.FitnessGoal fitnessGoal,
+                       Integer dailyCalorieTarget, LocalDateTime createdAt) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.role = role;
+        this.status = status;
+        this.fitnessGoal = fitnessGoal;
+        this.dailyCalorieTarget = dailyCalorieTarget;
+        this.createdAt = createdAt;
+    }
+    
+    // Getters
+    public Long getId() { return id; }
+    
+    public String getUsername() { return username; }
+    
+    public String getEmail() { return email; }
+    
+    public String getFirstName() { return firstName; }
+    
+    public String getLastName() { return lastName; }
+    
+    public User.Role getRole() { return role; }
+    
+    public User.AccountStatus getStatus() { return status; }
+    
+    public User.FitnessGoal getFitnessGoal() { return fitnessGoal; }
+    
+    public Integer getDailyCalorieTarget() { return dailyCalorieTarget; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    
+    public Set<User.DietaryPreference> getDietaryPreferences() { return dietaryPreferences; }
+    
+    public Set<String> getAllergies() { return allergies; }
+}
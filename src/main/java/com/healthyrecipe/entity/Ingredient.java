@@ -9,8 +9,11 @@ import jakarta.validation.constraints.Positive;
 @Table(name = "ingredients")
 public class Ingredient {
     
+    // Pooled sequence rather than IDENTITY so inserts can be JDBC-batched; one sequence
+    // call reserves ids for 50 rows
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ingredient_seq")
+    @SequenceGenerator(name = "ingredient_seq", sequenceName = "ingredients_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank
@@ -14,11 +14,15 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "recipes")
+@Table(name = "recipes", indexes = {
+    @Index(name = "idx_recipes_status_created_at", columnList = "status, created_at, id")
+})
 public class Recipe {
     
+    // Pooled sequence so bulk imports can batch recipe inserts (see Ingredient)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_seq")
+    @SequenceGenerator(name = "recipe_seq", sequenceName = "recipes_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank
@@ -0,0 +1,96 @@
+package com.healthyrecipe.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Running rating aggregates for a recipe, maintained incrementally by RatingService
+ * so recipe views never have to run AVG/COUNT over the ratings table.
+ */
+@Entity
+@Table(name = "recipe_rating_stats")
+public class RecipeRatingStats {
+    
+    @Id
+    @Column(name = "recipe_id")
+    private Long recipeId;
+    
+    @Column(nullable = false)
+    private Long ratingSum = 0L;
+    
+    @Column(nullable = false)
+    private Integer ratingCount = 0;
+    
+    // Per-star histogram
+    @Column(nullable = false)
+    private Integer oneStarCount = 0;
+    
+    @Column(nullable = false)
+    private Integer twoStarCount = 0;
+    
+    @Column(nullable = false)
+    private Integer threeStarCount = 0;
+    
+    @Column(nullable = false)
+    private Integer fourStarCount = 0;
+    
+    @Column(nullable = false)
+    private Integer fiveStarCount = 0;
+    
+    // Constructors
+    public RecipeRatingStats() {}
+    
+    public RecipeRatingStats(Long recipeId) {
+        this.recipeId = recipeId;
+    }
+    
+    public Double getAverageRating() {
+        return ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+    }
+    
+    public Integer getStarCount(int star) {
+        switch (star) {
+            case 1: return oneStarCount;
+            case 2: return twoStarCount;
+            case 3: return threeStarCount;
+            case 4: return fourStarCount;
+            case 5: return fiveStarCount;
+            default: throw new IllegalArgumentException("Rating must be between 1 and 5");
+        }
+    }
+    
+    public void setStarCount(int star, Integer count) {
+        switch (star) {
+            case 1: oneStarCount = count; break;
+            case 2: twoStarCount = count; break;
+            case 3: threeStarCount = count; break;
+            case 4: fourStarCount = count; break;
+            case 5: fiveStarCount = count; break;
+            default: throw new IllegalArgumentException("Rating must be between 1 and 5");
+        }
+    }
+    
+    // Getters and Setters
+    public Long getRecipeId() { return recipeId; }
+    public void setRecipeId(Long recipeId) { this.recipeId = recipeId; }
+    
+    public Long getRatingSum() { return ratingSum; }
+    public void setRatingSum(Long ratingSum) { this.ratingSum = ratingSum; }
+    
+    public Integer getRatingCount() { return ratingCount; }
+    public void setRatingCount(Integer ratingCount) { this.ratingCount = ratingCount; }
+    
+    public Integer getOneStarCount() { return oneStarCount; }
+    public void setOneStarCount(Integer oneStarCount) { this.oneStarCount = oneStarCount; }
+    
+    public Integer getTwoStarCount() { return twoStarCount; }
+    public void setTwoStarCount(Integer twoStarCount) { this.twoStarCount = twoStarCount; }
+    
+    public Integer getThreeStarCount() { return threeStarCount; }
+    public void setThreeStarCount(Integer threeStarCount) { this.threeStarCount = threeStarCount; }
+    
+    public Integer getFourStarCount() { return fourStarCount; }
+    public void setFourStarCount(Integer fourStarCount) { this.fourStarCount = fourStarCount; }
+    
+    public Integer getFiveStarCount() { return fiveStarCount; }
+    public void setFiveStarCount(Integer fiveStarCount) { this.fiveStarCount = fiveStarCount; }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.healthyrecipe.event;
+
+/**
+ * Published by FavoriteService when a user adds a recipe to, or removes it from,
+ * their favorites.
+ */
+public class FavoriteChangedEvent {
+    
+    private final Long userId;
+    private final Long recipeId;
+    private final boolean added;
+    
+    public FavoriteChangedEvent(Long userId, Long recipeId, boolean added) {
+        this.userId = userId;
+        this.recipeId = recipeId;
+        this.added = added;
+    }
+    
+    public Long getUserId() { return userId; }
+    
+    public Long getRecipeId() { return recipeId; }
+    
+    public boolean isAdded() { return added; }
+}
\ No newline at end of file
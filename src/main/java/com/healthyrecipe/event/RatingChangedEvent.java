@@ -0,0 +1,28 @@
+package com.healthyrecipe.event;
+
+/**
+ * Published by RatingService when a user's rating for a recipe is created, changed or
+ * removed. A rating of 0 means "no rating" on that side of the change.
+ */
+public class RatingChangedEvent {
+    
+    private final Long userId;
+    private final Long recipeId;
+    private final int oldRating;
+    private final int newRating;
+    
+    public RatingChangedEvent(Long userId, Long recipeId, int oldRating, int newRating) {
+        this.userId = userId;
+        this.recipeId = recipeId;
+        this.oldRating = oldRating;
+        this.newRating = newRating;
+    }
+    
+    public Long getUserId() { return userId; }
+    
+    public Long getRecipeId() { return recipeId; }
+    
+    public int getOldRating() { return oldRating; }
+    
+    public int getNewRating() { return newRating; }
+}
\ No newline at end of file
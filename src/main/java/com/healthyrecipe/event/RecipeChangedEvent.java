@@ -0,0 +1,44 @@
+package com.healthyrecipe.event;
+
+import com.healthyrecipe.entity.Recipe;
+
+import java.util.List;
+
+/**
+ * Published by RecipeService whenever a recipe is written. In-memory indexes listen
+ * for it after the surrounding transaction commits.
+ */
+public class RecipeChangedEvent {
+    
+    private final ChangeType changeType;
+    private final Long recipeId;
+    private final Recipe recipe; // null for DELETED
+    private final List<String> ingredientNames;
+    
+    public RecipeChangedEvent(ChangeType changeType, Long recipeId, Recipe recipe, List<String> ingredientNames) {
+        this.changeType = changeType;
+        this.recipeId = recipeId;
+        this.recipe = recipe;
+        this.ingredientNames = ingredientNames != null ? List.copyOf(ingredientNames) : List.of();
+    }
+    
+    public static RecipeChangedEvent deleted(Long recipeId) {
+        return new RecipeChangedEvent(ChangeType.DELETED, recipeId, null, List.of());
+    }
+    
+    public ChangeType getChangeType() { return changeType; }
+    
+    public Long getRecipeId() { return recipeId; }
+    
+    public Recipe getRecipe() { return recipe; }
+    
+    public List<String> getIngredientNames() { return ingredientNames; }
+    
+    public boolean isApproved() {
+        return recipe != null && recipe.getStatus() == Recipe.RecipeStatus.APPROVED;
+    }
+    
+    public enum ChangeType {
+        CREATED, UPDATED, APPROVED, REJECTED, DELETED
+    }
+}
\ No newline at end of file
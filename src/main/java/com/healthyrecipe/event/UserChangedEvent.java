@@ -0,0 +1,18 @@
+package com.healthyrecipe.event;
+
+import com.healthyrecipe.entity.User;
+
+/**
+ * Published when a user signs up, or when their profile, role or account status
+ * changes.
+ */
+public class UserChangedEvent {
+    
+    private final User user;
+    
+    public UserChangedEvent(User user) {
+        this.user = user;
+    }
+    
+    public User getUser() { return user; }
+}
@@ -0,0 +1,326 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Allergen bitmask of every approved recipe, derived from its ingredient names. Built
+ * on startup and kept current from {@link RecipeChangedEvent}s, so excluding recipes
+ * for a set of allergies is one bitmask test per candidate and never loads ingredients.
+ *
+ * Allergies that do not name a known allergen class (e.g. "kiwi") are matched against
+ * the recipe's normalized ingredient names, which are kept alongside the mask.
+ */
+@Component
+public class AllergenIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AllergenIndex.class);
+    
+    // Allergy names users enter, mapped to the allergen classes they exclude
+    private static final Map<String, Integer> ALLERGY_MASKS = new HashMap<>();
+    
+    static {
+        for (Allergen allergen : Allergen.values()) {
+            for (String alias : allergen.aliases) {
+                ALLERGY_MASKS.merge(alias, allergen.bit(), (a, b) -> a | b);
+            }
+        }
+        // "nut-free" conventionally covers peanuts as well
+        ALLERGY_MASKS.put("nut", Allergen.TREE_NUTS.bit() | Allergen.PEANUTS.bit());
+        ALLERGY_MASKS.put("nuts", Allergen.TREE_NUTS.bit() | Allergen.PEANUTS.bit());
+        ALLERGY_MASKS.put("seafood", Allergen.FISH.bit() | Allergen.SHELLFISH.bit());
+    }
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    
+    // Concurrent so lookups from parallel scoring need no lock; writers synchronize on
+    // the index, and a rebuild swaps in a new map
+    private volatile Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    
+    // Changes committed while a rebuild reads the database, replayed onto the new map
+    // after the swap since the rows it read may predate them
+    private List<RecipeChangedEvent> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        synchronized (this) {
+            changedDuringBuild = new ArrayList<>();
+        }
+        
+        Map<Long, Entry> built;
+        try {
+            built = load();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringBuild = null;
+            }
+            throw e;
+        }
+        
+        synchronized (this) {
+            entries = built;
+            for (RecipeChangedEvent event : changedDuringBuild) {
+                apply(event);
+            }
+            changedDuringBuild = null;
+        }
+        
+        logger.info("Allergen index built with {} recipes", built.size());
+    }
+    
+    private Map<Long, Entry> load() {
+        Map<Long, List<String>> ingredientNames = new HashMap<>();
+        for (Object[] row : ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED)) {
+            ingredientNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+        
+        List<Long> approvedIds = recipeRepository.findIdsByStatus(Recipe.RecipeStatus.APPROVED);
+        
+        Map<Long, Entry> built = new ConcurrentHashMap<>();
+        for (Long id : approvedIds) {
+            built.put(id, entry(ingredientNames.getOrDefault(id, List.of())));
+        }
+        return built;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onRecipeChanged(RecipeChangedEvent event) {
+        apply(event);
+        if (changedDuringBuild != null) {
+            changedDuringBuild.add(event);
+        }
+    }
+    
+    // Called with the lock held; applying an event twice leaves the same entry
+    private void apply(RecipeChangedEvent event) {
+        if (event.isApproved()) {
+            entries.put(event.getRecipeId(), entry(event.getIngredientNames()));
+        } else {
+            entries.remove(event.getRecipeId());
+        }
+    }
+    
+    /**
+     * Tests whether an approved recipe contains none of the given allergies. The
+     * allergies are resolved once, so the predicate is cheap to call per candidate.
+     */
+    public LongPredicate safeFor(Set<String> allergies) {
+        AllergyFilter filter = AllergyFilter.of(allergies);
+        return id -> {
+            Entry entry = entries.get(id);
+            return entry != null && filter.accepts(entry);
+        };
+    }
+    
+    /**
+     * Bitmask of the allergen classes found in the given ingredient names.
+     */
+    public static int allergenMask(Collection<String> ingredientNames) {
+        return entry(ingredientNames).mask;
+    }
+    
+    /**
+     * Bitmask of the allergen classes named by the given allergies. Allergies that
+     * name no known class are not represented; see {@link #isClassified}.
+     */
+    public static int allergyMask(Set<String> allergies) {
+        return AllergyFilter.of(allergies).mask;
+    }
+    
+    /**
+     * Whether every allergy names a known allergen class, so that
+     * {@link #allergyMask} alone decides whether a recipe is safe.
+     */
+    public static boolean isClassified(Set<String> allergies) {
+        return AllergyFilter.of(allergies).terms.isEmpty();
+    }
+    
+    private static Entry entry(Collection<String> ingredientNames) {
+        int mask = 0;
+        StringBuilder text = new StringBuilder(" ");
+        for (String name : ingredientNames) {
+            String normalized = normalize(name);
+            if (normalized.isBlank()) {
+                continue;
+            }
+            for (Allergen allergen : Allergen.values()) {
+                if (allergen.matches(normalized)) {
+                    mask |= allergen.bit();
+                }
+            }
+            text.append(normalized, 1, normalized.length());
+        }
+        return new Entry(mask, text.toString());
+    }
+    
+    // Lowercases and reduces to space-separated words with a leading and trailing space,
+    // so whole words and phrases can be matched with contains(" word ")
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(" ");
+        boolean space = true;
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        if (!space) {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+    
+    // Matches a word or phrase, allowing a plural "s"/"es" on its last word
+    private static boolean containsTerm(String normalizedText, String term) {
+        return normalizedText.contains(" " + term + " ")
+                || normalizedText.contains(" " + term + "s ")
+                || normalizedText.contains(" " + term + "es ");
+    }
+    
+    private static class Entry {
+        final int mask;
+        final String ingredientText; // normalized ingredient names, for unknown allergies
+        
+        Entry(int mask, String ingredientText) {
+            this.mask = mask;
+            this.ingredientText = ingredientText;
+        }
+    }
+    
+    // A user's allergies resolved once per request: known classes to a mask, the rest to terms
+    private static class AllergyFilter {
+        final int mask;
+        final List<String> terms;
+        
+        AllergyFilter(int mask, List<String> terms) {
+            this.mask = mask;
+            this.terms = terms;
+        }
+        
+        static AllergyFilter of(Set<String> allergies) {
+            int mask = 0;
+            List<String> terms = new ArrayList<>();
+            for (String allergy : allergies) {
+                String normalized = normalize(allergy).trim();
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                Integer allergenMask = ALLERGY_MASKS.get(normalized);
+                if (allergenMask != null) {
+                    mask |= allergenMask;
+                } else {
+                    terms.add(normalized);
+                }
+            }
+            return new AllergyFilter(mask, terms);
+        }
+        
+        boolean accepts(Entry entry) {
+            if ((entry.mask & mask) != 0) {
+                return false;
+            }
+            for (String term : terms) {
+                if (containsTerm(entry.ingredientText, term)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Common allergen classes. Keywords are matched as whole words in normalized
+     * ingredient names; an ingredient containing one of the class's exclusions
+     * (e.g. "almond milk" for dairy) does not count for that class.
+     */
+    public enum Allergen {
+        GLUTEN(List.of("gluten", "wheat", "celiac", "coeliac"),
+                List.of("wheat", "flour", "bread", "breadcrumb", "panko", "pasta", "spaghetti", "macaroni",
+                        "noodle", "couscous", "bulgur", "semolina", "barley", "rye", "spelt", "farro", "seitan",
+                        "cracker", "crouton", "pita", "bagel", "bun", "malt", "beer", "soy sauce"),
+                List.of("gluten free", "rice flour", "almond flour", "coconut flour", "corn flour",
+                        "chickpea flour", "rice noodle", "buckwheat noodle")),
+        DAIRY(List.of("dairy", "milk", "lactose"),
+                List.of("milk", "buttermilk", "cheese", "butter", "cream", "yogurt", "yoghurt", "ghee", "whey",
+                        "casein", "parmesan", "mozzarella", "cheddar", "feta", "ricotta", "mascarpone", "custard",
+                        "kefir", "paneer", "creme fraiche"),
+                List.of("dairy free", "vegan", "coconut milk", "coconut cream", "almond milk", "oat milk",
+                        "soy milk", "rice milk", "cashew milk", "peanut butter", "almond butter", "cashew butter",
+                        "nut butter", "cocoa butter", "cream of tartar")),
+        EGGS(List.of("egg", "eggs"),
+                List.of("egg", "mayonnaise", "mayo", "meringue", "aioli"),
+                List.of("egg free", "vegan")),
+        PEANUTS(List.of("peanut", "peanuts"),
+                List.of("peanut", "groundnut"),
+                List.of("peanut free")),
+        TREE_NUTS(List.of("tree nut", "tree nuts"),
+                List.of("nut", "almond", "walnut", "cashew", "pecan", "pistachio", "hazelnut", "macadamia",
+                        "praline", "marzipan"),
+                List.of("nut free")),
+        SOY(List.of("soy", "soya", "soybean"),
+                List.of("soy", "soya", "soybean", "tofu", "tempeh", "edamame", "miso"),
+                List.of("soy free")),
+        FISH(List.of("fish"),
+                List.of("fish", "salmon", "tuna", "cod", "anchovy", "anchovies", "sardine", "mackerel", "trout",
+                        "tilapia", "halibut", "haddock", "snapper", "worcestershire"),
+                List.of()),
+        SHELLFISH(List.of("shellfish", "crustacean", "crustaceans"),
+                List.of("shellfish", "shrimp", "prawn", "crab", "lobster", "scallop", "mussel", "clam", "oyster",
+                        "crayfish", "langoustine", "squid", "calamari", "octopus"),
+                List.of("oyster mushroom")),
+        SESAME(List.of("sesame"),
+                List.of("sesame", "tahini"),
+                List.of());
+        
+        private final List<String> aliases;
+        private final List<String> keywords;
+        private final List<String> exclusions;
+        
+        Allergen(List<String> aliases, List<String> keywords, List<String> exclusions) {
+            this.aliases = aliases;
+            this.keywords = keywords;
+            this.exclusions = exclusions;
+        }
+        
+        int bit() {
+            return 1 << ordinal();
+        }
+        
+        boolean matches(String normalizedIngredient) {
+            for (String exclusion : exclusions) {
+                if (containsTerm(normalizedIngredient, exclusion)) {
+                    return false;
+                }
+            }
+            for (String keyword : keywords) {
+                if (containsTerm(normalizedIngredient, keyword)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
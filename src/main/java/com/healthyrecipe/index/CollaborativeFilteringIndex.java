@@ -0,0 +1,622 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.FavoriteChangedEvent;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.repository.FavoriteRepository;
+import com.healthyrecipe.repository.RatingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Item-to-item collaborative filtering over "likes" (favorites and ratings of at least
+ * {@code app.cf.like-rating}). For every recipe it keeps the top-N recipes liked by the
+ * same users, ranked by cosine similarity of their liker sets; a user is recommended
+ * the recipes most similar to the ones they like.
+ *
+ * The model is held in primitive arrays indexed by a dense item number, so memory is
+ * a few ints per interaction during a build and a few ints per neighbor afterwards.
+ * It is rebuilt from the database by a background job when interactions have changed,
+ * and rating and favorite events are applied to the co-occurrence counts in between.
+ */
+@Component
+public class CollaborativeFilteringIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CollaborativeFilteringIndex.class);
+    
+    // Only this many of a user's likes are used to build a recommendation
+    private static final int MAX_PROFILE_ITEMS = 200;
+    
+    @Value("${app.cf.neighbors:50}")
+    private int neighborCount;
+    
+    @Value("${app.cf.like-rating:4}")
+    private int likeRating;
+    
+    // Caps the quadratic pair count contributed by a single very active user
+    @Value("${app.cf.max-items-per-user:500}")
+    private int maxItemsPerUser;
+    
+    @Value("${app.cf.max-pending-updates:100000}")
+    private int maxPendingUpdates;
+    
+    @Autowired
+    private RatingRepository ratingRepository;
+    
+    @Autowired
+    private FavoriteRepository favoriteRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private volatile Model model = new Model(0);
+    
+    // Like changes waiting to be applied to the model by the update job
+    private final Queue<LikeChange> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    
+    // Set on every like change; the rebuild job only runs when it is set
+    private volatile boolean dirty;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.cf.rebuild-interval-ms:21600000}",
+               initialDelayString = "${app.cf.rebuild-interval-ms:21600000}")
+    public void rebuildIfChanged() {
+        if (dirty) {
+            rebuild();
+        }
+    }
+    
+    /**
+     * Recomputes the model from all likes. Changes queued before the build are in its
+     * snapshot and dropped; changes committed while it runs stay queued and are applied
+     * to the new model. A change committing just as the snapshot is taken can be counted
+     * twice; it marks the model dirty again so the next run settles it.
+     */
+    public synchronized void rebuild() {
+        dirty = false;
+        pending.clear();
+        pendingCount.set(0);
+        long start = System.nanoTime();
+        
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        Model built = transactionTemplate.execute(status -> {
+            try (Stream<Object[]> ratings = ratingRepository.streamUserAndRecipeIdsByMinRating(
+                         likeRating, Recipe.RecipeStatus.APPROVED);
+                 Stream<Object[]> favorites = favoriteRepository.streamUserAndRecipeIdsByRecipeStatus(
+                         Recipe.RecipeStatus.APPROVED)) {
+                return build(ratings.iterator(), favorites.iterator());
+            }
+        });
+        
+        model = built;
+        
+        logger.info("Collaborative filtering model built with {} recipes and {} likes in {} ms",
+                built.size, built.interactions, (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.cf.update-interval-ms:10000}")
+    public synchronized void applyPendingUpdates() {
+        Map<Long, List<LikeChange>> byUser = new HashMap<>();
+        LikeChange change;
+        while ((change = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            byUser.computeIfAbsent(change.userId, id -> new ArrayList<>()).add(change);
+        }
+        
+        Model current = model;
+        for (Map.Entry<Long, List<LikeChange>> entry : byUser.entrySet()) {
+            applyUserChanges(current, entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Replays one user's changes in commit order. A recipe is liked while it is favorited
+     * or rated at least likeRating, so only changes that flip that are applied, each
+     * against the user's likes as they stood at that change. The state before the batch
+     * is the user's current favorites and ratings with the batch rolled back.
+     */
+    private void applyUserChanges(Model current, Long userId, List<LikeChange> changes) {
+        Set<Long> favorited = new HashSet<>(favoriteRepository.findRecipeIdsByUserId(userId));
+        Set<Long> ratedHigh = new HashSet<>(ratingRepository.findRecipeIdsByUserIdAndMinRating(userId, likeRating));
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            LikeChange change = changes.get(i);
+            set(change.favorite ? favorited : ratedHigh, change.recipeId, change.before);
+        }
+        
+        Set<Long> likes = new LinkedHashSet<>(favorited);
+        likes.addAll(ratedHigh);
+        for (LikeChange change : changes) {
+            set(change.favorite ? favorited : ratedHigh, change.recipeId, change.after);
+            boolean liked = likes.contains(change.recipeId);
+            boolean likedNow = favorited.contains(change.recipeId) || ratedHigh.contains(change.recipeId);
+            if (liked != likedNow) {
+                set(likes, change.recipeId, likedNow);
+                current.apply(change.recipeId, likes, likedNow ? 1 : -1);
+            }
+        }
+    }
+    
+    private static void set(Set<Long> set, long recipeId, boolean present) {
+        if (present) {
+            set.add(recipeId);
+        } else {
+            set.remove(recipeId);
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        boolean liked = event.getOldRating() >= likeRating;
+        boolean likes = event.getNewRating() >= likeRating;
+        if (liked != likes) {
+            enqueue(new LikeChange(event.getUserId(), event.getRecipeId(), false, liked, likes));
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFavoriteChanged(FavoriteChangedEvent event) {
+        enqueue(new LikeChange(event.getUserId(), event.getRecipeId(), true, !event.isAdded(), event.isAdded()));
+    }
+    
+    // Like count of each known recipe, for tests
+    Map<Long, Integer> likeCounts() {
+        return model.likeCounts();
+    }
+    
+    // Co-occurrence counts by recipe and neighbor, for tests
+    Map<Long, Map<Long, Integer>> neighborCounts() {
+        return model.neighborCounts();
+    }
+    
+    /**
+     * Recipes for the given user, most relevant first, skipping recipes the user has
+     * already rated or favorited and recipes {@code eligible} rejects. The total is 0
+     * when the user has no likes the model knows about.
+     */
+    public RecipeLeaderboard.LeaderboardPage recommend(Long userId, LongPredicate eligible, int offset, int limit) {
+        Set<Long> likes = likedRecipeIds(userId);
+        Set<Long> seen = new HashSet<>(likes);
+        seen.addAll(ratingRepository.findRecipeIdsByUserId(userId));
+        
+        List<Long> profile = new ArrayList<>(likes);
+        if (profile.size() > MAX_PROFILE_ITEMS) {
+            profile = profile.subList(0, MAX_PROFILE_ITEMS);
+        }
+        return model.recommend(profile, seen, eligible, offset, limit);
+    }
+    
+    private Set<Long> likedRecipeIds(Long userId) {
+        Set<Long> likes = new LinkedHashSet<>(favoriteRepository.findRecipeIdsByUserId(userId));
+        likes.addAll(ratingRepository.findRecipeIdsByUserIdAndMinRating(userId, likeRating));
+        return likes;
+    }
+    
+    private void enqueue(LikeChange change) {
+        dirty = true;
+        // Past the cap, changes wait for the next rebuild instead of queueing
+        if (pendingCount.incrementAndGet() > maxPendingUpdates) {
+            pendingCount.decrementAndGet();
+            return;
+        }
+        pending.add(change);
+    }
+    
+    // Both iterators yield (user id, recipe id) ordered by user id
+    private Model build(Iterator<Object[]> ratings, Iterator<Object[]> favorites) {
+        Model built = new Model(neighborCount);
+        IntList userOffsets = new IntList();
+        IntList userItems = new IntList();
+        userOffsets.add(0);
+        
+        long[] buffer = new long[64];
+        Object[] rating = ratings.hasNext() ? ratings.next() : null;
+        Object[] favorite = favorites.hasNext() ? favorites.next() : null;
+        
+        while (rating != null || favorite != null) {
+            long user = Math.min(rating != null ? (Long) rating[0] : Long.MAX_VALUE,
+                    favorite != null ? (Long) favorite[0] : Long.MAX_VALUE);
+            
+            int count = 0;
+            while (rating != null && (Long) rating[0] == user) {
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, count * 2);
+                }
+                buffer[count++] = (Long) rating[1];
+                rating = ratings.hasNext() ? ratings.next() : null;
+            }
+            while (favorite != null && (Long) favorite[0] == user) {
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, count * 2);
+                }
+                buffer[count++] = (Long) favorite[1];
+                favorite = favorites.hasNext() ? favorites.next() : null;
+            }
+            
+            // Distinct recipes; beyond the cap keep the newest (highest ids)
+            Arrays.sort(buffer, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct == 0 || buffer[distinct - 1] != buffer[i]) {
+                    buffer[distinct++] = buffer[i];
+                }
+            }
+            for (int i = Math.max(0, distinct - maxItemsPerUser); i < distinct; i++) {
+                int item = built.addItem(buffer[i]);
+                built.likes[item]++;
+                userItems.add(item);
+            }
+            userOffsets.add(userItems.size);
+        }
+        built.interactions = userItems.size;
+        
+        // Invert to item -> users
+        int items = built.size;
+        int[] itemOffsets = new int[items + 1];
+        for (int i = 0; i < userItems.size; i++) {
+            itemOffsets[userItems.data[i] + 1]++;
+        }
+        for (int i = 0; i < items; i++) {
+            itemOffsets[i + 1] += itemOffsets[i];
+        }
+        int[] itemUsers = new int[userItems.size];
+        int[] cursor = Arrays.copyOf(itemOffsets, items);
+        for (int user = 0; user + 1 < userOffsets.size; user++) {
+            for (int p = userOffsets.data[user]; p < userOffsets.data[user + 1]; p++) {
+                itemUsers[cursor[userItems.data[p]]++] = user;
+            }
+        }
+        
+        // Co-occurrence counts one item at a time, in a reusable dense scratch row
+        int[] coCounts = new int[items];
+        int[] touched = new int[items];
+        int[] topItems = new int[neighborCount];
+        double[] topScores = new double[neighborCount];
+        for (int i = 0; i < items; i++) {
+            int touchedCount = 0;
+            for (int p = itemOffsets[i]; p < itemOffsets[i + 1]; p++) {
+                int user = itemUsers[p];
+                for (int q = userOffsets.data[user]; q < userOffsets.data[user + 1]; q++) {
+                    int j = userItems.data[q];
+                    if (j != i && coCounts[j]++ == 0) {
+                        touched[touchedCount++] = j;
+                    }
+                }
+            }
+            
+            int kept = 0;
+            for (int t = 0; t < touchedCount; t++) {
+                int j = touched[t];
+                double score = coCounts[j] / Math.sqrt((double) built.likes[i] * built.likes[j]);
+                kept = offerTop(topItems, topScores, kept, j, score);
+            }
+            for (int t = 0; t < kept; t++) {
+                built.setNeighbor(i, t, topItems[t], coCounts[topItems[t]]);
+            }
+            built.neighborSizes[i] = kept;
+            
+            for (int t = 0; t < touchedCount; t++) {
+                coCounts[touched[t]] = 0;
+            }
+        }
+        return built;
+    }
+    
+    // Min-heap of the best scores seen (worst at the root); returns the new heap size
+    private static int offerTop(int[] heapItems, double[] heapScores, int size, int item, double score) {
+        if (size < heapItems.length) {
+            int i = size++;
+            heapItems[i] = item;
+            heapScores[i] = score;
+            while (i > 0 && heapScores[(i - 1) / 2] > heapScores[i]) {
+                swap(heapItems, heapScores, i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        } else if (size > 0 && score > heapScores[0]) {
+            heapItems[0] = item;
+            heapScores[0] = score;
+            int i = 0;
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heapScores[left] < heapScores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heapScores[right] < heapScores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    break;
+                }
+                swap(heapItems, heapScores, i, smallest);
+                i = smallest;
+            }
+        }
+        return size;
+    }
+    
+    private static void swap(int[] items, double[] scores, int a, int b) {
+        int item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+    
+    /**
+     * Item arrays indexed by dense item number. Neighbors of item i occupy slots
+     * [i * k, i * k + neighborSizes[i]) of neighbors/coCounts; co-occurrence counts
+     * rather than scores are stored so like changes can be applied in place.
+     */
+    private static class Model {
+        final int k;
+        final LongIntMap index = new LongIntMap();
+        long[] itemIds = new long[16];
+        int[] likes = new int[16];
+        int[] neighborSizes = new int[16];
+        int[] neighbors;
+        int[] coCounts;
+        int size;
+        long interactions;
+        
+        Model(int k) {
+            this.k = k;
+            this.neighbors = new int[16 * k];
+            this.coCounts = new int[16 * k];
+        }
+        
+        int addItem(long recipeId) {
+            int item = index.get(recipeId);
+            if (item >= 0) {
+                return item;
+            }
+            if (size == itemIds.length) {
+                int capacity = size * 2;
+                itemIds = Arrays.copyOf(itemIds, capacity);
+                likes = Arrays.copyOf(likes, capacity);
+                neighborSizes = Arrays.copyOf(neighborSizes, capacity);
+                neighbors = Arrays.copyOf(neighbors, capacity * k);
+                coCounts = Arrays.copyOf(coCounts, capacity * k);
+            }
+            item = size++;
+            itemIds[item] = recipeId;
+            index.put(recipeId, item);
+            return item;
+        }
+        
+        void setNeighbor(int item, int slot, int neighbor, int coCount) {
+            neighbors[item * k + slot] = neighbor;
+            coCounts[item * k + slot] = coCount;
+        }
+        
+        // A user gained (delta 1) or lost (delta -1) a like of recipeId; partners are
+        // the user's other likes at that change
+        synchronized void apply(long recipeId, Collection<Long> partners, int delta) {
+            if (k == 0) {
+                return;
+            }
+            int j = index.get(recipeId);
+            if (j < 0) {
+                if (delta < 0) {
+                    return;
+                }
+                j = addItem(recipeId);
+            }
+            likes[j] = Math.max(0, likes[j] + delta);
+            
+            for (Long partner : partners) {
+                int i = index.get(partner);
+                if (i < 0 || i == j) {
+                    continue;
+                }
+                adjust(i, j, delta);
+                adjust(j, i, delta);
+            }
+        }
+        
+        // Changes the co-occurrence count of neighbor j in i's list; a new pair is only
+        // added while the list has room, the next rebuild ranks it properly
+        private void adjust(int i, int j, int delta) {
+            int base = i * k;
+            for (int slot = 0; slot < neighborSizes[i]; slot++) {
+                if (neighbors[base + slot] == j) {
+                    coCounts[base + slot] += delta;
+                    if (coCounts[base + slot] <= 0) {
+                        int last = --neighborSizes[i];
+                        neighbors[base + slot] = neighbors[base + last];
+                        coCounts[base + slot] = coCounts[base + last];
+                    }
+                    return;
+                }
+            }
+            if (delta > 0 && neighborSizes[i] < k) {
+                setNeighbor(i, neighborSizes[i]++, j, delta);
+            }
+        }
+        
+        synchronized Map<Long, Integer> likeCounts() {
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                if (likes[i] > 0) {
+                    counts.put(itemIds[i], likes[i]);
+                }
+            }
+            return counts;
+        }
+        
+        synchronized Map<Long, Map<Long, Integer>> neighborCounts() {
+            Map<Long, Map<Long, Integer>> counts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                for (int slot = 0; slot < neighborSizes[i]; slot++) {
+                    counts.computeIfAbsent(itemIds[i], id -> new HashMap<>())
+                            .put(itemIds[neighbors[i * k + slot]], coCounts[i * k + slot]);
+                }
+            }
+            return counts;
+        }
+        
+        synchronized RecipeLeaderboard.LeaderboardPage recommend(List<Long> profile, Set<Long> seen,
+                                                                LongPredicate eligible, int offset, int limit) {
+            LongIntMap slots = new LongIntMap();
+            IntList candidates = new IntList();
+            double[] scores = new double[16];
+            
+            for (Long likedId : profile) {
+                int i = index.get(likedId);
+                if (i < 0 || likes[i] == 0) {
+                    continue;
+                }
+                int base = i * k;
+                for (int slot = 0; slot < neighborSizes[i]; slot++) {
+                    int j = neighbors[base + slot];
+                    if (likes[j] == 0 || seen.contains(itemIds[j])) {
+                        continue;
+                    }
+                    double score = coCounts[base + slot] / Math.sqrt((double) likes[i] * likes[j]);
+                    
+                    int candidate = slots.get(j);
+                    if (candidate < 0) {
+                        candidate = candidates.size;
+                        candidates.add(j);
+                        slots.put(j, candidate);
+                        if (candidate == scores.length) {
+                            scores = Arrays.copyOf(scores, candidate * 2);
+                        }
+                    }
+                    scores[candidate] += score;
+                }
+            }
+            
+            List<Integer> ranked = new ArrayList<>(candidates.size);
+            for (int c = 0; c < candidates.size; c++) {
+                if (eligible.test(itemIds[candidates.data[c]])) {
+                    ranked.add(c);
+                }
+            }
+            double[] finalScores = scores;
+            ranked.sort((a, b) -> {
+                int byScore = Double.compare(finalScores[b], finalScores[a]);
+                return byScore != 0 ? byScore
+                        : Long.compare(itemIds[candidates.data[b]], itemIds[candidates.data[a]]);
+            });
+            
+            List<Long> ids = new ArrayList<>((int) Math.max(0, Math.min(limit, (long) ranked.size() - offset)));
+            for (int r = offset; r < ranked.size() && ids.size() < limit; r++) {
+                ids.add(itemIds[candidates.data[ranked.get(r)]]);
+            }
+            return new RecipeLeaderboard.LeaderboardPage(ids, ranked.size());
+        }
+    }
+    
+    // Open-addressing long -> non-negative int map; get returns -1 when absent
+    private static class LongIntMap {
+        private long[] keys = new long[16];
+        private int[] values = filled(16);
+        private int size;
+        
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = slot(key, mask); values[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+        
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (values[slot] >= 0) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+        
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = filled(oldKeys.length * 2);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] >= 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+        
+        private static int[] filled(int length) {
+            int[] values = new int[length];
+            Arrays.fill(values, -1);
+            return values;
+        }
+    }
+    
+    private static class IntList {
+        int[] data = new int[64];
+        int size;
+        
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+    
+    // A change of the user's favorite (favorite = true) or of whether they rate the recipe
+    // at least likeRating, from before to after
+    private static class LikeChange {
+        final long userId;
+        final long recipeId;
+        final boolean favorite;
+        final boolean before;
+        final boolean after;
+        
+        LikeChange(long userId, long recipeId, boolean favorite, boolean before, boolean after) {
+            this.userId = userId;
+            this.recipeId = recipeId;
+            this.favorite = favorite;
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Distinct ingredient names of all recipes with their usage counts, in a prefix trie
+ * whose nodes cache the most used names below them. Built on startup and kept current
+ * from {@link RecipeChangedEvent}s, so autocomplete is a walk down the typed prefix
+ * and never touches the database.
+ *
+ * Names are also reachable from each of their later words, so "bre" suggests
+ * "chicken breast".
+ */
+@Component
+public class IngredientDictionary {
+    
+    private static final Logger logger = LoggerFactory.getLogger(IngredientDictionary.class);
+    
+    // Suggestions cached per trie node, and so the most one lookup can return
+    public static final int MAX_SUGGESTIONS = 20;
+    
+    private static final Comparator<Term> BY_USAGE = Comparator.comparingInt((Term t) -> t.count).reversed()
+            .thenComparing(t -> t.name);
+    
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private Node root = new Node();
+    
+    private Map<String, Term> terms = new HashMap<>();
+    
+    // Normalized names per recipe, so an update can take back the names it replaces
+    private Map<Long, List<String>> recipeNames = new HashMap<>();
+    
+    // Changes committed while a rebuild reads the database, replayed onto the new trie
+    // after the swap since the rows it read may predate them
+    private List<RecipeChangedEvent> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        List<Object[]> rows;
+        try {
+            rows = ingredientRepository.findRecipeIdAndName();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        
+        Map<Long, List<String>> builtNames = new HashMap<>();
+        Map<String, Term> builtTerms = new HashMap<>();
+        for (Object[] row : rows) {
+            String name = normalize((String) row[1]);
+            if (!name.isEmpty()) {
+                builtNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(name);
+                builtTerms.computeIfAbsent(name, Term::new).count++;
+            }
+        }
+        
+        Node builtRoot = new Node();
+        for (Term term : builtTerms.values()) {
+            for (String key : keys(term.name)) {
+                builtRoot.insert(key, term);
+            }
+        }
+        builtRoot.computeTopBelow();
+        
+        lock.writeLock().lock();
+        try {
+            root = builtRoot;
+            terms = builtTerms;
+            recipeNames = builtNames;
+            for (RecipeChangedEvent event : changedDuringBuild) {
+                apply(event);
+            }
+            changedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        logger.info("Ingredient dictionary built with {} names", builtTerms.size());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (changedDuringBuild != null) {
+                changedDuringBuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Called with the write lock held. Counts move by the difference to the names last
+    // recorded for the recipe, so applying an event twice leaves them unchanged.
+    private void apply(RecipeChangedEvent event) {
+        List<String> names = new ArrayList<>();
+        for (String name : event.getIngredientNames()) {
+            String normalized = normalize(name);
+            if (!normalized.isEmpty()) {
+                names.add(normalized);
+            }
+        }
+        
+        List<String> previous = event.getRecipe() != null
+                ? recipeNames.put(event.getRecipeId(), names)
+                : recipeNames.remove(event.getRecipeId());
+        Map<String, Integer> deltas = new HashMap<>();
+        if (previous != null) {
+            previous.forEach(name -> deltas.merge(name, -1, Integer::sum));
+        }
+        if (event.getRecipe() != null) {
+            names.forEach(name -> deltas.merge(name, 1, Integer::sum));
+        }
+        deltas.forEach((name, delta) -> {
+            if (delta != 0) {
+                adjust(name, delta);
+            }
+        });
+    }
+    
+    /**
+     * Most used ingredient names starting with the given prefix, or with one of their
+     * words starting with it. A blank prefix returns the most used names overall.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        lock.readLock().lock();
+        try {
+            Node node = root.find(key);
+            if (node == null) {
+                return List.of();
+            }
+            List<Suggestion> suggestions = new ArrayList<>();
+            for (Term term : node.top.subList(0, Math.min(limit, node.top.size()))) {
+                suggestions.add(new Suggestion(term.name, term.count));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void adjust(String name, int delta) {
+        Term term = terms.computeIfAbsent(name, Term::new);
+        boolean added = term.count == 0;
+        term.count += delta;
+        
+        for (String key : keys(name)) {
+            if (added) {
+                root.insert(key, term);
+            }
+            if (term.count <= 0) {
+                root.find(key).terms.remove(term);
+            }
+            root.refreshPath(key);
+        }
+        if (term.count <= 0) {
+            terms.remove(name);
+        }
+    }
+    
+    // Lowercased with runs of whitespace collapsed, so "Olive  Oil" and "olive oil" are one name
+    private static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+    
+    // The name itself and its suffixes starting at each later word
+    private static List<String> keys(String name) {
+        List<String> keys = new ArrayList<>();
+        keys.add(name);
+        for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+            if (i + 1 < name.length()) {
+                keys.add(name.substring(i + 1));
+            }
+        }
+        return keys;
+    }
+    
+    private static class Term {
+        final String name;
+        int count;
+        
+        Term(String name) {
+            this.name = name;
+        }
+    }
+    
+    private static class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        final Set<Term> terms = new HashSet<>(1); // terms whose key ends here
+        List<Term> top = List.of(); // most used terms at or below this node
+        
+        void insert(String key, Term term) {
+            Node node = this;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            node.terms.add(term);
+        }
+        
+        Node find(String key) {
+            Node node = this;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            return node;
+        }
+        
+        // Recomputes the cached top terms of every node on the key's path, deepest first
+        void refreshPath(String key) {
+            Node[] path = new Node[key.length() + 1];
+            path[0] = this;
+            for (int i = 0; i < key.length(); i++) {
+                path[i + 1] = path[i].children.get(key.charAt(i));
+            }
+            for (int i = key.length(); i >= 0; i--) {
+                path[i].computeTop();
+            }
+        }
+        
+        void computeTopBelow() {
+            for (Node child : children.values()) {
+                child.computeTopBelow();
+            }
+            computeTop();
+        }
+        
+        private void computeTop() {
+            Set<Term> candidates = new HashSet<>(terms);
+            for (Node child : children.values()) {
+                candidates.addAll(child.top);
+            }
+            if (candidates.isEmpty()) {
+                top = List.of();
+                return;
+            }
+            List<Term> sorted = new ArrayList<>(candidates);
+            sorted.sort(BY_USAGE);
+            top = sorted.size() > MAX_SUGGESTIONS ? new ArrayList<>(sorted.subList(0, MAX_SUGGESTIONS)) : sorted;
+        }
+    }
+    
+    public static class Suggestion {
+        private final String name;
+        private final int count;
+        
+        public Suggestion(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+        
+        public String getName() { return name; }
+        
+        public int getCount() { return count; }
+    }
+}
@@ -0,0 +1,425 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Posting lists from normalized ingredient names to the approved recipes using them,
+ * for "what can I cook" searches. Built on startup and kept current from
+ * {@link RecipeChangedEvent}s, so ranking recipes against a pantry only touches the
+ * posting lists of the pantry's items.
+ *
+ * Names are normalized by lowercasing, dropping preparation words ("chopped", "fresh")
+ * and singularizing, so "2 Fresh Tomatoes, diced" and "tomato" are the same ingredient.
+ */
+@Component
+public class PantryIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PantryIndex.class);
+    
+    private static final Set<String> DESCRIPTORS = Set.of(
+            "fresh", "freshly", "chopped", "diced", "minced", "sliced", "grated", "shredded", "crushed",
+            "peeled", "finely", "roughly", "thinly", "large", "small", "medium", "organic", "raw", "ripe",
+            "to", "taste", "optional", "of", "and", "or", "for", "a", "the");
+    
+    private static final long ORDINAL_MASK = (1L << 31) - 1;
+    
+    private static final Set<String> UNCHANGED_PLURALS = Set.of(
+            "asparagus", "couscous", "hummus", "molasses", "citrus", "swiss", "octopus", "bass", "grits");
+    
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private Postings postings = new Postings();
+    
+    // Changes committed while a rebuild reads the database, replayed onto the new postings
+    // after the swap since the rows it read may predate them
+    private List<RecipeChangedEvent> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        Postings built;
+        try {
+            built = load();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            postings = built;
+            for (RecipeChangedEvent event : changedDuringBuild) {
+                apply(event);
+            }
+            changedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        logger.info("Pantry index built with {} recipes and {} ingredients",
+                built.ordinals.size(), built.keyNames.size());
+    }
+    
+    private Postings load() {
+        Map<Long, List<String>> ingredientNames = new TreeMap<>();
+        for (Object[] row : ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED)) {
+            ingredientNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+        
+        // Ascending recipe ids give ascending ordinals, so posting lists are appended in order
+        Postings built = new Postings();
+        ingredientNames.forEach(built::put);
+        return built;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (changedDuringBuild != null) {
+                changedDuringBuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Called with the write lock held; applying an event twice leaves the same postings
+    private void apply(RecipeChangedEvent event) {
+        if (event.isApproved()) {
+            postings.put(event.getRecipeId(), event.getIngredientNames());
+        } else {
+            postings.remove(event.getRecipeId());
+        }
+    }
+    
+    /**
+     * Ranks approved recipes by the fraction of their ingredients found in the pantry,
+     * then by fewest missing ingredients and newest first. Only recipes using at least
+     * one pantry item are returned; with {@code maxMissing} set, only recipes missing
+     * at most that many ingredients.
+     */
+    public PantryPage search(Collection<String> pantryItems, Integer maxMissing, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return postings.search(pantryItems, maxMissing, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder();
+        for (String word : name.toLowerCase(Locale.ROOT).split("[^\\p{L}]+")) {
+            if (word.isEmpty() || DESCRIPTORS.contains(word)) {
+                continue;
+            }
+            if (normalized.length() > 0) {
+                normalized.append(' ');
+            }
+            normalized.append(singular(word));
+        }
+        return normalized.toString();
+    }
+    
+    private static String singular(String word) {
+        if (word.length() <= 3 || UNCHANGED_PLURALS.contains(word) || word.endsWith("ss") || word.endsWith("us")) {
+            return word;
+        }
+        if (word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes") || word.endsWith("xes")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("s")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+    
+    private static class Postings {
+        final Map<String, Integer> keyIds = new HashMap<>();
+        final List<String> keyNames = new ArrayList<>();
+        final List<IntList> lists = new ArrayList<>(); // key id -> ascending recipe ordinals
+        
+        final Map<Long, Integer> ordinals = new HashMap<>();
+        long[] ids = new long[1024];
+        int[][] recipeKeys = new int[1024][]; // ordinal -> distinct key ids, null once removed
+        int size;
+        
+        // Lower bound on the distinct ingredients of any indexed recipe
+        int minIngredients = Integer.MAX_VALUE;
+        
+        void put(long recipeId, Collection<String> names) {
+            Set<Integer> keys = new LinkedHashSet<>();
+            for (String name : names) {
+                String key = normalize(name);
+                if (!key.isEmpty()) {
+                    keys.add(keyIds.computeIfAbsent(key, k -> {
+                        keyNames.add(k);
+                        lists.add(new IntList());
+                        return keyNames.size() - 1;
+                    }));
+                }
+            }
+            if (keys.isEmpty()) {
+                remove(recipeId);
+                return;
+            }
+            
+            // An updated recipe keeps its ordinal, so its position among ties does not change
+            Integer ordinal = ordinals.get(recipeId);
+            if (ordinal != null) {
+                unlink(ordinal);
+            } else {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    recipeKeys = Arrays.copyOf(recipeKeys, size * 2);
+                }
+                ordinal = size++;
+                ids[ordinal] = recipeId;
+                ordinals.put(recipeId, ordinal);
+            }
+            recipeKeys[ordinal] = keys.stream().mapToInt(Integer::intValue).toArray();
+            for (int key : recipeKeys[ordinal]) {
+                lists.get(key).insert(ordinal);
+            }
+            minIngredients = Math.min(minIngredients, keys.size());
+        }
+        
+        void remove(long recipeId) {
+            Integer ordinal = ordinals.remove(recipeId);
+            if (ordinal != null) {
+                unlink(ordinal);
+            }
+        }
+        
+        private void unlink(int ordinal) {
+            for (int key : recipeKeys[ordinal]) {
+                lists.get(key).remove(ordinal);
+            }
+            recipeKeys[ordinal] = null;
+        }
+        
+        PantryPage search(Collection<String> pantryItems, Integer maxMissing, int offset, int limit) {
+            Set<Integer> keys = new HashSet<>();
+            for (String item : pantryItems) {
+                Integer key = keyIds.get(normalize(item));
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+            List<IntList> pantryLists = new ArrayList<>();
+            for (int key : keys) {
+                pantryLists.add(lists.get(key));
+            }
+            // Shortest lists first, so candidates stop being admitted as early as possible
+            pantryLists.sort(Comparator.comparingInt(list -> list.size));
+            
+            int[] matched = new int[size];
+            IntList candidates = new IntList();
+            for (int i = 0; i < pantryLists.size(); i++) {
+                int remaining = pantryLists.size() - i; // lists left including this one
+                // A recipe first seen now can match at most `remaining` ingredients; once that
+                // cannot satisfy maxMissing for any recipe, later lists only update candidates
+                boolean admit = maxMissing == null || remaining >= minIngredients - maxMissing;
+                IntList list = pantryLists.get(i);
+                for (int j = 0; j < list.size; j++) {
+                    int ordinal = list.data[j];
+                    if (matched[ordinal] > 0) {
+                        matched[ordinal]++;
+                    } else if (admit && (maxMissing == null || remaining >= recipeKeys[ordinal].length - maxMissing)) {
+                        matched[ordinal] = 1;
+                        candidates.add(ordinal);
+                    }
+                }
+            }
+            
+            // Bounded min-heap of rank keys: the worst kept candidate is at the root. It never
+            // needs more room than there are candidates, whatever page is requested
+            int wanted = (int) Math.min((long) offset + limit, candidates.size);
+            long[] heap = new long[Math.max(1, wanted)];
+            int heapSize = 0;
+            long total = 0;
+            for (int j = 0; j < candidates.size; j++) {
+                int ordinal = candidates.data[j];
+                int missing = recipeKeys[ordinal].length - matched[ordinal];
+                if (maxMissing != null && missing > maxMissing) {
+                    continue;
+                }
+                total++;
+                long key = rankKey(matched[ordinal], recipeKeys[ordinal].length, ordinal);
+                if (heapSize < wanted) {
+                    heap[heapSize++] = key;
+                    siftUp(heap, heapSize - 1);
+                } else if (wanted > 0 && key > heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, heapSize);
+                }
+            }
+            
+            long[] ranked = Arrays.copyOf(heap, heapSize);
+            Arrays.sort(ranked);
+            List<PantryMatch> matches = new ArrayList<>();
+            for (int i = ranked.length - 1 - offset; i >= 0; i--) {
+                int ordinal = (int) (ranked[i] & ORDINAL_MASK);
+                List<String> missing = new ArrayList<>();
+                for (int key : recipeKeys[ordinal]) {
+                    if (!keys.contains(key)) {
+                        missing.add(keyNames.get(key));
+                    }
+                }
+                matches.add(new PantryMatch(ids[ordinal], matched[ordinal], recipeKeys[ordinal].length, missing));
+            }
+            return new PantryPage(matches, total);
+        }
+        
+        // Coverage as a 20-bit fraction, then fewer missing ingredients, then the newer
+        // recipe, packed so that a larger key ranks higher
+        private static long rankKey(int matched, int ingredients, int ordinal) {
+            long coverage = ((long) matched << 20) / ingredients;
+            long fewerMissing = 1023 - Math.min(1023, ingredients - matched);
+            return coverage << 41 | fewerMissing << 31 | ordinal;
+        }
+        
+        private static void siftUp(long[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (heap[parent] <= heap[index]) {
+                    return;
+                }
+                long swap = heap[parent];
+                heap[parent] = heap[index];
+                heap[index] = swap;
+                index = parent;
+            }
+        }
+        
+        private static void siftDown(long[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                long swap = heap[smallest];
+                heap[smallest] = heap[index];
+                heap[index] = swap;
+                index = smallest;
+            }
+        }
+    }
+    
+    private static class IntList {
+        int[] data = new int[8];
+        int size;
+        
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        // Posting lists keep ordinals ascending; new recipes have the highest ordinal and are appended
+        void insert(int value) {
+            int index = size == 0 || data[size - 1] < value ? size : Arrays.binarySearch(data, 0, size, value);
+            if (index >= 0 && index < size) {
+                return;
+            }
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            System.arraycopy(data, index, data, index + 1, size - index);
+            data[index] = value;
+            size++;
+        }
+
+        void remove(int value) {
+            int index = Arrays.binarySearch(data, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(data, index + 1, data, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+    
+    public static class PantryMatch {
+        private final long recipeId;
+        private final int matchedIngredients;
+        private final int totalIngredients;
+        private final List<String> missingIngredients;
+        
+        public PantryMatch(long recipeId, int matchedIngredients, int totalIngredients, List<String> missingIngredients) {
+            this.recipeId = recipeId;
+            this.matchedIngredients = matchedIngredients;
+            this.totalIngredients = totalIngredients;
+            this.missingIngredients = missingIngredients;
+        }
+        
+        public long getRecipeId() { return recipeId; }
+        
+        public int getMatchedIngredients() { return matchedIngredients; }
+        
+        public int getTotalIngredients() { return totalIngredients; }
+        
+        public List<String> getMissingIngredients() { return missingIngredients; }
+    }
+    
+    public static class PantryPage {
+        private final List<PantryMatch> matches;
+        private final long total;
+        
+        public PantryPage(List<PantryMatch> matches, long total) {
+            this.matches = matches;
+            this.total = total;
+        }
+        
+        public List<PantryMatch> getMatches() { return matches; }
+        
+        public long getTotal() { return total; }
+    }
+}
@@ -0,0 +1,509 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.dto.recipe.RecipeQuery;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed bitmaps of every recipe by status, category, dietary tag, difficulty and
+ * bucketed calories and total time. Built on startup and kept current from
+ * {@link RecipeChangedEvent}s, so recipe filters are bitmap ANDs and ORs that never
+ * touch the database.
+ *
+ * Bits are recipe ordinals assigned in creation order, so iterating a result from the
+ * highest bit down lists it newest first. Ordinals of deleted recipes stay unused until
+ * the next rebuild.
+ */
+@Component
+public class RecipeFilterIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecipeFilterIndex.class);
+    
+    // Range buckets; the last bucket of each is open-ended
+    private static final int CALORIE_BUCKET_WIDTH = 100;
+    private static final int CALORIE_BUCKETS = 20;
+    private static final int TIME_BUCKET_WIDTH = 5;
+    private static final int TIME_BUCKETS = 36;
+    
+    private static final int NO_VALUE = Integer.MIN_VALUE;
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private Bitmaps bitmaps = new Bitmaps();
+    
+    // Changes committed while a rebuild reads the database, replayed onto the new bitmaps
+    // after the swap since the rows it read may predate them
+    private List<RecipeChangedEvent> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        Bitmaps built;
+        try {
+            built = load();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            bitmaps = built;
+            for (RecipeChangedEvent event : changedDuringBuild) {
+                apply(event);
+            }
+            changedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        logger.info("Recipe filter index built with {} recipes and {} dietary tags",
+                built.ordinals.size(), built.byTag.size());
+    }
+    
+    private Bitmaps load() {
+        Bitmaps built = new Bitmaps();
+        for (Object[] row : recipeRepository.findFilterFeaturesOrderByCreatedAt()) {
+            built.add((Long) row[0], (Recipe.RecipeStatus) row[1], (Recipe.DifficultyLevel) row[2], (Integer) row[3],
+                    totalTime((Integer) row[4], (Integer) row[5]));
+        }
+        for (Object[] row : recipeRepository.findRecipeIdAndCategory()) {
+            Integer ordinal = built.ordinals.get((Long) row[0]);
+            if (ordinal != null) {
+                built.byCategory.get((Recipe.RecipeCategory) row[1]).add(ordinal);
+            }
+        }
+        for (Object[] row : recipeRepository.findRecipeIdAndDietaryTag()) {
+            Integer ordinal = built.ordinals.get((Long) row[0]);
+            if (ordinal != null) {
+                built.byTag.computeIfAbsent((String) row[1], tag -> new RoaringBitmap()).add(ordinal);
+            }
+        }
+        built.optimize();
+        return built;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (changedDuringBuild != null) {
+                changedDuringBuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Called with the write lock held; applying an event twice leaves the same bits
+    private void apply(RecipeChangedEvent event) {
+        Recipe recipe = event.getRecipe();
+        if (recipe == null) {
+            bitmaps.remove(event.getRecipeId());
+        } else {
+            bitmaps.put(recipe);
+        }
+    }
+    
+    /**
+     * Approved recipes in any of the given categories, newest first.
+     */
+    public RecipeLeaderboard.LeaderboardPage approvedByCategories(Collection<Recipe.RecipeCategory> categories,
+                                                                   int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return bitmaps.page(RoaringBitmap.and(bitmaps.approved(), bitmaps.anyCategory(categories)), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Approved recipes carrying any of the given dietary tags, newest first.
+     */
+    public RecipeLeaderboard.LeaderboardPage approvedByDietaryTags(Collection<String> tags, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return bitmaps.page(RoaringBitmap.and(bitmaps.approved(), bitmaps.anyTag(tags)), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Approved recipes with calories between the given bounds (inclusive), newest first.
+     */
+    public RecipeLeaderboard.LeaderboardPage approvedByCalorieRange(int minCalories, int maxCalories,
+                                                                     int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return bitmaps.page(RoaringBitmap.and(bitmaps.approved(),
+                    bitmaps.calorieRange(minCalories, maxCalories)), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Approved recipes with a total time of at most {@code maxTime} minutes, newest first.
+     */
+    public RecipeLeaderboard.LeaderboardPage approvedByMaxTime(int maxTime, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return bitmaps.page(RoaringBitmap.and(bitmaps.approved(), bitmaps.maxTime(maxTime)), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Approved recipes of the given difficulty, newest first.
+     */
+    public RecipeLeaderboard.LeaderboardPage approvedByDifficulty(Recipe.DifficultyLevel difficulty,
+                                                                   int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return bitmaps.page(RoaringBitmap.and(bitmaps.approved(),
+                    bitmaps.anyDifficulty(List.of(difficulty))), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Evaluates a combined query over approved recipes and counts its facets. Category
+     * and difficulty counts leave out the query's own category and difficulty filter;
+     * dietary tag counts apply every filter and are limited to the most frequent tags.
+     */
+    public FacetedPage query(RecipeQuery query, int offset, int limit, int maxTagFacets) {
+        lock.readLock().lock();
+        try {
+            // Everything except the category and difficulty filters, which facets leave out
+            RoaringBitmap base = bitmaps.approved().clone();
+            if (!query.getDietaryTags().isEmpty()) {
+                base.and(bitmaps.allTags(query.getDietaryTags()));
+            }
+            if (query.getMinCalories() != null || query.getMaxCalories() != null) {
+                base.and(bitmaps.calorieRange(query.getMinCalories(), query.getMaxCalories()));
+            }
+            if (query.getMaxTime() != null) {
+                base.and(bitmaps.maxTime(query.getMaxTime()));
+            }
+            RoaringBitmap categories = query.getCategories().isEmpty()
+                    ? null : bitmaps.anyCategory(query.getCategories());
+            RoaringBitmap difficulties = query.getDifficulties().isEmpty()
+                    ? null : bitmaps.anyDifficulty(query.getDifficulties());
+            
+            RoaringBitmap withCategories = categories != null ? RoaringBitmap.and(base, categories) : base;
+            RoaringBitmap withDifficulties = difficulties != null ? RoaringBitmap.and(base, difficulties) : base;
+            RoaringBitmap result = difficulties != null ? RoaringBitmap.and(withCategories, difficulties) : withCategories;
+            
+            Map<Recipe.RecipeCategory, Long> categoryCounts = new EnumMap<>(Recipe.RecipeCategory.class);
+            for (Map.Entry<Recipe.RecipeCategory, RoaringBitmap> entry : bitmaps.byCategory.entrySet()) {
+                categoryCounts.put(entry.getKey(), (long) RoaringBitmap.andCardinality(withDifficulties, entry.getValue()));
+            }
+            Map<Recipe.DifficultyLevel, Long> difficultyCounts = new EnumMap<>(Recipe.DifficultyLevel.class);
+            for (Map.Entry<Recipe.DifficultyLevel, RoaringBitmap> entry : bitmaps.byDifficulty.entrySet()) {
+                difficultyCounts.put(entry.getKey(), (long) RoaringBitmap.andCardinality(withCategories, entry.getValue()));
+            }
+            
+            return new FacetedPage(bitmaps.page(result, offset, limit), categoryCounts,
+                    tagCounts(result, maxTagFacets), difficultyCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Most frequent tags within the result, ties broken by tag name
+    private Map<String, Long> tagCounts(RoaringBitmap result, int limit) {
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        if (!result.isEmpty()) {
+            for (Map.Entry<String, RoaringBitmap> entry : bitmaps.byTag.entrySet()) {
+                long count = RoaringBitmap.andCardinality(result, entry.getValue());
+                if (count > 0) {
+                    counts.add(Map.entry(entry.getKey(), count));
+                }
+            }
+        }
+        counts.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : counts.subList(0, Math.min(limit, counts.size()))) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+    
+    // Unknown when either part is missing, as in SQL arithmetic
+    private static Integer totalTime(Integer preparationTime, Integer cookingTime) {
+        return preparationTime != null && cookingTime != null ? preparationTime + cookingTime : null;
+    }
+    
+    private static int calorieBucket(int calories) {
+        return Math.max(0, Math.min(CALORIE_BUCKETS - 1, Math.floorDiv(calories, CALORIE_BUCKET_WIDTH)));
+    }
+    
+    private static int timeBucket(int totalTime) {
+        return Math.max(0, Math.min(TIME_BUCKETS - 1, Math.floorDiv(totalTime, TIME_BUCKET_WIDTH)));
+    }
+    
+    // All bitmaps plus the ordinal mapping and the exact values needed at bucket edges
+    private static class Bitmaps {
+        final Map<Long, Integer> ordinals = new HashMap<>();
+        long[] ids = new long[1024];
+        int[] calories = new int[1024];
+        int[] totalTimes = new int[1024];
+        int size;
+        
+        final Map<Recipe.RecipeStatus, RoaringBitmap> byStatus = enumBitmaps(Recipe.RecipeStatus.class);
+        final Map<Recipe.RecipeCategory, RoaringBitmap> byCategory = enumBitmaps(Recipe.RecipeCategory.class);
+        final Map<Recipe.DifficultyLevel, RoaringBitmap> byDifficulty = enumBitmaps(Recipe.DifficultyLevel.class);
+        final Map<String, RoaringBitmap> byTag = new HashMap<>();
+        final RoaringBitmap[] calorieBuckets = bucketBitmaps(CALORIE_BUCKETS);
+        final RoaringBitmap[] timeBuckets = bucketBitmaps(TIME_BUCKETS);
+        
+        private static <E extends Enum<E>> Map<E, RoaringBitmap> enumBitmaps(Class<E> type) {
+            Map<E, RoaringBitmap> bitmaps = new EnumMap<>(type);
+            for (E value : type.getEnumConstants()) {
+                bitmaps.put(value, new RoaringBitmap());
+            }
+            return bitmaps;
+        }
+        
+        private static RoaringBitmap[] bucketBitmaps(int count) {
+            RoaringBitmap[] buckets = new RoaringBitmap[count];
+            for (int i = 0; i < count; i++) {
+                buckets[i] = new RoaringBitmap();
+            }
+            return buckets;
+        }
+        
+        // Appends a recipe with a new ordinal; categories and tags are added by the caller
+        int add(long id, Recipe.RecipeStatus status, Recipe.DifficultyLevel difficulty,
+                Integer calorieValue, Integer totalTime) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                calories = Arrays.copyOf(calories, size * 2);
+                totalTimes = Arrays.copyOf(totalTimes, size * 2);
+            }
+            int ordinal = size++;
+            ids[ordinal] = id;
+            ordinals.put(id, ordinal);
+            set(ordinal, status, difficulty, calorieValue, totalTime);
+            return ordinal;
+        }
+        
+        private void set(int ordinal, Recipe.RecipeStatus status, Recipe.DifficultyLevel difficulty,
+                         Integer calorieValue, Integer totalTime) {
+            if (status != null) {
+                byStatus.get(status).add(ordinal);
+            }
+            if (difficulty != null) {
+                byDifficulty.get(difficulty).add(ordinal);
+            }
+            calories[ordinal] = calorieValue != null ? calorieValue : NO_VALUE;
+            if (calorieValue != null) {
+                calorieBuckets[calorieBucket(calorieValue)].add(ordinal);
+            }
+            totalTimes[ordinal] = totalTime != null ? totalTime : NO_VALUE;
+            if (totalTime != null) {
+                timeBuckets[timeBucket(totalTime)].add(ordinal);
+            }
+        }
+        
+        void put(Recipe recipe) {
+            Integer calorieValue = recipe.getNutritionInfo() != null ? recipe.getNutritionInfo().getCalories() : null;
+            Integer totalTime = totalTime(recipe.getPreparationTime(), recipe.getCookingTime());
+            Integer ordinal = ordinals.get(recipe.getId());
+            if (ordinal == null) {
+                ordinal = add(recipe.getId(), recipe.getStatus(), recipe.getDifficultyLevel(), calorieValue, totalTime);
+            } else {
+                clear(ordinal);
+                set(ordinal, recipe.getStatus(), recipe.getDifficultyLevel(), calorieValue, totalTime);
+            }
+            for (Recipe.RecipeCategory category : recipe.getCategories()) {
+                byCategory.get(category).add(ordinal);
+            }
+            for (String tag : recipe.getDietaryTags()) {
+                byTag.computeIfAbsent(tag, t -> new RoaringBitmap()).add(ordinal);
+            }
+        }
+        
+        void remove(long id) {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal != null) {
+                clear(ordinal);
+            }
+        }
+        
+        // Unsets the ordinal everywhere; writes are rare enough that visiting every bitmap is fine
+        private void clear(int ordinal) {
+            byStatus.values().forEach(bitmap -> bitmap.remove(ordinal));
+            byCategory.values().forEach(bitmap -> bitmap.remove(ordinal));
+            byDifficulty.values().forEach(bitmap -> bitmap.remove(ordinal));
+            byTag.values().removeIf(bitmap -> {
+                bitmap.remove(ordinal);
+                return bitmap.isEmpty();
+            });
+            if (calories[ordinal] != NO_VALUE) {
+                calorieBuckets[calorieBucket(calories[ordinal])].remove(ordinal);
+            }
+            if (totalTimes[ordinal] != NO_VALUE) {
+                timeBuckets[timeBucket(totalTimes[ordinal])].remove(ordinal);
+            }
+            calories[ordinal] = NO_VALUE;
+            totalTimes[ordinal] = NO_VALUE;
+        }
+        
+        void optimize() {
+            byStatus.values().forEach(RoaringBitmap::runOptimize);
+            byCategory.values().forEach(RoaringBitmap::runOptimize);
+            byDifficulty.values().forEach(RoaringBitmap::runOptimize);
+            byTag.values().forEach(RoaringBitmap::runOptimize);
+            Arrays.stream(calorieBuckets).forEach(RoaringBitmap::runOptimize);
+            Arrays.stream(timeBuckets).forEach(RoaringBitmap::runOptimize);
+        }
+        
+        RoaringBitmap approved() {
+            return byStatus.get(Recipe.RecipeStatus.APPROVED);
+        }
+        
+        RoaringBitmap anyCategory(Collection<Recipe.RecipeCategory> categories) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (Recipe.RecipeCategory category : categories) {
+                union.or(byCategory.get(category));
+            }
+            return union;
+        }
+        
+        RoaringBitmap anyDifficulty(Collection<Recipe.DifficultyLevel> difficulties) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (Recipe.DifficultyLevel difficulty : difficulties) {
+                union.or(byDifficulty.get(difficulty));
+            }
+            return union;
+        }
+        
+        RoaringBitmap anyTag(Collection<String> tags) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (String tag : tags) {
+                RoaringBitmap bitmap = byTag.get(tag);
+                if (bitmap != null) {
+                    union.or(bitmap);
+                }
+            }
+            return union;
+        }
+        
+        RoaringBitmap allTags(Collection<String> tags) {
+            RoaringBitmap intersection = null;
+            for (String tag : tags) {
+                RoaringBitmap bitmap = byTag.get(tag);
+                if (bitmap == null) {
+                    return new RoaringBitmap();
+                }
+                intersection = intersection == null ? bitmap.clone() : RoaringBitmap.and(intersection, bitmap);
+            }
+            return intersection != null ? intersection : new RoaringBitmap();
+        }
+        
+        // Null bounds are open. Buckets fully inside the range are taken whole; the
+        // members of partially covered edge buckets are checked against exact values.
+        RoaringBitmap calorieRange(Integer min, Integer max) {
+            return range(calorieBuckets, CALORIE_BUCKET_WIDTH, calories, min, max);
+        }
+        
+        RoaringBitmap maxTime(int maxTime) {
+            return range(timeBuckets, TIME_BUCKET_WIDTH, totalTimes, null, maxTime);
+        }
+        
+        private static RoaringBitmap range(RoaringBitmap[] buckets, int width, int[] values, Integer min, Integer max) {
+            RoaringBitmap union = new RoaringBitmap();
+            int low = min != null ? Math.max(0, Math.min(buckets.length - 1, Math.floorDiv(min, width))) : 0;
+            int high = max != null ? Math.max(0, Math.min(buckets.length - 1, Math.floorDiv(max, width)))
+                    : buckets.length - 1;
+            for (int bucket = low; bucket <= high; bucket++) {
+                long start = bucket == 0 ? Long.MIN_VALUE : (long) bucket * width;
+                long end = bucket == buckets.length - 1 ? Long.MAX_VALUE : (long) (bucket + 1) * width - 1;
+                if ((min == null || start >= min) && (max == null || end <= max)) {
+                    union.or(buckets[bucket]);
+                    continue;
+                }
+                IntIterator members = buckets[bucket].getIntIterator();
+                while (members.hasNext()) {
+                    int ordinal = members.next();
+                    int value = values[ordinal];
+                    if ((min == null || value >= min) && (max == null || value <= max)) {
+                        union.add(ordinal);
+                    }
+                }
+            }
+            return union;
+        }
+        
+        // Newest first, i.e. from the highest ordinal down
+        RecipeLeaderboard.LeaderboardPage page(RoaringBitmap result, int offset, int limit) {
+            long total = result.getLongCardinality();
+            List<Long> page = new ArrayList<>(Math.min(limit, (int) Math.max(0, total - offset)));
+            for (long rank = total - 1 - offset; rank >= 0 && page.size() < limit; rank--) {
+                page.add(ids[result.select((int) rank)]);
+            }
+            return new RecipeLeaderboard.LeaderboardPage(page, total);
+        }
+    }
+    
+    public static class FacetedPage {
+        private final RecipeLeaderboard.LeaderboardPage page;
+        private final Map<Recipe.RecipeCategory, Long> categoryCounts;
+        private final Map<String, Long> dietaryTagCounts;
+        private final Map<Recipe.DifficultyLevel, Long> difficultyCounts;
+        
+        public FacetedPage(RecipeLeaderboard.LeaderboardPage page, Map<Recipe.RecipeCategory, Long> categoryCounts,
+                           Map<String, Long> dietaryTagCounts, Map<Recipe.DifficultyLevel, Long> difficultyCounts) {
+            this.page = page;
+            this.categoryCounts = categoryCounts;
+            this.dietaryTagCounts = dietaryTagCounts;
+            this.difficultyCounts = difficultyCounts;
+        }
+        
+        public RecipeLeaderboard.LeaderboardPage getPage() { return page; }
+        
+        public Map<Recipe.RecipeCategory, Long> getCategoryCounts() { return categoryCounts; }
+        
+        public Map<String, Long> getDietaryTagCounts() { return dietaryTagCounts; }
+        
+        public Map<Recipe.DifficultyLevel, Long> getDifficultyCounts() { return difficultyCounts; }
+    }
+}
@@ -0,0 +1,339 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
+import com.healthyrecipe.event.FavoriteChangedEvent;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.FavoriteRepository;
+import com.healthyrecipe.repository.RecipeRatingStatsRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory top-rated and most-favorited rankings of approved recipes. Counters are
+ * loaded once on startup and then maintained from rating, favorite and recipe events,
+ * so leaderboard pages never need a GROUP BY over ratings or favorites.
+ *
+ * Rankings are kept in sorted sets and pages are read by walking them from the top, so
+ * a change costs one re-insertion and a page costs its offset plus its size.
+ */
+@Component
+public class RecipeLeaderboard {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecipeLeaderboard.class);
+    
+    // Number of virtual votes at the prior mean added to every recipe; 0 ranks by plain average
+    @Value("${app.leaderboard.bayesian-prior-weight:0}")
+    private double bayesianPriorWeight;
+    
+    @Value("${app.leaderboard.bayesian-prior-mean:3.0}")
+    private double bayesianPriorMean;
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private RecipeRatingStatsRepository ratingStatsRepository;
+    
+    @Autowired
+    private FavoriteRepository favoriteRepository;
+    
+    // Counters for every known recipe, ranked or not, so approval can rank immediately
+    private final Map<Long, Entry> entries = new HashMap<>();
+    
+    // Unrated recipes come after every rated one: with a Bayesian prior their score is the
+    // prior mean, which would otherwise rank them above recipes rated below it
+    private final TreeSet<Entry> byRating = new TreeSet<>(Comparator
+            .comparing((Entry e) -> e.ratingCount == 0)
+            .thenComparing(Comparator.comparingDouble((Entry e) -> e.ratingScore).reversed())
+            .thenComparing(Comparator.comparingInt((Entry e) -> e.ratingCount).reversed())
+            .thenComparing(Comparator.comparingLong((Entry e) -> e.recipeId).reversed()));
+    
+    private final TreeSet<Entry> byFavorites = new TreeSet<>(Comparator
+            .comparingLong((Entry e) -> e.favoriteCount).reversed()
+            .thenComparing(Comparator.comparingLong((Entry e) -> e.recipeId).reversed()));
+    
+    // Changes committed while a rebuild reads the database, replayed onto the rebuilt
+    // counters. Rating and favorite events are deltas, so the reads share one
+    // repeatable-read snapshot, taken just after recording starts, for them to apply on.
+    private List<Runnable> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void rebuild() {
+        synchronized (this) {
+            changedDuringBuild = new ArrayList<>();
+        }
+        
+        List<Long> approvedIds;
+        List<RecipeRatingStats> ratingStats;
+        List<Object[]> favoriteCounts;
+        try {
+            approvedIds = recipeRepository.findIdsByStatus(Recipe.RecipeStatus.APPROVED);
+            ratingStats = ratingStatsRepository.findAll();
+            favoriteCounts = favoriteRepository.countFavoritesGroupedByRecipe();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringBuild = null;
+            }
+            throw e;
+        }
+        
+        synchronized (this) {
+            entries.clear();
+            byRating.clear();
+            byFavorites.clear();
+            
+            for (RecipeRatingStats stats : ratingStats) {
+                Entry entry = entry(stats.getRecipeId());
+                entry.ratingSum = stats.getRatingSum();
+                entry.ratingCount = stats.getRatingCount();
+            }
+            for (Object[] row : favoriteCounts) {
+                entry((Long) row[0]).favoriteCount = (Long) row[1];
+            }
+            for (Long id : approvedIds) {
+                Entry entry = entry(id);
+                entry.ranked = true;
+                entry.ratingScore = ratingScore(entry);
+                byRating.add(entry);
+                byFavorites.add(entry);
+            }
+            
+            changedDuringBuild.forEach(Runnable::run);
+            changedDuringBuild = null;
+        }
+        
+        logger.info("Recipe leaderboards built with {} approved recipes", approvedIds.size());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onRecipeChanged(RecipeChangedEvent event) {
+        record(() -> recipeChanged(event));
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onRatingChanged(RatingChangedEvent event) {
+        record(() -> ratingChanged(event));
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onFavoriteChanged(FavoriteChangedEvent event) {
+        record(() -> favoriteChanged(event));
+    }
+    
+    // Called with the lock held
+    private void record(Runnable change) {
+        change.run();
+        if (changedDuringBuild != null) {
+            changedDuringBuild.add(change);
+        }
+    }
+    
+    private void recipeChanged(RecipeChangedEvent event) {
+        if (event.getChangeType() == RecipeChangedEvent.ChangeType.DELETED) {
+            Entry entry = entries.remove(event.getRecipeId());
+            if (entry != null) {
+                unrank(entry);
+            }
+        } else if (event.isApproved()) {
+            Entry entry = entry(event.getRecipeId());
+            if (!entry.ranked) {
+                entry.ranked = true;
+                entry.ratingScore = ratingScore(entry);
+                byRating.add(entry);
+                byFavorites.add(entry);
+            }
+        } else {
+            Entry entry = entries.get(event.getRecipeId());
+            if (entry != null) {
+                unrank(entry);
+            }
+        }
+    }
+    
+    private void ratingChanged(RatingChangedEvent event) {
+        Entry entry = entry(event.getRecipeId());
+        if (entry.ranked) {
+            byRating.remove(entry);
+        }
+        
+        entry.ratingSum += event.getNewRating() - event.getOldRating();
+        entry.ratingCount += (event.getNewRating() > 0 ? 1 : 0) - (event.getOldRating() > 0 ? 1 : 0);
+        entry.ratingScore = ratingScore(entry);
+        
+        if (entry.ranked) {
+            byRating.add(entry);
+        }
+    }
+    
+    private void favoriteChanged(FavoriteChangedEvent event) {
+        Entry entry = entry(event.getRecipeId());
+        if (entry.ranked) {
+            byFavorites.remove(entry);
+        }
+        
+        entry.favoriteCount += event.isAdded() ? 1 : -1;
+        
+        if (entry.ranked) {
+            byFavorites.add(entry);
+        }
+    }
+    
+    /**
+     * Approved recipes best rated first, unrated ones last.
+     */
+    public synchronized LeaderboardPage topRated(int offset, int limit) {
+        return page(byRating, offset, limit);
+    }
+    
+    /**
+     * Variant of {@link #topRated(int, int)} that pages and counts only the recipes the
+     * filter accepts. The count walks the whole ranking.
+     */
+    public synchronized LeaderboardPage topRated(LongPredicate accept, int offset, int limit) {
+        List<Long> ids = new ArrayList<>();
+        long matched = 0;
+        for (Entry entry : byRating) {
+            if (!accept.test(entry.recipeId)) {
+                continue;
+            }
+            if (matched >= offset && ids.size() < limit) {
+                ids.add(entry.recipeId);
+            }
+            matched++;
+        }
+        return new LeaderboardPage(ids, matched);
+    }
+    
+    public synchronized LeaderboardPage mostFavorited(int offset, int limit) {
+        return page(byFavorites, offset, limit);
+    }
+    
+    /**
+     * Keyset variant of {@link #topRated}: the next {@code limit} recipes ranked strictly
+     * after the given position. Pass {@link Double#POSITIVE_INFINITY} to start from the top.
+     */
+    public synchronized List<Position> topRatedAfter(double ratingScore, int ratingCount, long recipeId, int limit) {
+        Entry probe = new Entry(recipeId);
+        probe.ratingScore = ratingScore;
+        probe.ratingCount = ratingCount;
+        return positions(byRating.tailSet(probe, false), limit);
+    }
+    
+    /**
+     * Keyset variant of {@link #mostFavorited}. Pass {@link Long#MAX_VALUE} as the
+     * favorite count to start from the top.
+     */
+    public synchronized List<Position> mostFavoritedAfter(long favoriteCount, long recipeId, int limit) {
+        Entry probe = new Entry(recipeId);
+        probe.favoriteCount = favoriteCount;
+        return positions(byFavorites.tailSet(probe, false), limit);
+    }
+    
+    private static List<Position> positions(SortedSet<Entry> ranking, int limit) {
+        List<Position> positions = new ArrayList<>(limit);
+        for (Entry entry : ranking) {
+            if (positions.size() >= limit) {
+                break;
+            }
+            positions.add(new Position(entry.recipeId, entry.ratingScore, entry.ratingCount, entry.favoriteCount));
+        }
+        return positions;
+    }
+    
+    private Entry entry(Long recipeId) {
+        return entries.computeIfAbsent(recipeId, Entry::new);
+    }
+    
+    private void unrank(Entry entry) {
+        if (entry.ranked) {
+            byRating.remove(entry);
+            byFavorites.remove(entry);
+            entry.ranked = false;
+        }
+    }
+    
+    private double ratingScore(Entry entry) {
+        if (bayesianPriorWeight > 0) {
+            return (bayesianPriorWeight * bayesianPriorMean + entry.ratingSum) / (bayesianPriorWeight + entry.ratingCount);
+        }
+        return entry.ratingCount > 0 ? (double) entry.ratingSum / entry.ratingCount : 0.0;
+    }
+    
+    private static LeaderboardPage page(TreeSet<Entry> ranking, int offset, int limit) {
+        List<Long> ids = new ArrayList<>((int) Math.max(0, Math.min(limit, (long) ranking.size() - offset)));
+        Iterator<Entry> ranked = ranking.iterator();
+        for (int skipped = 0; skipped < offset && ranked.hasNext(); skipped++) {
+            ranked.next();
+        }
+        while (ids.size() < limit && ranked.hasNext()) {
+            ids.add(ranked.next().recipeId);
+        }
+        return new LeaderboardPage(ids, ranking.size());
+    }
+    
+    private static class Entry {
+        final long recipeId;
+        long ratingSum;
+        int ratingCount;
+        long favoriteCount;
+        double ratingScore;
+        boolean ranked;
+        
+        Entry(long recipeId) {
+            this.recipeId = recipeId;
+        }
+    }
+    
+    // A recipe's sort keys at the time it was read, used to build keyset cursors
+    public static class Position {
+        private final long recipeId;
+        private final double ratingScore;
+        private final int ratingCount;
+        private final long favoriteCount;
+        
+        public Position(long recipeId, double ratingScore, int ratingCount, long favoriteCount) {
+            this.recipeId = recipeId;
+            this.ratingScore = ratingScore;
+            this.ratingCount = ratingCount;
+            this.favoriteCount = favoriteCount;
+        }
+        
+        public long getRecipeId() { return recipeId; }
+        
+        public double getRatingScore() { return ratingScore; }
+        
+        public int getRatingCount() { return ratingCount; }
+        
+        public long getFavoriteCount() { return favoriteCount; }
+    }
+    
+    public static class LeaderboardPage {
+        private final List<Long> recipeIds;
+        private final long total;
+        
+        public LeaderboardPage(List<Long> recipeIds, long total) {
+            this.recipeIds = recipeIds;
+            this.total = total;
+        }
+        
+        public List<Long> getRecipeIds() { return recipeIds; }
+        
+        public long getTotal() { return total; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,628 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRatingStatsRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Scores every approved recipe against a user's dietary preferences, fitness goal,
+ * calorie target, allergies and the recipe's rating in one pass, and returns the top
+ * of the ranking. Recipes are held in a columnar snapshot (primitive arrays per
+ * attribute, dietary tags as bitsets) so a pass touches no objects per recipe and
+ * large catalogs are split across cores.
+ *
+ * Recipe and rating changes are patched into the snapshot in place, so a query may
+ * briefly see a row half updated. Changes the snapshot has no room for (a dietary tag
+ * it has no bit for, more new recipes than its spare capacity, too many removed rows)
+ * mark it stale instead, and a background job builds a new one and swaps it in; until
+ * then queries keep using the current one.
+ */
+@Component
+public class RecipeScoringEngine {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecipeScoringEngine.class);
+    
+    // Signal weights; each signal is normalized to [0, 1] before weighting
+    private static final double PREFERENCE_WEIGHT = 3.0;
+    private static final double GOAL_TAG_WEIGHT = 1.5;
+    private static final double GOAL_NUTRITION_WEIGHT = 1.5;
+    private static final double CALORIE_WEIGHT = 2.0;
+    private static final double RATING_WEIGHT = 1.0;
+    private static final double QUICKNESS_WEIGHT = 0.5;
+    
+    // Total time at or beyond which a recipe gets no quickness credit
+    private static final int SLOW_RECIPE_MINUTES = 120;
+    
+    // Calorie targets are daily; recipes are compared against one meal's share of it
+    private static final int MEALS_PER_DAY = 3;
+    private static final double CALORIE_TOLERANCE = 200.0;
+    
+    // Virtual votes at the prior mean, so a single 5-star rating does not dominate
+    private static final double RATING_PRIOR_WEIGHT = 5.0;
+    private static final double RATING_PRIOR_MEAN = 3.0;
+    
+    // Below this many recipes per core a pass is not worth splitting
+    private static final int MIN_CHUNK_SIZE = 4096;
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    
+    @Autowired
+    private RecipeRatingStatsRepository ratingStatsRepository;
+    
+    @Autowired
+    private AllergenIndex allergenIndex;
+    
+    // Source of the snapshot: attributes of approved recipes and ratings of all recipes.
+    // Rating arrays are replaced, never modified, so a copy of the map can be read unlocked
+    private final Map<Long, Features> features = new HashMap<>();
+    private final Map<Long, int[]> ratings = new HashMap<>();
+    
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of());
+    
+    // Set when a change could not be patched into the snapshot
+    private volatile boolean stale;
+    
+    // Recipes changed while a snapshot is being built, patched into it before the swap
+    private final Set<Long> changedDuringBuild = new HashSet<>();
+    private boolean building;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Map<Long, Set<String>> tags = new HashMap<>();
+        for (Object[] row : recipeRepository.findDietaryTagsByStatus(Recipe.RecipeStatus.APPROVED)) {
+            tags.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((String) row[1]);
+        }
+        Map<Long, List<String>> ingredientNames = new HashMap<>();
+        for (Object[] row : ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED)) {
+            ingredientNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+        List<Object[]> rows = recipeRepository.findScoringFeaturesByStatus(Recipe.RecipeStatus.APPROVED);
+        List<RecipeRatingStats> ratingStats = ratingStatsRepository.findAll();
+        
+        synchronized (this) {
+            features.clear();
+            ratings.clear();
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                features.put(id, new Features((Integer) row[1], (Double) row[2], (Double) row[3], (Double) row[4],
+                        (Double) row[5], (Integer) row[6], (Integer) row[7], tags.getOrDefault(id, Set.of()),
+                        AllergenIndex.allergenMask(ingredientNames.getOrDefault(id, List.of()))));
+            }
+            for (RecipeRatingStats stats : ratingStats) {
+                ratings.put(stats.getRecipeId(), new int[] { stats.getRatingSum().intValue(), stats.getRatingCount() });
+            }
+        }
+        buildSnapshot();
+        
+        logger.info("Recipe scoring engine loaded with {} recipes", rows.size());
+    }
+    
+    @Scheduled(fixedDelayString = "${app.scoring.refresh-interval-ms:1000}")
+    public void refreshIfStale() {
+        if (stale) {
+            buildSnapshot();
+        }
+    }
+    
+    // Builds a snapshot from a copy of the source maps without holding the lock, then swaps it in
+    private void buildSnapshot() {
+        Map<Long, Features> featuresCopy;
+        Map<Long, int[]> ratingsCopy;
+        synchronized (this) {
+            stale = false;
+            building = true;
+            featuresCopy = new HashMap<>(features);
+            ratingsCopy = new HashMap<>(ratings);
+        }
+        
+        Snapshot built = new Snapshot(featuresCopy, ratingsCopy);
+        
+        synchronized (this) {
+            for (Long recipeId : changedDuringBuild) {
+                patch(built, recipeId);
+            }
+            changedDuringBuild.clear();
+            building = false;
+            snapshot = built;
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onRecipeChanged(RecipeChangedEvent event) {
+        if (event.isApproved()) {
+            features.put(event.getRecipeId(), Features.of(event.getRecipe(), event.getIngredientNames()));
+        } else {
+            features.remove(event.getRecipeId());
+            if (event.getChangeType() == RecipeChangedEvent.ChangeType.DELETED) {
+                ratings.remove(event.getRecipeId());
+            }
+        }
+        changed(event.getRecipeId());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onRatingChanged(RatingChangedEvent event) {
+        int[] rating = ratings.getOrDefault(event.getRecipeId(), new int[2]);
+        ratings.put(event.getRecipeId(), new int[] {
+                rating[0] + event.getNewRating() - event.getOldRating(),
+                rating[1] + (event.getNewRating() > 0 ? 1 : 0) - (event.getOldRating() > 0 ? 1 : 0) });
+        changed(event.getRecipeId());
+    }
+    
+    // Called with the lock held
+    private void changed(Long recipeId) {
+        patch(snapshot, recipeId);
+        if (building) {
+            changedDuringBuild.add(recipeId);
+        }
+    }
+    
+    private void patch(Snapshot target, Long recipeId) {
+        if (!target.patch(recipeId, features.get(recipeId), ratings.get(recipeId))) {
+            stale = true;
+        }
+    }
+    
+    /**
+     * Returns the {@code limit} best-scoring approved recipes after skipping
+     * {@code offset}, together with the number of recipes the profile allows.
+     */
+    public RecipeLeaderboard.LeaderboardPage topRecipes(Profile profile, int offset, int limit) {
+        Snapshot current = snapshot;
+        int size = current.size;
+        int k = (int) Math.min((long) offset + limit, size);
+        if (k == 0) {
+            return new RecipeLeaderboard.LeaderboardPage(List.of(), 0);
+        }
+        
+        // Allergen classes are tested against the snapshot's mask column; only allergies
+        // naming no class need the allergen index's ingredient text
+        Query query = new Query(profile, current, AllergenIndex.allergyMask(profile.allergies),
+                AllergenIndex.isClassified(profile.allergies) ? null : allergenIndex.safeFor(profile.allergies));
+        
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_CHUNK_SIZE));
+        TopK top;
+        if (chunks == 1) {
+            top = query.score(0, size, k);
+        } else {
+            top = IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> query.score(
+                            (int) ((long) size * chunk / chunks), (int) ((long) size * (chunk + 1) / chunks), k))
+                    .reduce(TopK::merge)
+                    .orElseThrow();
+        }
+        
+        List<Long> ids = new ArrayList<>(Math.max(0, k - offset));
+        int[] ranked = top.sorted();
+        for (int i = offset; i < ranked.length; i++) {
+            ids.add(current.ids[ranked[i]]);
+        }
+        return new RecipeLeaderboard.LeaderboardPage(ids, top.eligible);
+    }
+    
+    private static float ratingScore(long ratingSum, int ratingCount) {
+        return (float) ((RATING_PRIOR_WEIGHT * RATING_PRIOR_MEAN + ratingSum)
+                / (RATING_PRIOR_WEIGHT + ratingCount) / 5.0);
+    }
+    
+    private static double clamp(double value) {
+        return Math.max(0.0, Math.min(1.0, value));
+    }
+    
+    /**
+     * What a user is scored against. Tags are matched against recipe dietary tags.
+     */
+    public static class Profile {
+        private final Set<String> preferenceTags;
+        private final Set<String> goalTags;
+        private final User.FitnessGoal fitnessGoal;
+        private final Integer dailyCalorieTarget;
+        private final Set<String> allergies;
+        
+        public Profile(Collection<String> preferenceTags, Collection<String> goalTags, User.FitnessGoal fitnessGoal,
+                       Integer dailyCalorieTarget, Set<String> allergies) {
+            this.preferenceTags = preferenceTags != null ? Set.copyOf(preferenceTags) : Set.of();
+            this.goalTags = goalTags != null ? Set.copyOf(goalTags) : Set.of();
+            this.fitnessGoal = fitnessGoal;
+            this.dailyCalorieTarget = dailyCalorieTarget;
+            this.allergies = allergies != null ? Set.copyOf(allergies) : Set.of();
+        }
+    }
+    
+    // Attributes of one approved recipe, as last seen
+    private static class Features {
+        final int calories;
+        final float protein;
+        final float carbohydrates;
+        final float fat;
+        final float fiber;
+        final int totalTime;
+        final Set<String> dietaryTags;
+        final int allergens;
+        
+        Features(Integer calories, Double protein, Double carbohydrates, Double fat, Double fiber,
+                 Integer preparationTime, Integer cookingTime, Set<String> dietaryTags, int allergens) {
+            this.calories = calories != null ? calories : -1;
+            this.protein = protein != null ? protein.floatValue() : -1f;
+            this.carbohydrates = carbohydrates != null ? carbohydrates.floatValue() : -1f;
+            this.fat = fat != null ? fat.floatValue() : -1f;
+            this.fiber = fiber != null ? fiber.floatValue() : -1f;
+            this.totalTime = (preparationTime != null ? preparationTime : 0) + (cookingTime != null ? cookingTime : 0);
+            this.dietaryTags = Set.copyOf(dietaryTags);
+            this.allergens = allergens;
+        }
+        
+        static Features of(Recipe recipe, List<String> ingredientNames) {
+            Recipe.NutritionInfo nutrition = recipe.getNutritionInfo() != null
+                    ? recipe.getNutritionInfo() : new Recipe.NutritionInfo();
+            return new Features(nutrition.getCalories(), nutrition.getProtein(), nutrition.getCarbohydrates(),
+                    nutrition.getFat(), nutrition.getFiber(), recipe.getPreparationTime(), recipe.getCookingTime(),
+                    recipe.getDietaryTags() != null ? recipe.getDietaryTags() : Set.of(),
+                    AllergenIndex.allergenMask(ingredientNames));
+        }
+    }
+    
+    /**
+     * Column arrays indexed by position; missing nutrition values are negative. Rows up to
+     * {@code size} are in use, the rest is spare capacity for recipes approved later.
+     * Removed recipes leave a row with id {@link #REMOVED}. Only patched with the
+     * engine's lock held; queries read it unlocked.
+     */
+    private static class Snapshot {
+        static final long REMOVED = -1;
+        
+        final long[] ids;
+        final int[] calories;
+        final float[] protein;
+        final float[] carbohydrates;
+        final float[] fat;
+        final float[] fiber;
+        final int[] totalTime;
+        final int[] allergens;
+        final float[] ratingScore;
+        
+        // Dietary tags as one bitset per recipe, tagWords longs each
+        final Map<String, Integer> tagBits = new HashMap<>();
+        final int tagWords;
+        final long[] tags;
+        
+        final Map<Long, Integer> positions;
+        
+        volatile int size;
+        int removed;
+        
+        Snapshot(Map<Long, Features> features, Map<Long, int[]> ratings) {
+            int capacity = features.size() + features.size() / 8 + 64;
+            ids = new long[capacity];
+            calories = new int[capacity];
+            protein = new float[capacity];
+            carbohydrates = new float[capacity];
+            fat = new float[capacity];
+            fiber = new float[capacity];
+            totalTime = new int[capacity];
+            allergens = new int[capacity];
+            ratingScore = new float[capacity];
+            positions = new HashMap<>(capacity * 2);
+            
+            for (Features f : features.values()) {
+                for (String tag : f.dietaryTags) {
+                    tagBits.putIfAbsent(tag, tagBits.size());
+                }
+            }
+            tagWords = Math.max(1, (tagBits.size() + 63) / 64);
+            tags = new long[capacity * tagWords];
+            
+            int i = 0;
+            for (Map.Entry<Long, Features> entry : features.entrySet()) {
+                write(i, entry.getKey(), entry.getValue(), ratings.get(entry.getKey()));
+                positions.put(entry.getKey(), i);
+                i++;
+            }
+            size = i;
+        }
+        
+        /**
+         * Applies a recipe's current attributes (null when it is not approved) and rating.
+         * Returns false when this snapshot cannot hold the change and must be rebuilt.
+         */
+        boolean patch(long recipeId, Features f, int[] rating) {
+            Integer position = positions.get(recipeId);
+            if (f == null) {
+                if (position != null) {
+                    positions.remove(recipeId);
+                    ids[position] = REMOVED;
+                    removed++;
+                }
+                return removed <= ids.length / 8;
+            }
+            if (!tagBits.keySet().containsAll(f.dietaryTags)) {
+                return false;
+            }
+            
+            if (position != null) {
+                write(position, recipeId, f, rating);
+                return true;
+            }
+            if (size == ids.length) {
+                return false;
+            }
+            write(size, recipeId, f, rating);
+            positions.put(recipeId, size);
+            size++; // publishes the new row to queries
+            return true;
+        }
+        
+        private void write(int i, long recipeId, Features f, int[] rating) {
+            calories[i] = f.calories;
+            protein[i] = f.protein;
+            carbohydrates[i] = f.carbohydrates;
+            fat[i] = f.fat;
+            fiber[i] = f.fiber;
+            totalTime[i] = f.totalTime;
+            allergens[i] = f.allergens;
+            ratingScore[i] = rating != null ? ratingScore(rating[0], rating[1]) : ratingScore(0, 0);
+            
+            long[] row = new long[tagWords];
+            for (String tag : f.dietaryTags) {
+                int bit = tagBits.get(tag);
+                row[bit / 64] |= 1L << (bit % 64);
+            }
+            System.arraycopy(row, 0, tags, i * tagWords, tagWords);
+            ids[i] = recipeId;
+        }
+        
+        // Bitset of the given tags; tags no recipe carries are dropped
+        long[] mask(Set<String> tagNames) {
+            long[] mask = new long[tagWords];
+            for (String tag : tagNames) {
+                Integer bit = tagBits.get(tag);
+                if (bit != null) {
+                    mask[bit / 64] |= 1L << (bit % 64);
+                }
+            }
+            return mask;
+        }
+        
+        int matchingTags(int position, long[] mask) {
+            int matched = 0;
+            int base = position * tagWords;
+            for (int w = 0; w < tagWords; w++) {
+                matched += Long.bitCount(tags[base + w] & mask[w]);
+            }
+            return matched;
+        }
+    }
+    
+    // A profile resolved against one snapshot; safe to run on several chunks at once
+    private static class Query {
+        final Snapshot snapshot;
+        final int allergyMask;
+        final LongPredicate allergySafe; // null when the allergy mask covers all allergies
+        final User.FitnessGoal fitnessGoal;
+        final long[] preferenceMask;
+        final int preferenceCount;
+        final long[] goalMask;
+        final int goalCount;
+        final double mealCalories; // negative when there is no target
+        
+        Query(Profile profile, Snapshot snapshot, int allergyMask, LongPredicate allergySafe) {
+            this.snapshot = snapshot;
+            this.allergyMask = allergyMask;
+            this.allergySafe = allergySafe;
+            this.fitnessGoal = profile.fitnessGoal;
+            this.preferenceMask = snapshot.mask(profile.preferenceTags);
+            this.preferenceCount = profile.preferenceTags.size();
+            this.goalMask = snapshot.mask(profile.goalTags);
+            this.goalCount = profile.goalTags.size();
+            this.mealCalories = profile.dailyCalorieTarget != null
+                    ? (double) profile.dailyCalorieTarget / MEALS_PER_DAY : -1;
+        }
+        
+        TopK score(int from, int to, int k) {
+            TopK top = new TopK(k);
+            for (int i = from; i < to; i++) {
+                if (snapshot.ids[i] == Snapshot.REMOVED || (snapshot.allergens[i] & allergyMask) != 0) {
+                    continue;
+                }
+                if (allergySafe != null && !allergySafe.test(snapshot.ids[i])) {
+                    continue;
+                }
+                top.offer(i, score(i), snapshot.ids[i]);
+            }
+            return top;
+        }
+        
+        double score(int i) {
+            double score = RATING_WEIGHT * snapshot.ratingScore[i];
+            
+            if (preferenceCount > 0) {
+                score += PREFERENCE_WEIGHT * snapshot.matchingTags(i, preferenceMask) / preferenceCount;
+            }
+            if (goalCount > 0) {
+                score += GOAL_TAG_WEIGHT * snapshot.matchingTags(i, goalMask) / goalCount;
+            }
+            if (fitnessGoal != null) {
+                score += GOAL_NUTRITION_WEIGHT * goalNutrition(i);
+            }
+            
+            int calories = snapshot.calories[i];
+            if (mealCalories > 0 && calories >= 0) {
+                double distance = (calories - mealCalories) / CALORIE_TOLERANCE;
+                score += CALORIE_WEIGHT / (1.0 + distance * distance);
+            }
+            
+            int totalTime = snapshot.totalTime[i];
+            if (totalTime > 0) {
+                score += QUICKNESS_WEIGHT * clamp(1.0 - (double) totalTime / SLOW_RECIPE_MINUTES);
+            }
+            return score;
+        }
+        
+        // How well the recipe's nutrition suits the fitness goal, 0 when unknown
+        private double goalNutrition(int i) {
+            int calories = snapshot.calories[i];
+            float protein = snapshot.protein[i];
+            float fiber = snapshot.fiber[i];
+            
+            switch (fitnessGoal) {
+                case WEIGHT_LOSS:
+                    return calories < 0 ? 0 : 0.5 * clamp(1.0 - calories / 800.0) + 0.5 * clamp(fiber / 10.0);
+                case WEIGHT_GAIN:
+                    return calories < 0 ? 0 : clamp(calories / 1000.0);
+                case MUSCLE_GAIN:
+                    // Share of calories from protein; 40% scores full marks
+                    return calories <= 0 || protein < 0 ? 0 : clamp(protein * 4.0 / calories / 0.4);
+                case MAINTAIN_WEIGHT:
+                    return macroBalance(snapshot, i);
+                case GENERAL_HEALTH:
+                    return clamp(fiber / 8.0);
+                default:
+                    return 0;
+            }
+        }
+    }
+    
+    // Closeness of the protein/carbohydrate/fat calorie split to 25/45/30
+    private static double macroBalance(Snapshot snapshot, int i) {
+        float protein = snapshot.protein[i];
+        float carbohydrates = snapshot.carbohydrates[i];
+        float fat = snapshot.fat[i];
+        if (protein < 0 || carbohydrates < 0 || fat < 0) {
+            return 0;
+        }
+        double total = protein * 4.0 + carbohydrates * 4.0 + fat * 9.0;
+        if (total <= 0) {
+            return 0;
+        }
+        double deviation = Math.abs(protein * 4.0 / total - 0.25)
+                + Math.abs(carbohydrates * 4.0 / total - 0.45)
+                + Math.abs(fat * 9.0 / total - 0.30);
+        return clamp(1.0 - deviation);
+    }
+    
+    // Bounded min-heap of the k best (score, id) positions seen, plus a count of all offered
+    private static class TopK {
+        final int capacity;
+        final int[] positions;
+        final double[] scores;
+        final long[] ids;
+        int size;
+        long eligible;
+        
+        TopK(int capacity) {
+            this.capacity = capacity;
+            this.positions = new int[capacity];
+            this.scores = new double[capacity];
+            this.ids = new long[capacity];
+        }
+        
+        void offer(int position, double score, long id) {
+            eligible++;
+            if (size < capacity) {
+                positions[size] = position;
+                scores[size] = score;
+                ids[size] = id;
+                siftUp(size++);
+            } else if (better(score, id, scores[0], ids[0])) {
+                positions[0] = position;
+                scores[0] = score;
+                ids[0] = id;
+                siftDown(0);
+            }
+        }
+        
+        TopK merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.positions[i], other.scores[i], other.ids[i]);
+            }
+            eligible += other.eligible - other.size;
+            return this;
+        }
+        
+        // Positions best first
+        int[] sorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> better(scores[a], ids[a], scores[b], ids[b]) ? -1 : 1);
+            
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = positions[order[i]];
+            }
+            return sorted;
+        }
+        
+        // Higher score first, newer (higher id) recipe on ties
+        private static boolean better(double score, long id, double otherScore, long otherId) {
+            return score > otherScore || (score == otherScore && id > otherId);
+        }
+        
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!better(scores[parent], ids[parent], scores[i], ids[i])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+        
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int right = left + 1;
+                int worst = i;
+                if (left < size && better(scores[worst], ids[worst], scores[left], ids[left])) {
+                    worst = left;
+                }
+                if (right < size && better(scores[worst], ids[worst], scores[right], ids[right])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+        
+        private void swap(int a, int b) {
+            int position = positions[a];
+            positions[a] = positions[b];
+            positions[b] = position;
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+        }
+    }
+}
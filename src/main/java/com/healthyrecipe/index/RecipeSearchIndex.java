@@ -0,0 +1,391 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tokenized inverted index over approved recipes (title, description, ingredient names
+ * and dietary tags), ranked with BM25. Built on startup and kept current from
+ * {@link RecipeChangedEvent}s, so keyword search never scans the recipes table.
+ */
+@Component
+public class RecipeSearchIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecipeSearchIndex.class);
+    
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    
+    // Field boosts applied to term frequencies
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float TAG_WEIGHT = 2.0f;
+    private static final float INGREDIENT_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    
+    // Upper bound on index terms a trailing query prefix may expand to; the most
+    // frequent terms are kept since they are the likeliest completions
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "to", "with");
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private Postings index = new Postings();
+    
+    // Changes committed while a rebuild reads the database, replayed onto the new index
+    // after the swap since the rows it read may predate them
+    private List<RecipeChangedEvent> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        Postings built;
+        try {
+            built = load();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            index = built;
+            for (RecipeChangedEvent event : changedDuringBuild) {
+                apply(event);
+            }
+            changedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        logger.info("Recipe search index built with {} recipes and {} terms",
+                built.documents.size(), built.postings.size());
+    }
+    
+    private Postings load() {
+        Map<Long, List<String>> ingredientNames = new HashMap<>();
+        for (Object[] row : ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED)) {
+            ingredientNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+        
+        Postings built = new Postings();
+        for (Recipe recipe : recipeRepository.findByStatus(Recipe.RecipeStatus.APPROVED)) {
+            built.add(recipe, ingredientNames.getOrDefault(recipe.getId(), List.of()));
+        }
+        return built;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (changedDuringBuild != null) {
+                changedDuringBuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Called with the write lock held; applying an event twice leaves the same document
+    private void apply(RecipeChangedEvent event) {
+        index.remove(event.getRecipeId());
+        if (event.isApproved()) {
+            index.add(event.getRecipe(), event.getIngredientNames());
+        }
+    }
+    
+    /**
+     * Returns the ids of approved recipes matching every query term, best match first.
+     * The last term is treated as a prefix so partially typed words still match.
+     */
+    public SearchResult search(String query, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = scoreQuery(query);
+            return topHits(scores, offset, limit, null, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Keyset variant of {@link #search}: returns the hits ranked strictly after the hit
+     * with the given score and id.
+     */
+    public SearchResult searchAfter(String query, double afterScore, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = scoreQuery(query);
+            return topHits(scores, 0, limit, afterScore, afterId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private Map<Long, Double> scoreQuery(String query) {
+        List<String> queryTerms = tokenize(query);
+        int documentCount = index.documents.size();
+        if (queryTerms.isEmpty() || documentCount == 0) {
+            return Map.of();
+        }
+        double averageLength = index.totalLength / documentCount;
+        
+        Map<Long, Double> scores = null;
+        for (int i = 0; i < queryTerms.size(); i++) {
+            boolean prefix = i == queryTerms.size() - 1;
+            Map<Long, Double> termScores = scoreTerm(queryTerms.get(i), prefix, documentCount, averageLength);
+            
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // Every term must match: keep only documents present in both
+                Map<Long, Double> combined = new HashMap<>();
+                for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                    Double termScore = termScores.get(entry.getKey());
+                    if (termScore != null) {
+                        combined.put(entry.getKey(), entry.getValue() + termScore);
+                    }
+                }
+                scores = combined;
+            }
+            
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+    
+    private Map<Long, Double> scoreTerm(String term, boolean prefix, int documentCount, double averageLength) {
+        Map<Long, Double> termScores = new HashMap<>();
+        
+        Collection<Map.Entry<String, Map<Long, Float>>> matches;
+        if (prefix) {
+            matches = mostFrequent(index.postings.subMap(term, true, term + Character.MAX_VALUE, false), term);
+        } else {
+            Map<Long, Float> exact = index.postings.get(term);
+            matches = exact != null ? List.of(Map.entry(term, exact)) : List.of();
+        }
+        
+        for (Map.Entry<String, Map<Long, Float>> match : matches) {
+            Map<Long, Float> docs = match.getValue();
+            double idf = Math.log(1 + (documentCount - docs.size() + 0.5) / (docs.size() + 0.5));
+            
+            for (Map.Entry<Long, Float> posting : docs.entrySet()) {
+                double tf = posting.getValue();
+                double length = index.documents.get(posting.getKey()).length;
+                double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                // A prefix expanding to several words should not outrank an exact word match
+                termScores.merge(posting.getKey(), score, Math::max);
+            }
+        }
+        
+        return termScores;
+    }
+    
+    // The expansions of a prefix found in the most recipes, always including the prefix
+    // itself when it is a word of its own
+    private static Collection<Map.Entry<String, Map<Long, Float>>> mostFrequent(
+            SortedMap<String, Map<Long, Float>> expansions, String prefix) {
+        if (expansions.size() <= MAX_PREFIX_EXPANSIONS) {
+            return expansions.entrySet();
+        }
+        
+        // Min-heap on document frequency; on ties the alphabetically first term is kept
+        Comparator<Map.Entry<String, Map<Long, Float>>> frequency = Comparator
+                .comparingInt((Map.Entry<String, Map<Long, Float>> e) -> e.getValue().size())
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<String, Map<Long, Float>>> heap = new PriorityQueue<>(frequency);
+        for (Map.Entry<String, Map<Long, Float>> entry : expansions.entrySet()) {
+            if (entry.getKey().equals(prefix)) {
+                continue;
+            }
+            heap.offer(entry);
+            if (heap.size() > MAX_PREFIX_EXPANSIONS) {
+                heap.poll();
+            }
+        }
+        
+        Map<Long, Float> exact = expansions.get(prefix);
+        if (exact != null) {
+            heap.poll();
+            heap.offer(Map.entry(prefix, exact));
+        }
+        return heap;
+    }
+    
+    private SearchResult topHits(Map<Long, Double> scores, int offset, int limit, Double afterScore, Long afterId) {
+        int wanted = offset + limit;
+        if (offset >= scores.size() || limit <= 0) {
+            return new SearchResult(List.of(), List.of(), scores.size());
+        }
+        
+        Comparator<Map.Entry<Long, Double>> ranking = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey());
+        
+        // Min-heap holding the best `wanted` hits seen so far
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(ranking);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (afterScore != null && !ranksAfter(entry, afterScore, afterId)) {
+                continue;
+            }
+            heap.offer(entry);
+            if (heap.size() > wanted) {
+                heap.poll();
+            }
+        }
+        
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(heap);
+        ranked.sort(ranking.reversed());
+        
+        List<Long> ids = new ArrayList<>(limit);
+        List<Double> hitScores = new ArrayList<>(limit);
+        for (int i = offset; i < ranked.size(); i++) {
+            ids.add(ranked.get(i).getKey());
+            hitScores.add(ranked.get(i).getValue());
+        }
+        return new SearchResult(ids, hitScores, scores.size());
+    }
+    
+    // Results are ordered by score, then id, both descending
+    private static boolean ranksAfter(Map.Entry<Long, Double> entry, double afterScore, long afterId) {
+        double score = entry.getValue();
+        return score < afterScore || (score == afterScore && entry.getKey() < afterId);
+    }
+    
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+    
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+    
+    // Postings and document lengths, replaced as a whole by a rebuild
+    private static class Postings {
+        // term -> (recipe id -> weighted term frequency); sorted so prefixes can be expanded
+        final TreeMap<String, Map<Long, Float>> postings = new TreeMap<>();
+        final Map<Long, Document> documents = new HashMap<>();
+        double totalLength;
+        
+        void add(Recipe recipe, List<String> ingredientNames) {
+            Map<String, Float> terms = new HashMap<>();
+            addField(terms, recipe.getTitle(), TITLE_WEIGHT);
+            addField(terms, recipe.getDescription(), DESCRIPTION_WEIGHT);
+            for (String ingredient : ingredientNames) {
+                addField(terms, ingredient, INGREDIENT_WEIGHT);
+            }
+            if (recipe.getDietaryTags() != null) {
+                for (String tag : recipe.getDietaryTags()) {
+                    addField(terms, tag, TAG_WEIGHT);
+                }
+            }
+            
+            float length = 0;
+            for (Map.Entry<String, Float> entry : terms.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), t -> new HashMap<>()).put(recipe.getId(), entry.getValue());
+                length += entry.getValue();
+            }
+            
+            documents.put(recipe.getId(), new Document(terms.keySet().toArray(new String[0]), length));
+            totalLength += length;
+        }
+        
+        void remove(Long recipeId) {
+            Document document = documents.remove(recipeId);
+            if (document == null) {
+                return;
+            }
+            
+            for (String term : document.terms) {
+                Map<Long, Float> docs = postings.get(term);
+                if (docs != null) {
+                    docs.remove(recipeId);
+                    if (docs.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= document.length;
+        }
+    }
+    
+    private static class Document {
+        final String[] terms;
+        final float length;
+        
+        Document(String[] terms, float length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+    
+    public static class SearchResult {
+        private final List<Long> recipeIds;
+        private final List<Double> scores;
+        private final long totalHits;
+        
+        public SearchResult(List<Long> recipeIds, List<Double> scores, long totalHits) {
+            this.recipeIds = recipeIds;
+            this.scores = scores;
+            this.totalHits = totalHits;
+        }
+        
+        public List<Long> getRecipeIds() { return recipeIds; }
+        
+        // Relevance score of each returned hit, used to build keyset cursors
+        public List<Double> getScores() { return scores; }
+        
+        public long getTotalHits() { return totalHits; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,536 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Ingredient;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Precomputed top-N most similar approved recipes for every approved recipe.
+ * Similarity combines ingredient overlap (Jaccard, estimated with MinHash), shared
+ * categories and dietary tags (Jaccard) and closeness of the nutrition profile.
+ *
+ * Candidates come from locality-sensitive hashing of the ingredient MinHash signatures
+ * plus the newest recipes in each of the recipe's categories, so neither the startup
+ * build nor an update compares a recipe against the whole catalog. Neighbor lists are
+ * refreshed incrementally from {@link RecipeChangedEvent}s: a changed recipe is ranked
+ * and offered to its candidates' lists at once, while lists that lose it are only
+ * marked stale and re-ranked when read or by a background job, a batch at a time.
+ */
+@Component
+public class SimilarRecipeIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SimilarRecipeIndex.class);
+    
+    // MinHash signature length = bands * rows; 16 bands of 4 rows make recipes with
+    // ingredient Jaccard 0.5 candidates with ~64% probability, 0.3 with ~12%
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_LENGTH = BANDS * ROWS;
+    
+    // Upper bound on recipes taken from one LSH bucket or one category
+    private static final int MAX_BUCKET_CANDIDATES = 500;
+    private static final int CATEGORY_CANDIDATES = 200;
+    
+    // Stale lists re-ranked per hold of the lock by the background refresh
+    private static final int REFRESH_BATCH = 100;
+    
+    private static final double INGREDIENT_WEIGHT = 0.45;
+    private static final double CATEGORY_WEIGHT = 0.20;
+    private static final double TAG_WEIGHT = 0.15;
+    private static final double NUTRITION_WEIGHT = 0.20;
+    
+    // Divisors putting each nutrition value on a comparable scale
+    private static final double[] NUTRITION_SCALE = { 800.0, 40.0, 80.0, 30.0, 10.0 };
+    
+    private static final int[] HASH_SEEDS = new int[SIGNATURE_LENGTH];
+    
+    static {
+        Random random = new Random(0x5eed);
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            HASH_SEEDS[i] = random.nextInt();
+        }
+    }
+    
+    @Value("${app.similar.neighbors:50}")
+    private int neighborCount;
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    
+    private final Map<Long, Features> features = new HashMap<>();
+    
+    // LSH bucket key (band, band hash) -> recipe ids
+    private final Map<Long, Set<Long>> buckets = new HashMap<>();
+    
+    private final Map<Recipe.RecipeCategory, TreeSet<Long>> byCategory = new EnumMap<>(Recipe.RecipeCategory.class);
+    
+    // Best first
+    private final Map<Long, List<Neighbor>> neighbors = new HashMap<>();
+    
+    // recipe id -> recipes whose neighbor list contains it
+    private final Map<Long, Set<Long>> listedBy = new HashMap<>();
+    
+    // Recipes whose lists lost an entry and still have to be re-ranked
+    private final Set<Long> stale = new LinkedHashSet<>();
+    
+    // Changes committed while a rebuild reads the database, replayed onto the rebuilt
+    // lists since the rows it read may predate them
+    private List<RecipeChangedEvent> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        synchronized (this) {
+            changedDuringBuild = new ArrayList<>();
+        }
+        
+        Map<Long, Set<Recipe.RecipeCategory>> categories = new HashMap<>();
+        Map<Long, Set<String>> tags = new HashMap<>();
+        Map<Long, List<String>> ingredientNames = new HashMap<>();
+        List<Object[]> rows;
+        try {
+            for (Object[] row : recipeRepository.findCategoriesByStatus(Recipe.RecipeStatus.APPROVED)) {
+                categories.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Recipe.RecipeCategory) row[1]);
+            }
+            for (Object[] row : recipeRepository.findDietaryTagsByStatus(Recipe.RecipeStatus.APPROVED)) {
+                tags.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((String) row[1]);
+            }
+            for (Object[] row : ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED)) {
+                ingredientNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+            }
+            rows = recipeRepository.findScoringFeaturesByStatus(Recipe.RecipeStatus.APPROVED);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringBuild = null;
+            }
+            throw e;
+        }
+        
+        long start = System.nanoTime();
+        synchronized (this) {
+            features.clear();
+            buckets.clear();
+            byCategory.clear();
+            neighbors.clear();
+            listedBy.clear();
+            stale.clear();
+            
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                add(id, new Features(categories.getOrDefault(id, Set.of()), tags.getOrDefault(id, Set.of()),
+                        ingredientNames.getOrDefault(id, List.of()),
+                        (Integer) row[1], (Double) row[2], (Double) row[3], (Double) row[4], (Double) row[5]));
+            }
+            for (Long id : features.keySet()) {
+                setNeighbors(id, rank(id, features.get(id)));
+            }
+            
+            for (RecipeChangedEvent event : changedDuringBuild) {
+                apply(event);
+            }
+            changedDuringBuild = null;
+        }
+        
+        logger.info("Similar recipe index built with {} recipes in {} ms",
+                rows.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onRecipeChanged(RecipeChangedEvent event) {
+        apply(event);
+        if (changedDuringBuild != null) {
+            changedDuringBuild.add(event);
+        }
+    }
+    
+    // Called with the lock held; applying an event twice leaves the same lists
+    private void apply(RecipeChangedEvent event) {
+        Long id = event.getRecipeId();
+        
+        // Recipes that listed the old version lose it and are marked stale below
+        Set<Long> affected = new HashSet<>();
+        if (features.containsKey(id)) {
+            affected.addAll(remove(id));
+        }
+        
+        if (event.isApproved()) {
+            Recipe recipe = event.getRecipe();
+            Recipe.NutritionInfo nutrition = recipe.getNutritionInfo() != null
+                    ? recipe.getNutritionInfo() : new Recipe.NutritionInfo();
+            Features recipeFeatures = new Features(recipe.getCategories(), recipe.getDietaryTags(),
+                    event.getIngredientNames(), nutrition.getCalories(), nutrition.getProtein(),
+                    nutrition.getCarbohydrates(), nutrition.getFat(), nutrition.getFiber());
+            add(id, recipeFeatures);
+            
+            List<Neighbor> ranked = rank(id, recipeFeatures);
+            setNeighbors(id, ranked);
+            
+            // The new version may now belong in its candidates' lists
+            for (Long candidate : candidates(id, recipeFeatures)) {
+                offer(candidate, id, similarity(features.get(candidate), recipeFeatures));
+            }
+        }
+        
+        affected.remove(id);
+        stale.remove(id);
+        for (Long other : affected) {
+            if (features.containsKey(other)) {
+                stale.add(other);
+            }
+        }
+    }
+    
+    /**
+     * Re-ranks the lists marked stale by recipe changes, releasing the lock between
+     * batches so reads and updates are not held up behind a large backlog.
+     */
+    @Scheduled(fixedDelayString = "${app.similar.refresh-interval-ms:1000}")
+    public void refreshStale() {
+        boolean more = true;
+        while (more) {
+            synchronized (this) {
+                Iterator<Long> iterator = stale.iterator();
+                for (int i = 0; i < REFRESH_BATCH && iterator.hasNext(); i++) {
+                    Long id = iterator.next();
+                    iterator.remove();
+                    setNeighbors(id, rank(id, features.get(id)));
+                }
+                more = !stale.isEmpty();
+            }
+        }
+    }
+    
+    /**
+     * The precomputed neighbors of an approved recipe, most similar first, or null if
+     * the recipe is not in the index.
+     */
+    public synchronized List<Long> neighbors(Long recipeId) {
+        List<Neighbor> list = neighbors.get(recipeId);
+        if (list == null) {
+            return null;
+        }
+        if (stale.remove(recipeId)) {
+            list = rank(recipeId, features.get(recipeId));
+            setNeighbors(recipeId, list);
+        }
+        return list.stream().map(n -> n.recipeId).collect(Collectors.toList());
+    }
+    
+    /**
+     * Ranks approved recipes by similarity to a recipe that is not in the index
+     * (e.g. one still pending moderation). Loads the recipe's ingredient names.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> similarTo(Recipe recipe) {
+        List<String> ingredientNames = ingredientRepository.findByRecipeOrderByName(recipe).stream()
+                .map(Ingredient::getName)
+                .collect(Collectors.toList());
+        Recipe.NutritionInfo nutrition = recipe.getNutritionInfo() != null
+                ? recipe.getNutritionInfo() : new Recipe.NutritionInfo();
+        Features recipeFeatures = new Features(recipe.getCategories(), recipe.getDietaryTags(), ingredientNames,
+                nutrition.getCalories(), nutrition.getProtein(), nutrition.getCarbohydrates(),
+                nutrition.getFat(), nutrition.getFiber());
+        
+        synchronized (this) {
+            return rank(recipe.getId(), recipeFeatures).stream()
+                    .map(n -> n.recipeId)
+                    .collect(Collectors.toList());
+        }
+    }
+    
+    private void add(Long id, Features recipeFeatures) {
+        features.put(id, recipeFeatures);
+        for (long key : recipeFeatures.bucketKeys) {
+            buckets.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+        }
+        for (Recipe.RecipeCategory category : recipeFeatures.categories) {
+            byCategory.computeIfAbsent(category, c -> new TreeSet<>()).add(id);
+        }
+    }
+    
+    // Drops the recipe everywhere; returns the recipes whose lists contained it
+    private Set<Long> remove(Long id) {
+        Features old = features.remove(id);
+        for (long key : old.bucketKeys) {
+            Set<Long> bucket = buckets.get(key);
+            if (bucket != null && bucket.remove(id) && bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+        for (Recipe.RecipeCategory category : old.categories) {
+            TreeSet<Long> ids = byCategory.get(category);
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+        
+        setNeighbors(id, List.of());
+        neighbors.remove(id);
+        
+        Set<Long> listing = listedBy.remove(id);
+        if (listing == null) {
+            return Set.of();
+        }
+        for (Long other : listing) {
+            List<Neighbor> list = neighbors.get(other);
+            if (list != null) {
+                list.removeIf(n -> n.recipeId == id);
+            }
+        }
+        return listing;
+    }
+    
+    private Set<Long> candidates(Long id, Features recipeFeatures) {
+        Set<Long> candidates = new HashSet<>();
+        for (long key : recipeFeatures.bucketKeys) {
+            Set<Long> bucket = buckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            int taken = 0;
+            for (Long candidate : bucket) {
+                if (taken++ >= MAX_BUCKET_CANDIDATES) {
+                    break;
+                }
+                candidates.add(candidate);
+            }
+        }
+        // Newest recipes of the same categories, for recipes with few ingredient matches
+        for (Recipe.RecipeCategory category : recipeFeatures.categories) {
+            TreeSet<Long> ids = byCategory.get(category);
+            if (ids == null) {
+                continue;
+            }
+            int taken = 0;
+            for (Long candidate : ids.descendingSet()) {
+                if (taken++ >= CATEGORY_CANDIDATES) {
+                    break;
+                }
+                candidates.add(candidate);
+            }
+        }
+        candidates.remove(id);
+        return candidates;
+    }
+    
+    private List<Neighbor> rank(Long id, Features recipeFeatures) {
+        PriorityQueue<Neighbor> top = new PriorityQueue<>(Neighbor.WORST_FIRST);
+        for (Long candidate : candidates(id, recipeFeatures)) {
+            double score = similarity(recipeFeatures, features.get(candidate));
+            if (score <= 0) {
+                continue;
+            }
+            top.offer(new Neighbor(candidate, score));
+            if (top.size() > neighborCount) {
+                top.poll();
+            }
+        }
+        
+        List<Neighbor> ranked = new ArrayList<>(top);
+        ranked.sort(Neighbor.WORST_FIRST.reversed());
+        return ranked;
+    }
+    
+    // Replaces a recipe's list, keeping the reverse links in step
+    private void setNeighbors(Long id, List<Neighbor> list) {
+        List<Neighbor> old = neighbors.get(id);
+        if (old != null) {
+            for (Neighbor neighbor : old) {
+                Set<Long> listing = listedBy.get(neighbor.recipeId);
+                if (listing != null) {
+                    listing.remove(id);
+                }
+            }
+        }
+        
+        List<Neighbor> copy = new ArrayList<>(list);
+        neighbors.put(id, copy);
+        for (Neighbor neighbor : copy) {
+            listedBy.computeIfAbsent(neighbor.recipeId, k -> new HashSet<>()).add(id);
+        }
+    }
+    
+    // Inserts a candidate into a recipe's list if it ranks among the top N
+    private void offer(Long id, Long candidate, double score) {
+        List<Neighbor> list = neighbors.get(id);
+        if (list == null || score <= 0) {
+            return;
+        }
+        if (list.size() >= neighborCount && score <= list.get(list.size() - 1).score) {
+            return;
+        }
+        
+        int position = 0;
+        while (position < list.size() && list.get(position).score >= score) {
+            position++;
+        }
+        list.add(position, new Neighbor(candidate, score));
+        listedBy.computeIfAbsent(candidate, k -> new HashSet<>()).add(id);
+        
+        if (list.size() > neighborCount) {
+            Neighbor dropped = list.remove(list.size() - 1);
+            Set<Long> listing = listedBy.get(dropped.recipeId);
+            if (listing != null) {
+                listing.remove(id);
+            }
+        }
+    }
+    
+    private static double similarity(Features a, Features b) {
+        double score = 0;
+        if (!a.ingredients.isEmpty() && !b.ingredients.isEmpty()) {
+            score += INGREDIENT_WEIGHT * estimatedJaccard(a.signature, b.signature);
+        }
+        score += CATEGORY_WEIGHT * jaccard(a.categories, b.categories);
+        score += TAG_WEIGHT * jaccard(a.dietaryTags, b.dietaryTags);
+        score += NUTRITION_WEIGHT * nutritionSimilarity(a.nutrition, b.nutrition);
+        return score;
+    }
+    
+    private static double estimatedJaccard(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_LENGTH;
+    }
+    
+    private static <T> double jaccard(Set<T> a, Set<T> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int shared = 0;
+        for (T item : a) {
+            if (b.contains(item)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+    
+    // 1 for identical profiles, falling towards 0 with scaled Euclidean distance over
+    // the values both recipes specify
+    private static double nutritionSimilarity(double[] a, double[] b) {
+        double sum = 0;
+        int dimensions = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (Double.isNaN(a[i]) || Double.isNaN(b[i])) {
+                continue;
+            }
+            double difference = a[i] - b[i];
+            sum += difference * difference;
+            dimensions++;
+        }
+        if (dimensions == 0) {
+            return 0;
+        }
+        return 1.0 / (1.0 + Math.sqrt(sum / dimensions));
+    }
+    
+    // Lowercase words, simple plural stripped, so "Red Onions" and "red onion" match
+    private static String normalizeIngredient(String name) {
+        String normalized = name.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        if (normalized.length() > 3 && normalized.endsWith("s") && !normalized.endsWith("ss")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+    
+    // murmur3 finalizer, seeded per signature position
+    private static int hash(int value, int seed) {
+        int h = value ^ seed;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+    
+    private static class Features {
+        final Set<Recipe.RecipeCategory> categories;
+        final Set<String> dietaryTags;
+        final Set<String> ingredients;
+        final int[] signature;
+        final long[] bucketKeys;
+        final double[] nutrition; // scaled; NaN when unknown
+        
+        Features(Set<Recipe.RecipeCategory> categories, Set<String> dietaryTags, Collection<String> ingredientNames,
+                 Integer calories, Double protein, Double carbohydrates, Double fat, Double fiber) {
+            this.categories = categories != null ? Set.copyOf(categories) : Set.of();
+            this.dietaryTags = dietaryTags != null ? Set.copyOf(dietaryTags) : Set.of();
+            this.ingredients = ingredientNames.stream()
+                    .filter(Objects::nonNull)
+                    .map(SimilarRecipeIndex::normalizeIngredient)
+                    .filter(name -> !name.isEmpty())
+                    .collect(Collectors.toUnmodifiableSet());
+            
+            this.signature = new int[SIGNATURE_LENGTH];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+            for (String ingredient : ingredients) {
+                int value = ingredient.hashCode();
+                for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+                    signature[i] = Math.min(signature[i], hash(value, HASH_SEEDS[i]));
+                }
+            }
+            
+            // Recipes without ingredients would all share every bucket
+            if (ingredients.isEmpty()) {
+                this.bucketKeys = new long[0];
+            } else {
+                this.bucketKeys = new long[BANDS];
+                for (int band = 0; band < BANDS; band++) {
+                    int bandHash = Arrays.hashCode(Arrays.copyOfRange(signature, band * ROWS, (band + 1) * ROWS));
+                    bucketKeys[band] = ((long) band << 32) | (bandHash & 0xffffffffL);
+                }
+            }
+            
+            this.nutrition = new double[] {
+                    scaled(calories != null ? calories.doubleValue() : null, 0),
+                    scaled(protein, 1),
+                    scaled(carbohydrates, 2),
+                    scaled(fat, 3),
+                    scaled(fiber, 4)
+            };
+        }
+        
+        private static double scaled(Double value, int dimension) {
+            return value != null ? value / NUTRITION_SCALE[dimension] : Double.NaN;
+        }
+    }
+    
+    private static class Neighbor {
+        static final Comparator<Neighbor> WORST_FIRST = Comparator
+                .comparingDouble((Neighbor n) -> n.score)
+                .thenComparingLong(n -> n.recipeId);
+        
+        final long recipeId;
+        final double score;
+        
+        Neighbor(long recipeId, double score) {
+            this.recipeId = recipeId;
+            this.score = score;
+        }
+    }
+}
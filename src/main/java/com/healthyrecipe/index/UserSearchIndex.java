@@ -0,0 +1,413 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.UserChangedEvent;
+import com.healthyrecipe.repository.UserRepository;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * N-gram index over the username, first and last name of every user, for admin search.
+ * Each field contributes its substrings of one to three characters, plus its first one
+ * to three characters marked as a field start, to compressed bitmaps of user ordinals.
+ * Built on startup and kept current from {@link UserChangedEvent}s, so a search is a
+ * few bitmap ANDs and never scans the users table.
+ *
+ * A query matches users having it as a case-insensitive substring of one of the
+ * fields, as the SQL filter does. Queries of up to three characters are answered from
+ * the bitmaps alone (short fields are also indexed whole, to find exact matches);
+ * longer ones intersect all their trigrams and check the few candidates left against
+ * the stored names. Matches are ranked exact field match first, then field prefix,
+ * then any substring, and newest first within a rank.
+ */
+@Component
+public class UserSearchIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+    
+    // Longest n-gram indexed
+    private static final int GRAM_LENGTH = 3;
+    
+    // Prepended to the n-grams taken from the start of a field
+    private static final char FIELD_START = '\u0001';
+    
+    // Separates the fields in a user's stored search text
+    private static final char FIELD_SEPARATOR = '\n';
+    
+    // Match ranks, best first
+    public static final int RANK_EXACT = 3;
+    public static final int RANK_PREFIX = 2;
+    public static final int RANK_SUBSTRING = 1;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private Grams grams = new Grams();
+    
+    // Changes committed while a rebuild reads the database, replayed onto the new grams
+    // after the swap since the rows it read may predate them
+    private List<UserChangedEvent> changedDuringBuild;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        Grams built = new Grams();
+        try (Stream<Object[]> rows = userRepository.streamSearchFields()) {
+            rows.forEach(row -> built.put((Long) row[0], text((String) row[1], (String) row[2], (String) row[3]),
+                    (User.Role) row[4], (User.AccountStatus) row[5]));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        built.optimize();
+        
+        lock.writeLock().lock();
+        try {
+            grams = built;
+            for (UserChangedEvent event : changedDuringBuild) {
+                apply(event);
+            }
+            changedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        logger.info("User search index built with {} users and {} n-grams", built.size, built.postings.size());
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(event);
+            if (changedDuringBuild != null) {
+                changedDuringBuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Called with the write lock held; applying an event twice leaves the same grams
+    private void apply(UserChangedEvent event) {
+        User user = event.getUser();
+        grams.put(user.getId(), text(user.getUsername(), user.getFirstName(), user.getLastName()),
+                user.getRole(), user.getStatus());
+    }
+    
+    /**
+     * Returns the ids of users matching the query and the optional role and status
+     * filters, best match first.
+     */
+    public SearchResult search(String query, User.Role role, User.AccountStatus status, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return grams.match(normalize(query), role, status).page(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Keyset variant of {@link #search}: returns the matches ranked strictly after the
+     * match with the given rank and id.
+     */
+    public SearchResult searchAfter(String query, User.Role role, User.AccountStatus status,
+                                    int afterRank, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer afterOrdinal = grams.ordinals.get(afterId);
+            if (afterOrdinal == null) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return grams.match(normalize(query), role, status).pageAfter(afterRank, afterOrdinal, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static String text(String username, String firstName, String lastName) {
+        return normalize(username) + FIELD_SEPARATOR + normalize(firstName) + FIELD_SEPARATOR + normalize(lastName);
+    }
+    
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().toLowerCase(Locale.ROOT).replace(FIELD_SEPARATOR, ' ');
+    }
+    
+    // N-grams of every field of a search text; fields no longer than an n-gram are also kept whole
+    private static Set<String> gramsOf(String text) {
+        Set<String> result = new HashSet<>();
+        for (String field : text.split(String.valueOf(FIELD_SEPARATOR))) {
+            if (!field.isEmpty() && field.length() <= GRAM_LENGTH) {
+                result.add(FIELD_START + field + FIELD_SEPARATOR);
+            }
+            for (int n = 1; n <= GRAM_LENGTH && n <= field.length(); n++) {
+                result.add(FIELD_START + field.substring(0, n));
+                for (int i = 0; i + n <= field.length(); i++) {
+                    result.add(field.substring(i, i + n));
+                }
+            }
+        }
+        return result;
+    }
+    
+    // Whether a field of the text starts with, or with `whole` equals, the query
+    private static boolean hasField(String text, String query, boolean whole) {
+        int start = 0;
+        while (true) {
+            int end = text.indexOf(FIELD_SEPARATOR, start);
+            if (end < 0) {
+                end = text.length();
+            }
+            if (text.startsWith(query, start) && (!whole || end - start == query.length())) {
+                return true;
+            }
+            if (end == text.length()) {
+                return false;
+            }
+            start = end + 1;
+        }
+    }
+    
+    // Posting lists plus the ordinal mapping and the text matches are checked against
+    private static class Grams {
+        final Map<Long, Integer> ordinals = new HashMap<>();
+        long[] ids = new long[1024];
+        String[] texts = new String[1024];
+        int size;
+        
+        final Map<String, RoaringBitmap> postings = new HashMap<>();
+        final Map<User.Role, RoaringBitmap> byRole = enumBitmaps(User.Role.class);
+        final Map<User.AccountStatus, RoaringBitmap> byStatus = enumBitmaps(User.AccountStatus.class);
+        
+        private static <E extends Enum<E>> Map<E, RoaringBitmap> enumBitmaps(Class<E> type) {
+            Map<E, RoaringBitmap> bitmaps = new EnumMap<>(type);
+            for (E value : type.getEnumConstants()) {
+                bitmaps.put(value, new RoaringBitmap());
+            }
+            return bitmaps;
+        }
+        
+        // Users are never deleted, so ordinals only grow; ids ascend with them
+        void put(long id, String text, User.Role role, User.AccountStatus status) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    texts = Arrays.copyOf(texts, size * 2);
+                }
+                ordinal = size++;
+                ids[ordinal] = id;
+                ordinals.put(id, ordinal);
+            } else {
+                clear(ordinal);
+            }
+            
+            texts[ordinal] = text;
+            for (String gram : gramsOf(text)) {
+                postings.computeIfAbsent(gram, g -> new RoaringBitmap()).add(ordinal);
+            }
+            if (role != null) {
+                byRole.get(role).add(ordinal);
+            }
+            if (status != null) {
+                byStatus.get(status).add(ordinal);
+            }
+        }
+        
+        private void clear(int ordinal) {
+            for (String gram : gramsOf(texts[ordinal])) {
+                RoaringBitmap bitmap = postings.get(gram);
+                bitmap.remove(ordinal);
+                if (bitmap.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+            byRole.values().forEach(bitmap -> bitmap.remove(ordinal));
+            byStatus.values().forEach(bitmap -> bitmap.remove(ordinal));
+        }
+        
+        void optimize() {
+            postings.values().forEach(RoaringBitmap::runOptimize);
+            byRole.values().forEach(RoaringBitmap::runOptimize);
+            byStatus.values().forEach(RoaringBitmap::runOptimize);
+        }
+        
+        Matches match(String query, User.Role role, User.AccountStatus status) {
+            if (query.isEmpty()) {
+                return new Matches(new RoaringBitmap[0], new int[0]);
+            }
+            
+            Set<String> queryGrams = new HashSet<>();
+            for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+                queryGrams.add(query.substring(i, i + GRAM_LENGTH));
+            }
+            if (queryGrams.isEmpty()) {
+                queryGrams.add(query);
+            }
+            RoaringBitmap substring = all(queryGrams);
+            if (role != null) {
+                substring.and(byRole.get(role));
+            }
+            if (status != null) {
+                substring.and(byStatus.get(status));
+            }
+            RoaringBitmap prefix = all(Set.of(FIELD_START + query.substring(0, Math.min(GRAM_LENGTH, query.length()))));
+            prefix.and(substring);
+            
+            RoaringBitmap exact;
+            if (query.length() > GRAM_LENGTH) {
+                // Longer queries match all their trigrams without necessarily containing the query
+                substring = filter(substring, text -> text.contains(query));
+                prefix = filter(prefix, text -> hasField(text, query, false));
+                exact = filter(prefix, text -> hasField(text, query, true));
+            } else {
+                exact = all(Set.of(FIELD_START + query + FIELD_SEPARATOR));
+                exact.and(prefix);
+            }
+            
+            return new Matches(
+                    new RoaringBitmap[] { exact, RoaringBitmap.andNot(prefix, exact), RoaringBitmap.andNot(substring, prefix) },
+                    new int[] { RANK_EXACT, RANK_PREFIX, RANK_SUBSTRING });
+        }
+        
+        // Intersection of the posting lists of all the grams, smallest first
+        private RoaringBitmap all(Set<String> grams) {
+            List<RoaringBitmap> lists = new ArrayList<>(grams.size());
+            for (String gram : grams) {
+                RoaringBitmap bitmap = postings.get(gram);
+                if (bitmap == null) {
+                    return new RoaringBitmap();
+                }
+                lists.add(bitmap);
+            }
+            lists.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+            
+            RoaringBitmap intersection = lists.get(0).clone();
+            for (int i = 1; i < lists.size() && !intersection.isEmpty(); i++) {
+                intersection.and(lists.get(i));
+            }
+            return intersection;
+        }
+        
+        private RoaringBitmap filter(RoaringBitmap candidates, Predicate<String> test) {
+            RoaringBitmap matching = new RoaringBitmap();
+            IntIterator members = candidates.getIntIterator();
+            while (members.hasNext()) {
+                int ordinal = members.next();
+                if (test.test(texts[ordinal])) {
+                    matching.add(ordinal);
+                }
+            }
+            return matching;
+        }
+        
+        // Matches by rank, best rank first; each rank is read from the highest ordinal down
+        private class Matches {
+            final RoaringBitmap[] byRank;
+            final int[] ranks;
+            
+            Matches(RoaringBitmap[] byRank, int[] ranks) {
+                this.byRank = byRank;
+                this.ranks = ranks;
+            }
+            
+            SearchResult page(int offset, int limit) {
+                long total = 0;
+                for (RoaringBitmap bitmap : byRank) {
+                    total += bitmap.getLongCardinality();
+                }
+                
+                List<Long> userIds = new ArrayList<>();
+                List<Integer> hitRanks = new ArrayList<>();
+                long skip = offset;
+                for (int r = 0; r < byRank.length && userIds.size() < limit; r++) {
+                    long cardinality = byRank[r].getLongCardinality();
+                    if (skip >= cardinality) {
+                        skip -= cardinality;
+                        continue;
+                    }
+                    collect(r, cardinality - 1 - skip, limit, userIds, hitRanks);
+                    skip = 0;
+                }
+                return new SearchResult(userIds, hitRanks, total);
+            }
+            
+            SearchResult pageAfter(int afterRank, int afterOrdinal, int limit) {
+                long total = 0;
+                List<Long> userIds = new ArrayList<>();
+                List<Integer> hitRanks = new ArrayList<>();
+                for (int r = 0; r < byRank.length; r++) {
+                    total += byRank[r].getLongCardinality();
+                    if (ranks[r] > afterRank || userIds.size() >= limit) {
+                        continue;
+                    }
+                    long top = ranks[r] == afterRank
+                            ? (afterOrdinal == 0 ? -1 : byRank[r].rankLong(afterOrdinal - 1) - 1)
+                            : byRank[r].getLongCardinality() - 1;
+                    collect(r, top, limit, userIds, hitRanks);
+                }
+                return new SearchResult(userIds, hitRanks, total);
+            }
+            
+            // Adds members of a rank from the given position down until the page is full
+            private void collect(int r, long from, int limit, List<Long> userIds, List<Integer> hitRanks) {
+                for (long position = from; position >= 0 && userIds.size() < limit; position--) {
+                    userIds.add(ids[byRank[r].select((int) position)]);
+                    hitRanks.add(ranks[r]);
+                }
+            }
+        }
+    }
+    
+    public static class SearchResult {
+        private final List<Long> userIds;
+        private final List<Integer> ranks;
+        private final long totalHits;
+        
+        public SearchResult(List<Long> userIds, List<Integer> ranks, long totalHits) {
+            this.userIds = userIds;
+            this.ranks = ranks;
+            this.totalHits = totalHits;
+        }
+        
+        public List<Long> getUserIds() { return userIds; }
+        
+        // Match rank of each returned hit, used to build keyset cursors
+        public List<Integer> getRanks() { return ranks; }
+        
+        public long getTotalHits() { return totalHits; }
+    }
+}
@@ -3,15 +3,21 @@ package com.healthyrecipe.repository;
 import com.healthyrecipe.entity.Favorite;
 import com.healthyrecipe.entity.Recipe;
 import com.healthyrecipe.entity.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface FavoriteRepository extends JpaRepository<Favorite, Long> {
@@ -29,8 +35,23 @@ public interface FavoriteRepository extends JpaRepository<Favorite, Long> {
     @Query("SELECT COUNT(f) FROM Favorite f WHERE f.recipe = :recipe")
     Long countByRecipe(@Param("recipe") Recipe recipe);
     
-    @Query("SELECT f.recipe FROM Favorite f WHERE f.user = :user ORDER BY f.createdAt DESC")
-    Page<Recipe> findFavoriteRecipesByUser(@Param("user") User user, Pageable pageable);
+    @Query("SELECT f.recipe.id, COUNT(f) FROM Favorite f GROUP BY f.recipe.id")
+    List<Object[]> countFavoritesGroupedByRecipe();
+    
+    @Query("SELECT f.recipe.id FROM Favorite f WHERE f.user = :user ORDER BY f.createdAt DESC")
+    Page<Long> findFavoriteRecipeIdsByUser(@Param("user") User user, Pageable pageable);
+    
+    @Query("SELECT f.recipe.id FROM Favorite f WHERE f.user.id = :userId")
+    List<Long> findRecipeIdsByUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT f.recipe.id FROM Favorite f WHERE f.user.id = :userId AND f.recipe.id IN :recipeIds")
+    List<Long> findRecipeIdsByUserIdAndRecipeIdIn(@Param("userId") Long userId,
+                                                  @Param("recipeIds") Collection<Long> recipeIds);
+    
+    // (user id, recipe id) of all favorites, grouped by user for the collaborative filtering build
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + RecipeRepository.EXPORT_FETCH_SIZE))
+    @Query("SELECT f.user.id, f.recipe.id FROM Favorite f WHERE f.recipe.status = :status ORDER BY f.user.id")
+    Stream<Object[]> streamUserAndRecipeIdsByRecipeStatus(@Param("status") Recipe.RecipeStatus status);
     
     @Query("SELECT f FROM Favorite f WHERE f.user = :user ORDER BY f.createdAt DESC")
     Page<Favorite> findByUserOrderByCreatedAtDesc(@Param("user") User user, Pageable pageable);
@@ -2,24 +2,40 @@ package com.healthyrecipe.repository;
 
 import com.healthyrecipe.entity.Ingredient;
 import com.healthyrecipe.entity.Recipe;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
     
     List<Ingredient> findByRecipe(Recipe recipe);
     
-    @Query("SELECT i FROM Ingredient i WHERE LOWER(i.name) LIKE LOWER(CONCAT('%', :name, '%'))")
-    List<Ingredient> findByNameContaining(@Param("name") String name);
-    
-    @Query("SELECT DISTINCT i.name FROM Ingredient i ORDER BY i.name")
-    List<String> findDistinctIngredientNames();
-    
     @Query("SELECT i FROM Ingredient i WHERE i.recipe = :recipe ORDER BY i.name")
     List<Ingredient> findByRecipeOrderByName(@Param("recipe") Recipe recipe);
-}
\ No newline at end of file
+    
+    @Modifying
+    @Query("DELETE FROM Ingredient i WHERE i.recipe = :recipe")
+    int deleteByRecipe(@Param("recipe") Recipe recipe);
+    
+    // Ingredient name lookups are served by IngredientDictionary
+    @Query("SELECT i.recipe.id, i.name FROM Ingredient i")
+    List<Object[]> findRecipeIdAndName();
+    
+    @Query("SELECT i.recipe.id, i.name FROM Ingredient i WHERE i.recipe.status = :status")
+    List<Object[]> findRecipeIdAndNameByRecipeStatus(@Param("status") Recipe.RecipeStatus status);
+    
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + RecipeRepository.EXPORT_FETCH_SIZE))
+    @Query("SELECT i.recipe.id, i.name, i.quantity, i.unit, i.notes FROM Ingredient i " +
+           "WHERE i.recipe.status = :status ORDER BY i.recipe.id, i.id")
+    Stream<Object[]> streamByRecipeStatus(@Param("status") Recipe.RecipeStatus status);
+}
@@ -0,0 +1,180 @@
+package com.healthyrecipe.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Native single-statement writes of a user's rating and favorite, keyed by user and
+ * recipe id, so a vote or a favorite toggle is one round trip with no read before the
+ * write and no entity loading. Concurrent writes for the same pair resolve on the
+ * unique (user_id, recipe_id) constraints instead of failing on it. H2 uses MERGE;
+ * MySQL uses INSERT IGNORE, and for ratings a locking read of the previous rating
+ * followed by an UPDATE or INSERT in the caller's transaction. Missing rating
+ * aggregate rows are created the same way, so concurrent first ratings of a recipe
+ * do not collide on its primary key.
+ *
+ * These bypass the persistence context: entities of the same rows loaded earlier in
+ * the transaction are not updated.
+ */
+@Repository
+public class InteractionUpsertRepository {
+    
+    private static final String H2_UPSERT_RATING =
+            "SELECT rating FROM OLD TABLE (MERGE INTO ratings r " +
+            "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) v(user_id, recipe_id) " +
+            "ON r.user_id = v.user_id AND r.recipe_id = v.recipe_id " +
+            "WHEN MATCHED THEN UPDATE SET rating = ?, comment = ?, updated_at = ? " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, recipe_id, rating, comment, created_at, updated_at) " +
+            "VALUES (v.user_id, v.recipe_id, ?, ?, ?, ?))";
+    
+    private static final String H2_INSERT_FAVORITE =
+            "MERGE INTO favorites f " +
+            "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) v(user_id, recipe_id) " +
+            "ON f.user_id = v.user_id AND f.recipe_id = v.recipe_id " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, recipe_id, created_at) VALUES (v.user_id, v.recipe_id, ?)";
+    
+    // MySQL cannot return the replaced row: the previous rating is read with a lock held
+    // until the transaction ends, then replaced
+    private static final String MYSQL_SELECT_RATING_FOR_UPDATE =
+            "SELECT rating FROM ratings WHERE user_id = ? AND recipe_id = ? FOR UPDATE";
+    
+    private static final String MYSQL_UPDATE_RATING =
+            "UPDATE ratings SET rating = ?, comment = ?, updated_at = ? WHERE user_id = ? AND recipe_id = ?";
+    
+    private static final String MYSQL_INSERT_RATING =
+            "INSERT INTO ratings (user_id, recipe_id, rating, comment, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+    
+    private static final String MYSQL_INSERT_FAVORITE =
+            "INSERT IGNORE INTO favorites (user_id, recipe_id, created_at) VALUES (?, ?, ?)";
+    
+    private static final String RATING_STATS_COLUMNS = "recipe_id, rating_sum, rating_count, " +
+            "one_star_count, two_star_count, three_star_count, four_star_count, five_star_count";
+    
+    // recipe_rating_stats rows computed from the ratings table, for the recipes matching %s
+    private static final String AGGREGATE_RATINGS =
+            "SELECT r.id, COALESCE(SUM(x.rating), 0), COUNT(x.id), " +
+            "SUM(CASE WHEN x.rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN x.rating = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN x.rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN x.rating = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN x.rating = 5 THEN 1 ELSE 0 END) " +
+            "FROM recipes r LEFT JOIN ratings x ON x.recipe_id = r.id WHERE %s GROUP BY r.id";
+    
+    private static final String H2_INSERT_RATING_STATS =
+            "MERGE INTO recipe_rating_stats s USING (" + AGGREGATE_RATINGS + ") v(" + RATING_STATS_COLUMNS + ") " +
+            "ON s.recipe_id = v.recipe_id WHEN NOT MATCHED THEN INSERT (" + RATING_STATS_COLUMNS + ") " +
+            "VALUES (v.recipe_id, v.rating_sum, v.rating_count, v.one_star_count, v.two_star_count, " +
+            "v.three_star_count, v.four_star_count, v.five_star_count)";
+    
+    private static final String MYSQL_INSERT_RATING_STATS =
+            "INSERT IGNORE INTO recipe_rating_stats (" + RATING_STATS_COLUMNS + ") " + AGGREGATE_RATINGS;
+    
+    private static final String ONE_RECIPE = "r.id = ?";
+    private static final String RECIPES_WITHOUT_STATS =
+            "NOT EXISTS (SELECT 1 FROM recipe_rating_stats existing WHERE existing.recipe_id = r.id)";
+    
+    private static final String DELETE_FAVORITE = "DELETE FROM favorites WHERE user_id = ? AND recipe_id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private boolean mysql;
+    
+    @PostConstruct
+    void detectDatabase() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if ("MySQL".equals(product)) {
+            mysql = true;
+        } else if (!"H2".equals(product)) {
+            throw new IllegalStateException("Rating and favorite upserts are not implemented for " + product);
+        }
+    }
+    
+    /**
+     * Creates or replaces the user's rating of the recipe. Returns the rating it
+     * replaced, or 0 if the user had not rated the recipe. On MySQL this must run in a
+     * transaction, which keeps the rating locked until it ends.
+     */
+    public int upsertRating(Long userId, Long recipeId, int rating, String comment) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (mysql) {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw new IllegalStateException("Rating upserts on MySQL need a transaction");
+            }
+            while (true) {
+                Integer previous = selectRatingForUpdate(userId, recipeId);
+                if (previous != null) {
+                    jdbcTemplate.update(MYSQL_UPDATE_RATING, rating, comment, now, userId, recipeId);
+                    return previous;
+                }
+                try {
+                    jdbcTemplate.update(MYSQL_INSERT_RATING, userId, recipeId, rating, comment, now, now);
+                    return 0;
+                } catch (DuplicateKeyException e) {
+                    // A concurrent first vote committed the row after the locking read; read it again
+                }
+            }
+        }
+        
+        while (true) {
+            try {
+                List<Integer> previous = jdbcTemplate.queryForList(H2_UPSERT_RATING, Integer.class,
+                        userId, recipeId, rating, comment, now, rating, comment, now, now);
+                return previous.isEmpty() ? 0 : previous.get(0);
+            } catch (DuplicateKeyException e) {
+                // A concurrent first vote inserted the row after the MERGE found none; it
+                // matches it now and replaces it
+            }
+        }
+    }
+    
+    private Integer selectRatingForUpdate(Long userId, Long recipeId) {
+        List<Integer> ratings = jdbcTemplate.queryForList(MYSQL_SELECT_RATING_FOR_UPDATE, Integer.class,
+                userId, recipeId);
+        return ratings.isEmpty() ? null : ratings.get(0);
+    }
+    
+    // Returns whether the favorite was added, i.e. did not exist yet
+    public boolean insertFavorite(Long userId, Long recipeId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            return jdbcTemplate.update(mysql ? MYSQL_INSERT_FAVORITE : H2_INSERT_FAVORITE, userId, recipeId, now) > 0;
+        } catch (DuplicateKeyException e) {
+            // H2's MERGE can still collide with a concurrent insert of the same favorite
+            return false;
+        }
+    }
+    
+    // Returns whether a favorite was removed
+    public boolean deleteFavorite(Long userId, Long recipeId) {
+        return jdbcTemplate.update(DELETE_FAVORITE, userId, recipeId) > 0;
+    }
+    
+    /**
+     * Creates the recipe's rating aggregate row from the ratings visible to this
+     * transaction, unless the row exists. Returns whether it was created.
+     */
+    public boolean insertRatingStats(Long recipeId) {
+        try {
+            return jdbcTemplate.update(String.format(mysql ? MYSQL_INSERT_RATING_STATS : H2_INSERT_RATING_STATS,
+                    ONE_RECIPE), recipeId) > 0;
+        } catch (DuplicateKeyException e) {
+            // H2's MERGE can still collide with a concurrent insert of the same row
+            return false;
+        }
+    }
+    
+    // Creates the rating aggregate rows missing for any recipe; returns how many were created
+    public int insertMissingRatingStats() {
+        return jdbcTemplate.update(String.format(mysql ? MYSQL_INSERT_RATING_STATS : H2_INSERT_RATING_STATS,
+                RECIPES_WITHOUT_STATS));
+    }
+}
@@ -3,15 +3,21 @@ package com.healthyrecipe.repository;
 import com.healthyrecipe.entity.Rating;
 import com.healthyrecipe.entity.Recipe;
 import com.healthyrecipe.entity.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface RatingRepository extends JpaRepository<Rating, Long> {
@@ -26,6 +32,11 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     
     Optional<Rating> findByUserAndRecipe(User user, Recipe recipe);
     
+    // (recipe id, rating) of the user's ratings of the given recipes
+    @Query("SELECT r.recipe.id, r.rating FROM Rating r WHERE r.user.id = :userId AND r.recipe.id IN :recipeIds")
+    List<Object[]> findRatingsByUserIdAndRecipeIdIn(@Param("userId") Long userId,
+                                                    @Param("recipeIds") Collection<Long> recipeIds);
+    
     @Query("SELECT AVG(r.rating) FROM Rating r WHERE r.recipe = :recipe")
     Double findAverageRatingByRecipe(@Param("recipe") Recipe recipe);
     
@@ -40,4 +51,17 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     
     @Query("SELECT r FROM Rating r WHERE r.recipe = :recipe AND r.rating >= :minRating ORDER BY r.createdAt DESC")
     List<Rating> findByRecipeAndRatingGreaterThanEqual(@Param("recipe") Recipe recipe, @Param("minRating") Integer minRating);
+    
+    @Query("SELECT r.recipe.id FROM Rating r WHERE r.user.id = :userId")
+    List<Long> findRecipeIdsByUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT r.recipe.id FROM Rating r WHERE r.user.id = :userId AND r.rating >= :minRating")
+    List<Long> findRecipeIdsByUserIdAndMinRating(@Param("userId") Long userId, @Param("minRating") Integer minRating);
+    
+    // (user id, recipe id) of positive ratings, grouped by user for the collaborative filtering build
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + RecipeRepository.EXPORT_FETCH_SIZE))
+    @Query("SELECT r.user.id, r.recipe.id FROM Rating r " +
+           "WHERE r.rating >= :minRating AND r.recipe.status = :status ORDER BY r.user.id")
+    Stream<Object[]> streamUserAndRecipeIdsByMinRating(@Param("minRating") Integer minRating,
+                                                       @Param("status") Recipe.RecipeStatus status);
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.healthyrecipe.repository;
+
+import com.healthyrecipe.entity.RecipeRatingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RecipeRatingStatsRepository extends JpaRepository<RecipeRatingStats, Long> {
+    
+    @Modifying
+    @Query("UPDATE RecipeRatingStats s SET " +
+           "s.ratingSum = s.ratingSum + :sumDelta, " +
+           "s.ratingCount = s.ratingCount + :countDelta, " +
+           "s.oneStarCount = s.oneStarCount + :oneStarDelta, " +
+           "s.twoStarCount = s.twoStarCount + :twoStarDelta, " +
+           "s.threeStarCount = s.threeStarCount + :threeStarDelta, " +
+           "s.fourStarCount = s.fourStarCount + :fourStarDelta, " +
+           "s.fiveStarCount = s.fiveStarCount + :fiveStarDelta " +
+           "WHERE s.recipeId = :recipeId")
+    int applyDeltas(@Param("recipeId") Long recipeId,
+                    @Param("sumDelta") Long sumDelta,
+                    @Param("countDelta") Integer countDelta,
+                    @Param("oneStarDelta") Integer oneStarDelta,
+                    @Param("twoStarDelta") Integer twoStarDelta,
+                    @Param("threeStarDelta") Integer threeStarDelta,
+                    @Param("fourStarDelta") Integer fourStarDelta,
+                    @Param("fiveStarDelta") Integer fiveStarDelta);
+    
+    // Applies any number of rating changes in one statement, given the net change in
+    // ratings per star (index 1-5; index 0, "no rating", is ignored)
+    default int applyStarDeltas(Long recipeId, int[] starDeltas) {
+        long sumDelta = 0;
+        int countDelta = 0;
+        for (int star = 1; star <= 5; star++) {
+            sumDelta += (long) star * starDeltas[star];
+            countDelta += starDeltas[star];
+        }
+        
+        return applyDeltas(recipeId, sumDelta, countDelta,
+                starDeltas[1], starDeltas[2], starDeltas[3], starDeltas[4], starDeltas[5]);
+    }
+}
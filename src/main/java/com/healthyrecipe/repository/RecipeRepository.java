@@ -1,27 +1,51 @@
 package com.healthyrecipe.repository;
 
+import com.healthyrecipe.dto.recipe.RecipeExportRecord;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.entity.Recipe;
 import com.healthyrecipe.entity.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface RecipeRepository extends JpaRepository<Recipe, Long> {
     
+    int EXPORT_FETCH_SIZE = 500;
+    
+    // Recipe with its author initialized, for building a RecipeDetail
+    @Query("SELECT r FROM Recipe r JOIN FETCH r.author WHERE r.id = :id")
+    Optional<Recipe> findWithAuthorById(@Param("id") Long id);
+    
     List<Recipe> findByAuthor(User author);
     
     Page<Recipe> findByAuthor(User author, Pageable pageable);
     
+    @Query("SELECT r.id FROM Recipe r WHERE r.author = :author")
+    Page<Long> findIdsByAuthor(@Param("author") User author, Pageable pageable);
+    
     List<Recipe> findByStatus(Recipe.RecipeStatus status);
     
     Page<Recipe> findByStatus(Recipe.RecipeStatus status, Pageable pageable);
     
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = :status")
+    List<Long> findIdsByStatus(@Param("status") Recipe.RecipeStatus status);
+    
     @Query("SELECT r FROM Recipe r WHERE LOWER(r.title) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
            "OR LOWER(r.description) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     Page<Recipe> findByTitleOrDescriptionContaining(@Param("keyword") String keyword, Pageable pageable);
@@ -31,25 +55,12 @@ public interface RecipeRepository extends JpaRepository<Recipe, Long> {
            "OR LOWER(r.description) LIKE LOWER(CONCAT('%', :keyword, '%')))")
     Page<Recipe> findApprovedByTitleOrDescriptionContaining(@Param("keyword") String keyword, Pageable pageable);
     
-    @Query("SELECT r FROM Recipe r JOIN r.categories c WHERE c IN :categories AND r.status = 'APPROVED'")
-    Page<Recipe> findApprovedByCategories(@Param("categories") List<Recipe.RecipeCategory> categories, Pageable pageable);
-    
-    @Query("SELECT r FROM Recipe r JOIN r.dietaryTags dt WHERE dt IN :tags AND r.status = 'APPROVED'")
-    Page<Recipe> findApprovedByDietaryTags(@Param("tags") List<String> tags, Pageable pageable);
-    
-    @Query("SELECT r FROM Recipe r WHERE r.status = 'APPROVED' " +
-           "AND r.nutritionInfo.calories BETWEEN :minCalories AND :maxCalories")
-    Page<Recipe> findApprovedByCalorieRange(@Param("minCalories") Integer minCalories, 
-                                          @Param("maxCalories") Integer maxCalories, 
-                                          Pageable pageable);
-    
-    @Query("SELECT r FROM Recipe r WHERE r.status = 'APPROVED' " +
-           "AND r.preparationTime + r.cookingTime <= :maxTime")
-    Page<Recipe> findApprovedByMaxTotalTime(@Param("maxTime") Integer maxTime, Pageable pageable);
+    // Listing queries select ids only; RecipeSummary rows for a page are loaded in one
+    // batch by findSummariesByIdIn. EXISTS keeps multi-valued filters from duplicating rows.
+    // Offset filter listings are answered by RecipeFilterIndex instead.
     
-    @Query("SELECT r FROM Recipe r WHERE r.status = 'APPROVED' " +
-           "AND r.difficultyLevel = :difficulty")
-    Page<Recipe> findApprovedByDifficulty(@Param("difficulty") Recipe.DifficultyLevel difficulty, Pageable pageable);
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = :status")
+    Page<Long> findIdsByStatus(@Param("status") Recipe.RecipeStatus status, Pageable pageable);
     
     @Query("SELECT r FROM Recipe r LEFT JOIN r.ratings rt " +
            "WHERE r.status = 'APPROVED' " +
@@ -57,13 +68,128 @@ public interface RecipeRepository extends JpaRepository<Recipe, Long> {
            "ORDER BY AVG(rt.rating) DESC")
     Page<Recipe> findTopRatedApprovedRecipes(Pageable pageable);
     
-    @Query("SELECT r FROM Recipe r WHERE r.status = 'APPROVED' " +
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
            "ORDER BY r.createdAt DESC")
-    Page<Recipe> findLatestApprovedRecipes(Pageable pageable);
+    Page<Long> findLatestApprovedIds(Pageable pageable);
     
     @Query("SELECT r FROM Recipe r LEFT JOIN r.favorites f " +
            "WHERE r.status = 'APPROVED' " +
            "GROUP BY r.id " +
            "ORDER BY COUNT(f.id) DESC")
     Page<Recipe> findMostFavoritedApprovedRecipes(Pageable pageable);
-}
\ No newline at end of file
+    
+    // Keyset variants: ids newest first on (createdAt, id), strictly after the given position,
+    // without a count query. Pass PageRequest.of(0, size) as the pageable.
+    
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<Long> findApprovedIdsAfter(@Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+    
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
+           "AND EXISTS (SELECT 1 FROM Recipe r2 JOIN r2.categories c WHERE r2 = r AND c IN :categories) " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<Long> findApprovedIdsByCategoriesAfter(@Param("categories") List<Recipe.RecipeCategory> categories,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+    
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
+           "AND EXISTS (SELECT 1 FROM Recipe r2 JOIN r2.dietaryTags dt WHERE r2 = r AND dt IN :tags) " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<Long> findApprovedIdsByDietaryTagsAfter(@Param("tags") List<String> tags,
+                                                  @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") Long id,
+                                                  Pageable pageable);
+    
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
+           "AND r.nutritionInfo.calories BETWEEN :minCalories AND :maxCalories " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<Long> findApprovedIdsByCalorieRangeAfter(@Param("minCalories") Integer minCalories,
+                                                   @Param("maxCalories") Integer maxCalories,
+                                                   @Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+    
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
+           "AND r.preparationTime + r.cookingTime <= :maxTime " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<Long> findApprovedIdsByMaxTotalTimeAfter(@Param("maxTime") Integer maxTime,
+                                                   @Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+    
+    @Query("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
+           "AND r.difficultyLevel = :difficulty " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    Slice<Long> findApprovedIdsByDifficultyAfter(@Param("difficulty") Recipe.DifficultyLevel difficulty,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+    
+    @Query("SELECT new com.healthyrecipe.dto.recipe.RecipeSummary(r.id, r.title, r.description, r.imageUrl, " +
+           "r.preparationTime, r.cookingTime, r.servings, r.difficultyLevel, r.status, " +
+           "r.nutritionInfo.calories, r.nutritionInfo.protein, r.nutritionInfo.carbohydrates, r.nutritionInfo.fat, " +
+           "r.createdAt, a.id, a.username, s.ratingSum, s.ratingCount) " +
+           "FROM Recipe r JOIN r.author a LEFT JOIN RecipeRatingStats s ON s.recipeId = r.id " +
+           "WHERE r.id IN :ids")
+    List<RecipeSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT r.id, c FROM Recipe r JOIN r.categories c WHERE r.id IN :ids")
+    List<Object[]> findCategoriesByRecipeIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT r.id, dt FROM Recipe r JOIN r.dietaryTags dt WHERE r.id IN :ids")
+    List<Object[]> findDietaryTagsByRecipeIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Bulk loads for the in-memory scoring and similarity indexes
+    @Query("SELECT r.id, r.nutritionInfo.calories, r.nutritionInfo.protein, r.nutritionInfo.carbohydrates, " +
+           "r.nutritionInfo.fat, r.nutritionInfo.fiber, r.preparationTime, r.cookingTime " +
+           "FROM Recipe r WHERE r.status = :status")
+    List<Object[]> findScoringFeaturesByStatus(@Param("status") Recipe.RecipeStatus status);
+    
+    @Query("SELECT r.id, c FROM Recipe r JOIN r.categories c WHERE r.status = :status")
+    List<Object[]> findCategoriesByStatus(@Param("status") Recipe.RecipeStatus status);
+    
+    @Query("SELECT r.id, dt FROM Recipe r JOIN r.dietaryTags dt WHERE r.status = :status")
+    List<Object[]> findDietaryTagsByStatus(@Param("status") Recipe.RecipeStatus status);
+    
+    // Bulk loads for the filter index, which covers recipes of every status
+    @Query("SELECT r.id, r.status, r.difficultyLevel, r.nutritionInfo.calories, r.preparationTime, r.cookingTime " +
+           "FROM Recipe r ORDER BY r.createdAt, r.id")
+    List<Object[]> findFilterFeaturesOrderByCreatedAt();
+    
+    @Query("SELECT r.id, c FROM Recipe r JOIN r.categories c")
+    List<Object[]> findRecipeIdAndCategory();
+    
+    @Query("SELECT r.id, dt FROM Recipe r JOIN r.dietaryTags dt")
+    List<Object[]> findRecipeIdAndDietaryTag();
+    
+    // Export cursors: all ordered by recipe id so RecipeExportService can merge them in one pass.
+    // Projections are not managed entities, so the persistence context stays empty while streaming.
+    
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.healthyrecipe.dto.recipe.RecipeExportRecord(r.id, r.title, r.description, " +
+           "r.instructions, r.preparationTime, r.cookingTime, r.servings, r.difficultyLevel, r.imageUrl, " +
+           "r.nutritionInfo.calories, r.nutritionInfo.protein, r.nutritionInfo.carbohydrates, r.nutritionInfo.fat, " +
+           "r.nutritionInfo.fiber, r.nutritionInfo.sugar, r.nutritionInfo.sodium, a.username, r.createdAt) " +
+           "FROM Recipe r JOIN r.author a WHERE r.status = :status ORDER BY r.id")
+    Stream<RecipeExportRecord> streamExportRecordsByStatus(@Param("status") Recipe.RecipeStatus status);
+    
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("SELECT r.id, c FROM Recipe r JOIN r.categories c WHERE r.status = :status ORDER BY r.id")
+    Stream<Object[]> streamCategoriesByStatus(@Param("status") Recipe.RecipeStatus status);
+    
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("SELECT r.id, dt FROM Recipe r JOIN r.dietaryTags dt WHERE r.status = :status ORDER BY r.id")
+    Stream<Object[]> streamDietaryTagsByStatus(@Param("status") Recipe.RecipeStatus status);
+}
@@ -1,17 +1,42 @@
 package com.healthyrecipe.repository;
 
+import com.healthyrecipe.dto.user.UserSummary;
 import com.healthyrecipe.entity.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     
+    int EXPORT_FETCH_SIZE = 500;
+    
+    // Optional filters of the admin listings: a null parameter matches every user, and
+    // :name is a lowercase LIKE pattern matched against username, first and last name.
+    // Paged listings filter by name through UserSearchIndex instead.
+    String ROLE_STATUS_FILTER = "WHERE (:role IS NULL OR u.role = :role) AND (:status IS NULL OR u.status = :status) ";
+    
+    String ADMIN_FILTER = ROLE_STATUS_FILTER + "AND (:name IS NULL OR LOWER(u.username) LIKE :name " +
+           "OR LOWER(u.firstName) LIKE :name OR LOWER(u.lastName) LIKE :name) ";
+    
+    String SELECT_SUMMARY = "SELECT new com.healthyrecipe.dto.user.UserSummary(u.id, u.username, u.email, " +
+           "u.firstName, u.lastName, u.role, u.status, u.fitnessGoal, u.dailyCalorieTarget, u.createdAt) " +
+           "FROM User u ";
+    
     Optional<User> findByUsername(String username);
     
     Optional<User> findByEmail(String email);
@@ -20,15 +45,58 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Boolean existsByEmail(String email);
     
-    List<User> findByRole(User.Role role);
+    // Admin listings, newest first. Summaries skip the EAGER preference and allergy
+    // collections; UserService fills them in for the whole page at once.
+    
+    @Query(value = SELECT_SUMMARY + ROLE_STATUS_FILTER + "ORDER BY u.id DESC",
+           countQuery = "SELECT COUNT(u) FROM User u " + ROLE_STATUS_FILTER)
+    Page<UserSummary> findSummaries(@Param("role") User.Role role,
+                                    @Param("status") User.AccountStatus status,
+                                    Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + ROLE_STATUS_FILTER + "AND u.id < :id ORDER BY u.id DESC")
+    Slice<UserSummary> findSummariesAfter(@Param("role") User.Role role,
+                                          @Param("status") User.AccountStatus status,
+                                          @Param("id") Long id,
+                                          Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + "WHERE u.id IN :ids")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT u.id, p FROM User u JOIN u.dietaryPreferences p WHERE u.id IN :ids")
+    List<Object[]> findDietaryPreferencesByUserIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT u.id, a FROM User u JOIN u.allergies a WHERE u.id IN :ids")
+    List<Object[]> findAllergiesByUserIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Fields indexed by UserSearchIndex, in id order
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u.id, u.username, u.firstName, u.lastName, u.role, u.status FROM User u ORDER BY u.id")
+    Stream<Object[]> streamSearchFields();
+    
+    // Export cursors: all ordered by user id so UserService can merge them in one pass
     
-    List<User> findByStatus(User.AccountStatus status);
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query(SELECT_SUMMARY + ADMIN_FILTER + "ORDER BY u.id")
+    Stream<UserSummary> streamSummaries(@Param("role") User.Role role,
+                                        @Param("status") User.AccountStatus status,
+                                        @Param("name") String name);
     
-    @Query("SELECT u FROM User u WHERE u.role = :role AND u.status = :status")
-    List<User> findByRoleAndStatus(@Param("role") User.Role role, @Param("status") User.AccountStatus status);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("SELECT u.id, p FROM User u JOIN u.dietaryPreferences p " + ADMIN_FILTER + "ORDER BY u.id")
+    Stream<Object[]> streamDietaryPreferences(@Param("role") User.Role role,
+                                              @Param("status") User.AccountStatus status,
+                                              @Param("name") String name);
     
-    @Query("SELECT u FROM User u WHERE LOWER(u.firstName) LIKE LOWER(CONCAT('%', :name, '%')) " +
-           "OR LOWER(u.lastName) LIKE LOWER(CONCAT('%', :name, '%')) " +
-           "OR LOWER(u.username) LIKE LOWER(CONCAT('%', :name, '%'))")
-    List<User> findByNameContaining(@Param("name") String name);
-}
\ No newline at end of file
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("SELECT u.id, a FROM User u JOIN u.allergies a " + ADMIN_FILTER + "ORDER BY u.id")
+    Stream<Object[]> streamAllergies(@Param("role") User.Role role,
+                                     @Param("status") User.AccountStatus status,
+                                     @Param("name") String name);
+}
@@ -1,5 +1,6 @@
 package com.healthyrecipe.security;
 
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +25,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
     
+    @Autowired
+    private UserPrincipalCache principalCache;
+    
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
     
     @Override
@@ -31,10 +35,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
                                   FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            Claims claims = jwt != null ? jwtUtils.verifyJwtToken(jwt) : null;
+            if (claims != null) {
+                String username = claims.getSubject();
                 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = principalCache.get(username,
+                        name -> (UserPrincipal) userDetailsService.loadUserByUsername(name));
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -2,6 +2,7 @@ package com.healthyrecipe.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,7 +10,14 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class JwtUtils {
@@ -22,8 +30,31 @@ public class JwtUtils {
     @Value("${app.jwt.expiration}")
     private int jwtExpirationMs;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Value("${app.jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize;
+    
+    // Derived once from the secret; JwtParser is immutable and thread-safe
+    private SecretKey signingKey;
+    private JwtParser parser;
+    
+    // Claims of tokens that already passed verification, keyed by SHA-256 of the token
+    // so raw tokens are not kept in memory; entries live until the token expires
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
     
     public String generateJwtToken(Authentication authentication) {
@@ -33,26 +64,53 @@ public class JwtUtils {
                 .setSubject((userPrincipal.getUsername()))
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
+    /**
+     * Verifies the token's signature and expiry and returns its claims, or null if the
+     * token is invalid. Repeat calls with the same token are served from the verified
+     * token cache until the token expires.
+     */
+    public Claims verifyJwtToken(String authToken) {
+        long now = System.currentTimeMillis();
+        String key = hash(authToken);
+        
+        VerifiedToken verified = verifiedTokens.get(key);
+        if (verified != null) {
+            if (now < verified.expiresAt) {
+                return verified.claims;
+            }
+            verifiedTokens.remove(key);
+        }
+        
+        Claims claims = parseClaims(authToken);
+        if (claims != null && claims.getExpiration() != null) {
+            if (verifiedTokens.size() >= verifiedCacheMaxSize) {
+                evict(now);
+            }
+            verifiedTokens.put(key, new VerifiedToken(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
+    }
+    
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        Claims claims = verifyJwtToken(token);
+        if (claims == null) {
+            throw new JwtException("Invalid JWT token");
+        }
+        return claims.getSubject();
     }
     
     public boolean validateJwtToken(String authToken) {
+        return verifyJwtToken(authToken) != null;
+    }
+    
+    // Full signature and expiry check, bypassing the cache
+    Claims parseClaims(String authToken) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
-            return true;
+            return parser.parseClaimsJws(authToken).getBody();
         } catch (SecurityException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -64,6 +122,32 @@ public class JwtUtils {
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
-        return false;
+        return null;
+    }
+    
+    // Drops expired tokens; if the cache is still full, drops arbitrary entries to make room
+    private void evict(long now) {
+        verifiedTokens.values().removeIf(token -> now >= token.expiresAt);
+        
+        Iterator<String> keys = verifiedTokens.keySet().iterator();
+        while (verifiedTokens.size() >= verifiedCacheMaxSize && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+    
+    private static String hash(String token) {
+        byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+    
+    private static class VerifiedToken {
+        final Claims claims;
+        final long expiresAt;
+        
+        VerifiedToken(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
     }
-}
\ No newline at end of file
+}
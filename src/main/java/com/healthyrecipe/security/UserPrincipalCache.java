@@ -0,0 +1,85 @@
+package com.healthyrecipe.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bounded, time-limited cache of authenticated principals keyed by username, so
+ * AuthTokenFilter does not reload the user from the database on every request.
+ * Entries must be invalidated when a user's role, status or password changes; the
+ * TTL bounds staleness for any change that misses an invalidation. A load that
+ * overlaps an invalidation is returned but not cached, so it cannot put back a
+ * principal read before the change.
+ */
+@Component
+public class UserPrincipalCache {
+    
+    @Value("${app.auth.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+    
+    @Value("${app.auth.principal-cache.max-size:10000}")
+    private int maxSize;
+    
+    private Cache<String, UserPrincipal> principals;
+    
+    // Loads hold the read lock to store their result, invalidations the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Bumped by every invalidation; a load only stores its result if this did not move
+    private volatile long generation;
+    
+    @PostConstruct
+    void init() {
+        principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+    
+    public UserPrincipal get(String username, Function<String, UserPrincipal> loader) {
+        UserPrincipal principal = principals.getIfPresent(username);
+        if (principal != null) {
+            return principal;
+        }
+        long loadedAt = generation;
+        principal = loader.apply(username);
+        
+        lock.readLock().lock();
+        try {
+            if (generation == loadedAt) {
+                principals.put(username, principal);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return principal;
+    }
+    
+    public void invalidate(String username) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            principals.invalidate(username);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            principals.invalidateAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -4,10 +4,12 @@ import com.healthyrecipe.dto.auth.JwtResponse;
 import com.healthyrecipe.dto.auth.LoginRequest;
 import com.healthyrecipe.dto.auth.SignupRequest;
 import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.UserChangedEvent;
 import com.healthyrecipe.repository.UserRepository;
 import com.healthyrecipe.security.JwtUtils;
 import com.healthyrecipe.security.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -35,6 +37,9 @@ public class AuthService {
     @Autowired
     JwtUtils jwtUtils;
     
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+    
     public JwtResponse authenticateUser(LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
@@ -113,10 +118,17 @@ public class AuthService {
         user.setDailyCalorieTarget(signUpRequest.getDailyCalorieTarget());
         
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user));
         
         return "User registered successfully!";
     }
     
+    // Id of the authenticated user, without loading the user
+    public Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return ((UserPrincipal) authentication.getPrincipal()).getId();
+    }
+    
     public User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
@@ -0,0 +1,83 @@
+package com.healthyrecipe.service;
+
+import com.healthyrecipe.event.FavoriteChangedEvent;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters behind the ETags of recipe reads: one per recipe, bumped when the
+ * recipe or its ratings change, and one for the whole catalog, bumped by every change
+ * that can alter a listing. ETags are built from memory only, so a conditional GET is
+ * answered without touching the database.
+ *
+ * Counters start at zero on every start, so each ETag also carries an instance id and
+ * tags handed out by an earlier run never match.
+ */
+@Component
+public class CatalogVersions {
+    
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    
+    private final String instanceId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    
+    private final AtomicLong catalogVersion = new AtomicLong();
+    
+    // Only recipes changed since startup have an entry; deleted recipes keep theirs
+    private final Map<Long, Long> recipeVersions = new ConcurrentHashMap<>();
+    
+    public String recipeETag(Long recipeId) {
+        return "\"" + instanceId + "-r" + recipeId + "." + recipeVersions.getOrDefault(recipeId, 0L) + "\"";
+    }
+    
+    // Tags one listing, identified by its normalized path and query, at the current catalog version.
+    // The listing goes in as its SHA-256 digest, so distinct listings do not collide and the
+    // separators and quotes of the raw query stay out of the tag
+    public String catalogETag(String listing) {
+        byte[] digest = SHA_256.get().digest(listing.getBytes(StandardCharsets.UTF_8));
+        return "\"" + instanceId + "-c" + catalogVersion.get() + "-"
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+    }
+    
+    // Bumped after completion, when the caches and indexes reads are served from have applied the change
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        recipeVersions.merge(event.getRecipeId(), 1L, Long::sum);
+        
+        // Listings only show approved recipes: pending ones being created or edited do not change them
+        boolean pendingEdit = !event.isApproved() && (event.getChangeType() == RecipeChangedEvent.ChangeType.CREATED
+                || event.getChangeType() == RecipeChangedEvent.ChangeType.UPDATED);
+        if (!pendingEdit) {
+            catalogVersion.incrementAndGet();
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        recipeVersions.merge(event.getRecipeId(), 1L, Long::sum);
+        catalogVersion.incrementAndGet();
+    }
+    
+    // Favorite counts are not part of a recipe, but they order the most-favorited listing
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onFavoriteChanged(FavoriteChangedEvent event) {
+        catalogVersion.incrementAndGet();
+    }
+}
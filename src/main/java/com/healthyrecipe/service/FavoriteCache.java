@@ -0,0 +1,99 @@
+package com.healthyrecipe.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthyrecipe.event.FavoriteChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import jakarta.annotation.PostConstruct;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of each user's favorite recipe ids as a bitmap, so the favorite
+ * flags of a page of recipe cards are answered from memory. Entries have no TTL: a
+ * favorite change drops the user's entry, and a recipe deletion (which removes its
+ * favorites without favorite events) drops all of them. Invalidation runs after
+ * transaction completion; as in {@link RecipeCache}, a load that overlaps an
+ * invalidation is returned but not cached.
+ */
+@Component
+public class FavoriteCache {
+    
+    @Value("${app.favorite-cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.favorite-cache.max-users:10000}")
+    private long maxUsers;
+    
+    // Bitmaps are never modified once cached
+    private Cache<Long, Roaring64Bitmap> favorites;
+    
+    // Loads hold the read lock to store their result, invalidations the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Bumped by every invalidation; a load only stores its result if this did not move
+    private volatile long generation;
+    
+    @PostConstruct
+    void init() {
+        favorites = Caffeine.newBuilder().maximumSize(maxUsers).build();
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public Roaring64Bitmap getFavorites(Long userId, Function<Long, List<Long>> loader) {
+        Roaring64Bitmap recipeIds = favorites.getIfPresent(userId);
+        if (recipeIds != null) {
+            return recipeIds;
+        }
+        
+        long loadedAt = generation;
+        recipeIds = new Roaring64Bitmap();
+        for (Long recipeId : loader.apply(userId)) {
+            recipeIds.addLong(recipeId);
+        }
+        recipeIds.runOptimize();
+        
+        lock.readLock().lock();
+        try {
+            if (generation == loadedAt) {
+                favorites.put(userId, recipeIds);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return recipeIds;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onFavoriteChanged(FavoriteChangedEvent event) {
+        invalidate(() -> favorites.invalidate(event.getUserId()));
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        if (event.getChangeType() == RecipeChangedEvent.ChangeType.DELETED) {
+            invalidate(favorites::invalidateAll);
+        }
+    }
+    
+    private void invalidate(Runnable invalidation) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            invalidation.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.healthyrecipe.service;
 
-import com.healthyrecipe.entity.Favorite;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.entity.Recipe;
 import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.FavoriteChangedEvent;
 import com.healthyrecipe.repository.FavoriteRepository;
+import com.healthyrecipe.repository.InteractionUpsertRepository;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
 @Transactional
 public class FavoriteService {
@@ -17,49 +27,71 @@ public class FavoriteService {
     @Autowired
     private FavoriteRepository favoriteRepository;
     
+    @Autowired
+    private InteractionUpsertRepository interactionUpsertRepository;
+    
+    @Autowired
+    private FavoriteCache favoriteCache;
+    
     @Autowired
     private RecipeService recipeService;
     
     @Autowired
     private AuthService authService;
     
-    public Favorite addToFavorites(Long recipeId) {
-        User currentUser = authService.getCurrentUser();
-        Recipe recipe = recipeService.getRecipeById(recipeId);
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    // One insert-if-absent keyed by ids; the recipe check is served from the recipe cache
+    public void addToFavorites(Long recipeId) {
+        Long userId = authService.getCurrentUserId();
+        recipeService.getRecipeDetail(recipeId);
         
-        // Check if already favorited
-        if (favoriteRepository.existsByUserAndRecipe(currentUser, recipe)) {
+        if (!interactionUpsertRepository.insertFavorite(userId, recipeId)) {
             throw new RuntimeException("Recipe is already in favorites");
         }
-        
-        Favorite favorite = new Favorite(currentUser, recipe);
-        return favoriteRepository.save(favorite);
+        eventPublisher.publishEvent(new FavoriteChangedEvent(userId, recipeId, true));
     }
     
+    // One delete keyed by ids: a missing favorite, or a missing recipe, deletes nothing
     public void removeFromFavorites(Long recipeId) {
-        User currentUser = authService.getCurrentUser();
-        Recipe recipe = recipeService.getRecipeById(recipeId);
+        Long userId = authService.getCurrentUserId();
         
-        if (!favoriteRepository.existsByUserAndRecipe(currentUser, recipe)) {
+        if (!interactionUpsertRepository.deleteFavorite(userId, recipeId)) {
             throw new RuntimeException("Recipe is not in favorites");
         }
-        
-        favoriteRepository.deleteByUserAndRecipe(currentUser, recipe);
+        eventPublisher.publishEvent(new FavoriteChangedEvent(userId, recipeId, false));
     }
     
-    public Page<Recipe> getUserFavoriteRecipes(Pageable pageable) {
+    public Page<RecipeSummary> getUserFavoriteRecipes(Pageable pageable) {
         User currentUser = authService.getCurrentUser();
-        return favoriteRepository.findFavoriteRecipesByUser(currentUser, pageable);
+        return recipeService.getSummaryPage(favoriteRepository.findFavoriteRecipeIdsByUser(currentUser, pageable));
     }
     
     public boolean isRecipeFavorited(Long recipeId) {
         User currentUser = authService.getCurrentUser();
-        Recipe recipe = recipeService.getRecipeById(recipeId);
+        Recipe recipe = recipeService.getRecipeEntity(recipeId);
         return favoriteRepository.existsByUserAndRecipe(currentUser, recipe);
     }
     
+    /**
+     * Which of the given recipes the current user has favorited. Served from
+     * {@link FavoriteCache} when it is enabled (no query once the user's favorites are
+     * cached), otherwise with one IN query. Unknown recipe ids are simply not favorited.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Set<Long> getFavoritedRecipeIds(Collection<Long> recipeIds) {
+        Long userId = authService.getCurrentUserId();
+        if (!favoriteCache.isEnabled()) {
+            return new HashSet<>(favoriteRepository.findRecipeIdsByUserIdAndRecipeIdIn(userId, recipeIds));
+        }
+        
+        Roaring64Bitmap favorites = favoriteCache.getFavorites(userId, favoriteRepository::findRecipeIdsByUserId);
+        return recipeIds.stream().filter(favorites::contains).collect(Collectors.toSet());
+    }
+    
     public Long getFavoriteCountForRecipe(Long recipeId) {
-        Recipe recipe = recipeService.getRecipeById(recipeId);
+        Recipe recipe = recipeService.getRecipeEntity(recipeId);
         return favoriteRepository.countByRecipe(recipe);
     }
 }
\ No newline at end of file
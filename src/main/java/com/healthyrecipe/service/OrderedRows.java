@@ -0,0 +1,30 @@
+package com.healthyrecipe.service;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Cursor over (id, ...) rows ordered by id, for exports that merge a parent cursor with
+ * the cursors of its collections in one pass.
+ */
+class OrderedRows {
+    
+    private final Iterator<Object[]> rows;
+    private Object[] next;
+    
+    OrderedRows(Iterator<Object[]> rows) {
+        this.rows = rows;
+        this.next = rows.hasNext() ? rows.next() : null;
+    }
+    
+    // Consumes the rows of the given id; rows of ids before it (e.g. rows that became
+    // visible after the parent cursor was opened) are skipped
+    void forEachRow(Long id, Consumer<Object[]> action) {
+        while (next != null && (Long) next[0] <= id) {
+            if (next[0].equals(id)) {
+                action.accept(next);
+            }
+            next = rows.hasNext() ? rows.next() : null;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.healthyrecipe.service;
+
+import com.healthyrecipe.entity.Rating;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind path for ratings, so a burst of votes on a popular recipe costs no
+ * database work per request. A submitted vote is checked (authenticated user, rating
+ * range, existing recipe), then held in memory keyed by user and recipe: a newer vote
+ * of the same user for the same recipe replaces an unwritten one. Every
+ * {@code app.rating-buffer.flush-interval-ms} the held votes are written grouped by
+ * recipe, one transaction per recipe (see {@link RatingService#applyBufferedRatings}).
+ *
+ * Durability: an accepted vote is written within one flush interval, and at the
+ * latest on a graceful shutdown; it is lost if the process dies before that. A recipe
+ * group that fails to commit is retried vote by vote, and a vote that still fails is
+ * dropped and logged. When {@code app.rating-buffer.max-pending} votes are waiting,
+ * or the buffer is disabled, {@link #submit} refuses and the caller writes the vote
+ * synchronously instead.
+ *
+ * Synchronous writes and deletes go through this class too: they drop any vote held
+ * for the same user and recipe, and never run during a flush, so an older held vote
+ * cannot overwrite them. The user's own rating reads go through it as well and show
+ * a vote that is held or being written in place of the stored rating.
+ */
+@Component
+public class RatingBuffer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RatingBuffer.class);
+    
+    @Value("${app.rating-buffer.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.rating-buffer.max-pending:10000}")
+    private int maxPending;
+    
+    @Autowired
+    private RatingService ratingService;
+    
+    @Autowired
+    private RecipeService recipeService;
+    
+    @Autowired
+    private AuthService authService;
+    
+    private final Map<Key, Vote> pending = new ConcurrentHashMap<>();
+    
+    // Votes taken from pending by the running flush, until they are committed
+    private volatile Map<Key, Vote> flushing = Map.of();
+    
+    // Held by flushes and synchronous writes
+    private final Lock writeLock = new ReentrantLock();
+    
+    /**
+     * Buffers the current user's vote for the recipe. Returns false, without buffering,
+     * when the buffer is disabled or full.
+     */
+    public boolean submit(Long recipeId, int rating, String comment) {
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("Rating must be between 1 and 5");
+        }
+        if (!enabled) {
+            return false;
+        }
+        
+        Long userId = authService.getCurrentUserId();
+        // Rejects votes for missing recipes before holding them; a recipe rated in a burst
+        // is checked against the recipe cache rather than the database
+        recipeService.getRecipeDetail(recipeId);
+        
+        Vote vote = new Vote(rating, comment);
+        boolean[] accepted = new boolean[1];
+        pending.compute(new Key(userId, recipeId), (key, previous) -> {
+            if (previous == null && pending.size() >= maxPending) {
+                return null;
+            }
+            accepted[0] = true;
+            return vote;
+        });
+        return accepted[0];
+    }
+    
+    // Writes the current user's vote now, replacing any buffered one; returns the rating it replaced, or 0
+    public int rateNow(Long recipeId, int rating, String comment) {
+        Long userId = authService.getCurrentUserId();
+        writeLock.lock();
+        try {
+            pending.remove(new Key(userId, recipeId));
+            return ratingService.createOrUpdateRating(recipeId, rating, comment);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    // Deletes a rating, and any vote of its author for the same recipe still buffered
+    public void deleteRating(Long ratingId) {
+        writeLock.lock();
+        try {
+            Rating rating = ratingService.deleteRating(ratingId);
+            pending.remove(new Key(rating.getUser().getId(), rating.getRecipe().getId()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * The current user's rating of the recipe. A vote not written yet is shown in place
+     * of the stored rating, as a detached copy without an id if there is none.
+     */
+    public Optional<Rating> getUserRatingForRecipe(Long recipeId) {
+        Vote vote = unwritten(authService.getCurrentUserId(), recipeId);
+        Optional<Rating> stored = ratingService.getUserRatingForRecipe(recipeId);
+        if (vote == null) {
+            return stored;
+        }
+        
+        Rating shown = stored
+                .map(rating -> new Rating(vote.getRating(), vote.getComment(), rating.getUser(), rating.getRecipe()))
+                .orElseGet(() -> new Rating(vote.getRating(), vote.getComment(), authService.getCurrentUser(),
+                        recipeService.getRecipeEntity(recipeId)));
+        stored.ifPresent(rating -> {
+            shown.setId(rating.getId());
+            shown.setCreatedAt(rating.getCreatedAt());
+        });
+        return Optional.of(shown);
+    }
+    
+    // The current user's ratings of the given recipes by recipe id, votes not written yet included
+    public Map<Long, Integer> getUserRatingsForRecipes(Collection<Long> recipeIds) {
+        Long userId = authService.getCurrentUserId();
+        Map<Long, Integer> unwritten = new HashMap<>();
+        for (Long recipeId : recipeIds) {
+            Vote vote = unwritten(userId, recipeId);
+            if (vote != null) {
+                unwritten.put(recipeId, vote.getRating());
+            }
+        }
+        
+        Map<Long, Integer> ratings = ratingService.getUserRatingsForRecipes(recipeIds);
+        ratings.putAll(unwritten);
+        return ratings;
+    }
+    
+    // Looked up before the stored rating: a vote leaves pending for flushing before it is
+    // written, and leaves flushing only once it is committed
+    private Vote unwritten(Long userId, Long recipeId) {
+        Key key = new Key(userId, recipeId);
+        Vote vote = pending.get(key);
+        return vote != null ? vote : flushing.get(key);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.rating-buffer.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        writeLock.lock();
+        try {
+            // Votes accepted while draining are either taken now or left for the next flush.
+            // A vote is visible in flushing before it leaves pending
+            Map<Key, Vote> taken = new ConcurrentHashMap<>();
+            flushing = taken;
+            Map<Long, Map<Long, Vote>> byRecipe = new HashMap<>();
+            for (Map.Entry<Key, Vote> entry : pending.entrySet()) {
+                Key key = entry.getKey();
+                Vote vote = entry.getValue();
+                taken.put(key, vote);
+                if (pending.remove(key, vote)) {
+                    byRecipe.computeIfAbsent(key.recipeId, id -> new HashMap<>()).put(key.userId, vote);
+                } else {
+                    // Replaced meanwhile; the newer vote is written by the next flush
+                    taken.remove(key);
+                }
+            }
+            
+            int written = 0;
+            for (Map.Entry<Long, Map<Long, Vote>> entry : byRecipe.entrySet()) {
+                written += write(entry.getKey(), entry.getValue());
+            }
+            logger.debug("Flushed {} buffered ratings for {} recipes", written, byRecipe.size());
+        } finally {
+            flushing = Map.of();
+            writeLock.unlock();
+        }
+    }
+    
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    private int write(Long recipeId, Map<Long, Vote> votes) {
+        try {
+            return ratingService.applyBufferedRatings(recipeId, votes);
+        } catch (RuntimeException e) {
+            if (votes.size() == 1) {
+                logger.error("Dropping buffered rating of user {} for recipe {}: {}",
+                        votes.keySet().iterator().next(), recipeId, e.getMessage());
+                return 0;
+            }
+        }
+        
+        // Retry one by one so a single failing vote does not lose the others
+        int written = 0;
+        for (Map.Entry<Long, Vote> vote : votes.entrySet()) {
+            written += write(recipeId, Map.of(vote.getKey(), vote.getValue()));
+        }
+        return written;
+    }
+    
+    private static class Key {
+        final Long userId;
+        final Long recipeId;
+        
+        Key(Long userId, Long recipeId) {
+            this.userId = userId;
+            this.recipeId = recipeId;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return userId.equals(other.userId) && recipeId.equals(other.recipeId);
+        }
+        
+        @Override
+        public int hashCode() {
+            return userId.hashCode() * 31 + recipeId.hashCode();
+        }
+    }
+    
+    public static class Vote {
+        private final int rating;
+        private final String comment;
+        
+        Vote(int rating, String comment) {
+            this.rating = rating;
+            this.comment = comment;
+        }
+        
+        public int getRating() { return rating; }
+        
+        public String getComment() { return comment; }
+    }
+}
@@ -2,56 +2,115 @@ package com.healthyrecipe.service;
 
 import com.healthyrecipe.entity.Rating;
 import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
 import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.repository.InteractionUpsertRepository;
 import com.healthyrecipe.repository.RatingRepository;
+import com.healthyrecipe.repository.RecipeRatingStatsRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 @Transactional
 public class RatingService {
     
+    private static final Logger logger = LoggerFactory.getLogger(RatingService.class);
+    
     @Autowired
     private RatingRepository ratingRepository;
     
+    @Autowired
+    private RecipeRatingStatsRepository ratingStatsRepository;
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private InteractionUpsertRepository interactionUpsertRepository;
+    
     @Autowired
     private RecipeService recipeService;
     
     @Autowired
     private AuthService authService;
     
-    public Rating createOrUpdateRating(Long recipeId, Integer rating, String comment) {
-        User currentUser = authService.getCurrentUser();
-        Recipe recipe = recipeService.getRecipeById(recipeId);
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    /**
+     * Creates the rating aggregate rows missing for existing recipes, e.g. recipes rated
+     * before the aggregates were introduced. Runs before the indexes load their ratings
+     * on ApplicationReadyEvent.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void backfillRatingStats() {
+        int created = interactionUpsertRepository.insertMissingRatingStats();
+        if (created > 0) {
+            logger.info("Created rating aggregates for {} recipes", created);
+        }
+    }
+    
+    /**
+     * Creates or replaces the current user's rating of the recipe with one upsert and
+     * one aggregate update. Returns the rating it replaced, or 0 if there was none.
+     */
+    public int createOrUpdateRating(Long recipeId, int rating, String comment) {
+        Long userId = authService.getCurrentUserId();
+        // Fails for a missing recipe before anything is written
+        recipeService.getRecipeDetail(recipeId);
         
-        // Check if user already rated this recipe
-        Optional<Rating> existingRating = ratingRepository.findByUserAndRecipe(currentUser, recipe);
+        int oldRating = interactionUpsertRepository.upsertRating(userId, recipeId, rating, comment);
+        updateRatingStats(recipeId, starDeltas(oldRating, rating));
+        eventPublisher.publishEvent(new RatingChangedEvent(userId, recipeId, oldRating, rating));
+        return oldRating;
+    }
+    
+    /**
+     * Writes votes buffered by {@link RatingBuffer} for one recipe, keyed by user id:
+     * one upsert per vote, and one statement updating the recipe's aggregates. Votes
+     * for a recipe deleted since they were accepted are dropped. Returns the number of
+     * votes written.
+     */
+    public int applyBufferedRatings(Long recipeId, Map<Long, RatingBuffer.Vote> votes) {
+        if (!recipeRepository.existsById(recipeId)) {
+            return 0;
+        }
         
-        Rating ratingEntity;
-        if (existingRating.isPresent()) {
-            // Update existing rating
-            ratingEntity = existingRating.get();
-            ratingEntity.setRating(rating);
-            ratingEntity.setComment(comment);
-        } else {
-            // Create new rating
-            ratingEntity = new Rating();
-            ratingEntity.setUser(currentUser);
-            ratingEntity.setRecipe(recipe);
-            ratingEntity.setRating(rating);
-            ratingEntity.setComment(comment);
+        List<RatingChangedEvent> events = new ArrayList<>(votes.size());
+        int[] starDeltas = new int[6];
+        for (Map.Entry<Long, RatingBuffer.Vote> entry : votes.entrySet()) {
+            RatingBuffer.Vote vote = entry.getValue();
+            int oldRating = interactionUpsertRepository.upsertRating(
+                    entry.getKey(), recipeId, vote.getRating(), vote.getComment());
+            starDeltas[vote.getRating()]++;
+            starDeltas[oldRating]--;
+            events.add(new RatingChangedEvent(entry.getKey(), recipeId, oldRating, vote.getRating()));
         }
         
-        return ratingRepository.save(ratingEntity);
+        updateRatingStats(recipeId, starDeltas);
+        events.forEach(eventPublisher::publishEvent);
+        return events.size();
     }
     
     public Page<Rating> getRecipeRatings(Long recipeId, Pageable pageable) {
-        Recipe recipe = recipeService.getRecipeById(recipeId);
+        Recipe recipe = recipeService.getRecipeEntity(recipeId);
         return ratingRepository.findByRecipeOrderByCreatedAtDesc(recipe, pageable);
     }
     
@@ -62,11 +121,23 @@ public class RatingService {
     
     public Optional<Rating> getUserRatingForRecipe(Long recipeId) {
         User currentUser = authService.getCurrentUser();
-        Recipe recipe = recipeService.getRecipeById(recipeId);
+        Recipe recipe = recipeService.getRecipeEntity(recipeId);
         return ratingRepository.findByUserAndRecipe(currentUser, recipe);
     }
     
-    public void deleteRating(Long ratingId) {
+    // The current user's ratings of the given recipes by recipe id, with one IN query; unrated recipes are absent
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> getUserRatingsForRecipes(Collection<Long> recipeIds) {
+        Long userId = authService.getCurrentUserId();
+        Map<Long, Integer> ratings = new HashMap<>();
+        for (Object[] row : ratingRepository.findRatingsByUserIdAndRecipeIdIn(userId, recipeIds)) {
+            ratings.put((Long) row[0], (Integer) row[1]);
+        }
+        return ratings;
+    }
+    
+    // Returns the deleted rating
+    public Rating deleteRating(Long ratingId) {
         Rating rating = ratingRepository.findById(ratingId)
                 .orElseThrow(() -> new RuntimeException("Rating not found"));
         
@@ -79,15 +150,43 @@ public class RatingService {
         }
         
         ratingRepository.delete(rating);
+        updateRatingStats(rating.getRecipe().getId(), starDeltas(rating.getRating(), 0));
+        eventPublisher.publishEvent(new RatingChangedEvent(
+                rating.getUser().getId(), rating.getRecipe().getId(), rating.getRating(), 0));
+        return rating;
     }
     
     public Double getAverageRatingForRecipe(Long recipeId) {
-        Recipe recipe = recipeService.getRecipeById(recipeId);
-        return ratingRepository.findAverageRatingByRecipe(recipe);
+        return recipeService.getRatingStats(recipeId).getAverageRating();
     }
     
     public Long getTotalRatingsForRecipe(Long recipeId) {
-        Recipe recipe = recipeService.getRecipeById(recipeId);
-        return ratingRepository.countByRecipe(recipe);
+        return recipeService.getRatingStats(recipeId).getRatingCount().longValue();
+    }
+    
+    public RecipeRatingStats getRatingStatsForRecipe(Long recipeId) {
+        return recipeService.getRatingStats(recipeId);
+    }
+    
+    // Net change in ratings per star of replacing oldRating by newRating; 0 means "no rating"
+    private static int[] starDeltas(int oldRating, int newRating) {
+        int[] starDeltas = new int[6];
+        starDeltas[newRating]++;
+        starDeltas[oldRating]--;
+        return starDeltas;
+    }
+    
+    // Applies the changes to the recipe's running aggregates
+    private void updateRatingStats(Long recipeId, int[] starDeltas) {
+        if (ratingStatsRepository.applyStarDeltas(recipeId, starDeltas) > 0) {
+            return;
+        }
+        
+        // No aggregate row yet (recipe inserted outside the application since startup):
+        // create it from the ratings, which include this change. If a concurrent first
+        // rating created it meanwhile, that row does not include this change yet
+        if (!interactionUpsertRepository.insertRatingStats(recipeId)) {
+            ratingStatsRepository.applyStarDeltas(recipeId, starDeltas);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,238 @@
+package com.healthyrecipe.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.healthyrecipe.dto.recipe.RecipeDetail;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded caches for the hottest read paths: recipe details (with ingredients and
+ * rating aggregates) by id, and pages of the latest, top-rated, quick, healthy and
+ * beginner listings. There is no TTL; entries are invalidated from recipe and rating
+ * events, and only the entries a change can affect are dropped:
+ * <ul>
+ *   <li>the changed recipe's detail, and every cached page that lists it;</li>
+ *   <li>all pages of a listing the recipe enters or leaves, since its total changes
+ *       (approve, reject, delete, or an update of an approved recipe that may move it
+ *       in or out of quick, healthy or beginner);</li>
+ *   <li>all top-rated pages when a rating changes.</li>
+ * </ul>
+ * Invalidation runs after transaction completion, so after the indexes the listings
+ * are served from have applied the change. A load that overlaps an invalidation is
+ * returned but not cached, so it cannot put back a value read before the change.
+ */
+@Component
+public class RecipeCache {
+    
+    @Value("${app.recipe-cache.max-recipes:10000}")
+    private long maxRecipes;
+    
+    @Value("${app.recipe-cache.max-pages:2000}")
+    private long maxPages;
+    
+    private Cache<Long, RecipeDetail> recipes;
+    
+    private Cache<PageKey, Page<RecipeSummary>> pages;
+    
+    // Loads hold the read lock to store their result, invalidations the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Bumped by every invalidation; a load only stores its result if this did not move
+    private volatile long generation;
+    
+    @PostConstruct
+    void init() {
+        recipes = Caffeine.newBuilder().maximumSize(maxRecipes).recordStats().build();
+        pages = Caffeine.newBuilder().maximumSize(maxPages).recordStats().build();
+    }
+    
+    public RecipeDetail getRecipe(Long id, Function<Long, RecipeDetail> loader) {
+        RecipeDetail detail = recipes.getIfPresent(id);
+        if (detail != null) {
+            return detail;
+        }
+        long loadedAt = generation;
+        detail = loader.apply(id);
+        putIfCurrent(recipes, id, detail, loadedAt);
+        return detail;
+    }
+    
+    public Page<RecipeSummary> getPage(Listing listing, Pageable pageable, Supplier<Page<RecipeSummary>> loader) {
+        PageKey key = new PageKey(listing, pageable.getPageNumber(), pageable.getPageSize());
+        Page<RecipeSummary> page = pages.getIfPresent(key);
+        if (page != null) {
+            return page;
+        }
+        long loadedAt = generation;
+        page = loader.get();
+        putIfCurrent(pages, key, page, loadedAt);
+        return page;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onRecipeChanged(RecipeChangedEvent event) {
+        Recipe recipe = event.getRecipe();
+        Set<Listing> stale = EnumSet.noneOf(Listing.class);
+        switch (event.getChangeType()) {
+            case CREATED -> {
+                if (event.isApproved()) {
+                    stale.addAll(Listing.containing(recipe));
+                }
+            }
+            // Moderation leaves the listing fields alone: these are the listings it entered or left
+            case APPROVED, REJECTED -> stale.addAll(Listing.containing(recipe));
+            case UPDATED -> {
+                if (event.isApproved()) {
+                    stale.addAll(Listing.CONTENT_LISTINGS);
+                }
+            }
+            case DELETED -> stale.addAll(EnumSet.allOf(Listing.class)); // status before the delete is unknown
+        }
+        invalidate(event.getRecipeId(), stale);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        invalidate(event.getRecipeId(), EnumSet.of(Listing.TOP_RATED));
+    }
+    
+    public Map<String, Stats> getStats() {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        stats.put("recipes", new Stats(recipes, maxRecipes));
+        stats.put("pages", new Stats(pages, maxPages));
+        return stats;
+    }
+    
+    // Drops the recipe's detail, every page listing it, and all pages of the given listings
+    private void invalidate(Long recipeId, Set<Listing> listings) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            recipes.invalidate(recipeId);
+            pages.asMap().entrySet().removeIf(entry -> listings.contains(entry.getKey().listing)
+                    || entry.getValue().getContent().stream().anyMatch(summary -> summary.getId().equals(recipeId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private <K, V> void putIfCurrent(Cache<K, V> cache, K key, V value, long loadedAt) {
+        lock.readLock().lock();
+        try {
+            if (generation == loadedAt) {
+                cache.put(key, value);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Cached listings, with which approved recipes each one contains. Quick, healthy and
+     * beginner depend on recipe fields an update can change.
+     */
+    public enum Listing {
+        LATEST(recipe -> true),
+        TOP_RATED(recipe -> true),
+        QUICK(recipe -> recipe.getTotalTime() <= RecommendationService.QUICK_MAX_TIME),
+        HEALTHY(recipe -> !Collections.disjoint(recipe.getDietaryTags(), RecommendationService.HEALTHY_TAGS)),
+        BEGINNER(recipe -> recipe.getDifficultyLevel() == Recipe.DifficultyLevel.EASY);
+        
+        static final Set<Listing> CONTENT_LISTINGS = EnumSet.of(QUICK, HEALTHY, BEGINNER);
+        
+        private final Predicate<Recipe> contains;
+        
+        Listing(Predicate<Recipe> contains) {
+            this.contains = contains;
+        }
+        
+        static Set<Listing> containing(Recipe recipe) {
+            Set<Listing> listings = EnumSet.noneOf(Listing.class);
+            for (Listing listing : values()) {
+                if (listing.contains.test(recipe)) {
+                    listings.add(listing);
+                }
+            }
+            return listings;
+        }
+    }
+    
+    private static class PageKey {
+        final Listing listing;
+        final int page;
+        final int size;
+        
+        PageKey(Listing listing, int page, int size) {
+            this.listing = listing;
+            this.page = page;
+            this.size = size;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) o;
+            return listing == other.listing && page == other.page && size == other.size;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (listing.hashCode() * 31 + page) * 31 + size;
+        }
+    }
+    
+    public static class Stats {
+        private final long size;
+        private final long maximumSize;
+        private final long hitCount;
+        private final long missCount;
+        private final double hitRate;
+        private final long evictionCount;
+        
+        Stats(Cache<?, ?> cache, long maximumSize) {
+            CacheStats stats = cache.stats();
+            this.size = cache.estimatedSize();
+            this.maximumSize = maximumSize;
+            this.hitCount = stats.hitCount();
+            this.missCount = stats.missCount();
+            this.hitRate = stats.hitRate();
+            this.evictionCount = stats.evictionCount();
+        }
+        
+        public long getSize() { return size; }
+        
+        public long getMaximumSize() { return maximumSize; }
+        
+        public long getHitCount() { return hitCount; }
+        
+        public long getMissCount() { return missCount; }
+        
+        public double getHitRate() { return hitRate; }
+        
+        public long getEvictionCount() { return evictionCount; }
+    }
+}
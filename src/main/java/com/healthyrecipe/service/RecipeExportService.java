@@ -0,0 +1,95 @@
+package com.healthyrecipe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthyrecipe.dto.recipe.RecipeCreateRequest;
+import com.healthyrecipe.dto.recipe.RecipeExportRecord;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams the approved catalog as NDJSON. Recipes, their categories, dietary tags and
+ * ingredients are read through four server-side cursors ordered by recipe id and
+ * merged in a single pass, so memory use does not depend on catalog size and the
+ * export costs four queries in total.
+ */
+@Service
+public class RecipeExportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecipeExportService.class);
+    
+    // Records written between flushes to the client
+    private static final int FLUSH_INTERVAL = RecipeRepository.EXPORT_FETCH_SIZE;
+    
+    @Autowired
+    private RecipeRepository recipeRepository;
+    
+    @Autowired
+    private IngredientRepository ingredientRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    public void exportApprovedRecipes(OutputStream output) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        
+        long start = System.nanoTime();
+        long exported = transactionTemplate.execute(status -> {
+            Recipe.RecipeStatus approved = Recipe.RecipeStatus.APPROVED;
+            try (Stream<RecipeExportRecord> recipes = recipeRepository.streamExportRecordsByStatus(approved);
+                 Stream<Object[]> categories = recipeRepository.streamCategoriesByStatus(approved);
+                 Stream<Object[]> tags = recipeRepository.streamDietaryTagsByStatus(approved);
+                 Stream<Object[]> ingredients = ingredientRepository.streamByRecipeStatus(approved)) {
+                
+                return writeRecords(output, recipes.iterator(), new OrderedRows(categories.iterator()),
+                        new OrderedRows(tags.iterator()), new OrderedRows(ingredients.iterator()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        logger.info("Exported {} recipes in {} ms", exported, (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    private long writeRecords(OutputStream output, Iterator<RecipeExportRecord> recipes, OrderedRows categories,
+                              OrderedRows tags, OrderedRows ingredients) throws IOException {
+        OutputStream out = new BufferedOutputStream(output);
+        long count = 0;
+        
+        while (recipes.hasNext()) {
+            RecipeExportRecord record = recipes.next();
+            Long id = record.getId();
+            
+            categories.forEachRow(id, row -> record.getCategories().add((Recipe.RecipeCategory) row[1]));
+            tags.forEachRow(id, row -> record.getDietaryTags().add((String) row[1]));
+            ingredients.forEachRow(id, row -> record.getIngredients().add(new RecipeCreateRequest.IngredientDto(
+                    (String) row[1], (Double) row[2], (String) row[3], (String) row[4])));
+            
+            out.write(objectMapper.writeValueAsBytes(record));
+            out.write('\n');
+            
+            if (++count % FLUSH_INTERVAL == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+        return count;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,414 @@
+package com.healthyrecipe.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthyrecipe.dto.recipe.RecipeCreateRequest;
+import com.healthyrecipe.dto.recipe.RecipeImportReport;
+import com.healthyrecipe.entity.Ingredient;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk recipe import for catalog loading. The input is read one record at a time and
+ * valid records are written in chunks, each in its own transaction with batched
+ * inserts. Reading and writing share the request thread, so the upload is only
+ * consumed as fast as chunks are committed and at most one chunk is held in memory.
+ *
+ * A chunk that fails to commit is retried record by record so a single bad row only
+ * costs that row.
+ */
+@Service
+public class RecipeImportService {
+    
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecipeImportService.class);
+    
+    // Guards against a stray quote swallowing the rest of a CSV file
+    private static final int MAX_CSV_RECORD_LENGTH = 1 << 20;
+    
+    @Value("${app.import.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${app.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+    
+    @Autowired
+    private RecipeService recipeService;
+    
+    @Autowired
+    private AuthService authService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private Validator validator;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    /**
+     * Imports NDJSON (one {@link RecipeCreateRequest} object per line) or CSV (header row
+     * naming RecipeCreateRequest fields) as recipes authored by the current user.
+     */
+    public RecipeImportReport importRecipes(InputStream input, String contentType) throws IOException {
+        Long authorId = authService.getCurrentUser().getId();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        RecipeImportReport report = new RecipeImportReport();
+        long start = System.nanoTime();
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        RecordSource source = contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv")
+                ? new CsvRecordSource(reader) : new NdjsonRecordSource(reader);
+        
+        List<PendingRecord> chunk = new ArrayList<>(chunkSize);
+        long recordNumber = 0;
+        while (true) {
+            RecipeCreateRequest request;
+            try {
+                request = source.next();
+            } catch (RecordFormatException e) {
+                report.recordFailed(++recordNumber, null, e.getMessage(), maxReportedErrors);
+                continue;
+            }
+            if (request == null) {
+                break;
+            }
+            recordNumber++;
+            
+            String violations = validate(request);
+            if (violations != null) {
+                report.recordFailed(recordNumber, request.getTitle(), violations, maxReportedErrors);
+                continue;
+            }
+            
+            chunk.add(new PendingRecord(recordNumber, request));
+            if (chunk.size() >= chunkSize) {
+                writeChunk(transactionTemplate, chunk, authorId, report);
+            }
+        }
+        writeChunk(transactionTemplate, chunk, authorId, report);
+        
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        logger.info("Recipe import finished: {} imported, {} failed in {} ms",
+                report.getImported(), report.getFailed(), report.getElapsedMillis());
+        return report;
+    }
+    
+    private void writeChunk(TransactionTemplate transactionTemplate, List<PendingRecord> chunk,
+                            Long authorId, RecipeImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        
+        try {
+            persist(transactionTemplate, chunk, authorId);
+            report.recordImported(chunk.size());
+        } catch (RuntimeException e) {
+            logger.debug("Import chunk failed, retrying records individually", e);
+            for (PendingRecord record : chunk) {
+                try {
+                    persist(transactionTemplate, List.of(record), authorId);
+                    report.recordImported(1);
+                } catch (RuntimeException recordException) {
+                    report.recordFailed(record.recordNumber, record.request.getTitle(),
+                            rootMessage(recordException), maxReportedErrors);
+                }
+            }
+        }
+        chunk.clear();
+    }
+    
+    private void persist(TransactionTemplate transactionTemplate, List<PendingRecord> records, Long authorId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            User author = entityManager.getReference(User.class, authorId);
+            for (PendingRecord record : records) {
+                Recipe recipe = recipeService.newRecipe(record.request, author);
+                entityManager.persist(recipe);
+                entityManager.persist(new RecipeRatingStats(recipe.getId()));
+                for (Ingredient ingredient : recipeService.toIngredients(record.request, recipe)) {
+                    entityManager.persist(ingredient);
+                }
+                eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.CREATED,
+                        recipe.getId(), recipe, recipeService.ingredientNames(record.request)));
+            }
+            // Send the batched inserts and drop the chunk from the persistence context
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+    
+    private String validate(RecipeCreateRequest request) {
+        Set<ConstraintViolation<RecipeCreateRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+    
+    private static String rootMessage(Throwable throwable) {
+        Throwable root = throwable;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+    
+    private static class PendingRecord {
+        final long recordNumber;
+        final RecipeCreateRequest request;
+        
+        PendingRecord(long recordNumber, RecipeCreateRequest request) {
+            this.recordNumber = recordNumber;
+            this.request = request;
+        }
+    }
+    
+    private interface RecordSource {
+        // Returns null at end of input; throws RecordFormatException for an unparseable record
+        RecipeCreateRequest next() throws IOException;
+    }
+    
+    private static class RecordFormatException extends RuntimeException {
+        RecordFormatException(String message) {
+            super(message);
+        }
+    }
+    
+    private class NdjsonRecordSource implements RecordSource {
+        private final BufferedReader reader;
+        
+        NdjsonRecordSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public RecipeCreateRequest next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            
+            try {
+                return objectMapper.readValue(line, RecipeCreateRequest.class);
+            } catch (JsonProcessingException e) {
+                throw new RecordFormatException("Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+    
+    /**
+     * RFC 4180 CSV. Columns are matched to RecipeCreateRequest fields by header name;
+     * {@code categories} and {@code dietaryTags} are '|'-separated lists and
+     * {@code ingredients} is a '|'-separated list of {@code name:quantity:unit[:notes]}.
+     */
+    private static class CsvRecordSource implements RecordSource {
+        private final BufferedReader reader;
+        private Map<String, Integer> columns;
+        
+        CsvRecordSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public RecipeCreateRequest next() throws IOException {
+            if (columns == null) {
+                List<String> header = readRow();
+                if (header == null) {
+                    return null;
+                }
+                columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).trim(), i);
+                }
+            }
+            
+            List<String> row = readRow();
+            if (row == null) {
+                return null;
+            }
+            
+            RecipeCreateRequest request = new RecipeCreateRequest();
+            request.setTitle(text(row, "title"));
+            request.setDescription(text(row, "description"));
+            request.setInstructions(text(row, "instructions"));
+            request.setPreparationTime(integer(row, "preparationTime"));
+            request.setCookingTime(integer(row, "cookingTime"));
+            request.setServings(integer(row, "servings"));
+            request.setImageUrl(text(row, "imageUrl"));
+            request.setCalories(integer(row, "calories"));
+            request.setProtein(decimal(row, "protein"));
+            request.setCarbohydrates(decimal(row, "carbohydrates"));
+            request.setFat(decimal(row, "fat"));
+            request.setFiber(decimal(row, "fiber"));
+            request.setSugar(decimal(row, "sugar"));
+            request.setSodium(integer(row, "sodium"));
+            
+            String difficulty = text(row, "difficultyLevel");
+            if (difficulty != null) {
+                request.setDifficultyLevel(enumValue(Recipe.DifficultyLevel.class, difficulty, "difficultyLevel"));
+            }
+            
+            Set<Recipe.RecipeCategory> categories = new HashSet<>();
+            for (String category : list(row, "categories")) {
+                categories.add(enumValue(Recipe.RecipeCategory.class, category, "categories"));
+            }
+            request.setCategories(categories);
+            request.setDietaryTags(new HashSet<>(list(row, "dietaryTags")));
+            
+            List<RecipeCreateRequest.IngredientDto> ingredients = new ArrayList<>();
+            for (String ingredient : list(row, "ingredients")) {
+                String[] parts = ingredient.split(":", 4);
+                if (parts.length < 3) {
+                    throw new RecordFormatException("Invalid ingredient '" + ingredient + "', expected name:quantity:unit[:notes]");
+                }
+                ingredients.add(new RecipeCreateRequest.IngredientDto(parts[0].trim(),
+                        parseDouble(parts[1].trim(), "ingredients"), parts[2].trim(),
+                        parts.length > 3 ? parts[3].trim() : null));
+            }
+            request.setIngredients(ingredients);
+            
+            return request;
+        }
+        
+        private List<String> readRow() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (quoted) {
+                        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else if (c == '"') {
+                            quoted = false;
+                        } else {
+                            field.append(c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (!quoted) {
+                    break;
+                }
+                
+                // Quoted field continues on the next line
+                line = reader.readLine();
+                if (line == null) {
+                    throw new RecordFormatException("Unterminated quoted field");
+                }
+                if (field.length() + line.length() > MAX_CSV_RECORD_LENGTH) {
+                    throw new RecordFormatException("Record exceeds " + MAX_CSV_RECORD_LENGTH + " characters");
+                }
+                field.append('\n');
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+        
+        private String text(List<String> row, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= row.size()) {
+                return null;
+            }
+            String value = row.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+        
+        private List<String> list(List<String> row, String column) {
+            String value = text(row, column);
+            if (value == null) {
+                return List.of();
+            }
+            return Arrays.stream(value.split("\\|"))
+                    .map(String::trim)
+                    .filter(item -> !item.isEmpty())
+                    .collect(Collectors.toList());
+        }
+        
+        private Integer integer(List<String> row, String column) {
+            String value = text(row, column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException e) {
+                throw new RecordFormatException("Invalid number for " + column + ": " + value);
+            }
+        }
+        
+        private Double decimal(List<String> row, String column) {
+            String value = text(row, column);
+            return value != null ? parseDouble(value, column) : null;
+        }
+        
+        private static Double parseDouble(String value, String column) {
+            try {
+                return Double.valueOf(value);
+            } catch (NumberFormatException e) {
+                throw new RecordFormatException("Invalid number for " + column + ": " + value);
+            }
+        }
+        
+        private static <E extends Enum<E>> E enumValue(Class<E> type, String value, String column) {
+            try {
+                return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new RecordFormatException("Invalid value for " + column + ": " + value);
+            }
+        }
+    }
+}
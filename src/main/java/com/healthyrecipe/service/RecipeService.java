@@ -1,24 +1,50 @@
 package com.healthyrecipe.service;
 
+import com.healthyrecipe.dto.CursorPage;
+import com.healthyrecipe.dto.recipe.PantryRecipe;
 import com.healthyrecipe.dto.recipe.RecipeCreateRequest;
+import com.healthyrecipe.dto.recipe.RecipeDetail;
+import com.healthyrecipe.dto.recipe.RecipeQuery;
+import com.healthyrecipe.dto.recipe.RecipeQueryResult;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.entity.Ingredient;
 import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
 import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.index.PantryIndex;
+import com.healthyrecipe.index.RecipeFilterIndex;
+import com.healthyrecipe.index.RecipeLeaderboard;
+import com.healthyrecipe.index.RecipeSearchIndex;
 import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRatingStatsRepository;
 import com.healthyrecipe.repository.RecipeRepository;
-import com.healthyrecipe.repository.RatingRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class RecipeService {
     
+    // Dietary tags are free text, so only the most frequent ones are returned as facets
+    private static final int MAX_TAG_FACETS = 50;
+    
     @Autowired
     private RecipeRepository recipeRepository;
     
@@ -26,65 +52,47 @@ public class RecipeService {
     private IngredientRepository ingredientRepository;
     
     @Autowired
-    private RatingRepository ratingRepository;
+    private RecipeRatingStatsRepository ratingStatsRepository;
     
     @Autowired
     private AuthService authService;
     
+    @Autowired
+    private RecipeSearchIndex recipeSearchIndex;
+    
+    @Autowired
+    private RecipeLeaderboard recipeLeaderboard;
+    
+    @Autowired
+    private RecipeFilterIndex recipeFilterIndex;
+    
+    @Autowired
+    private PantryIndex pantryIndex;
+    
+    @Autowired
+    private RecipeCache recipeCache;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public Recipe createRecipe(RecipeCreateRequest request) {
         User currentUser = authService.getCurrentUser();
-        
-        Recipe recipe = new Recipe();
-        recipe.setTitle(request.getTitle());
-        recipe.setDescription(request.getDescription());
-        recipe.setInstructions(request.getInstructions());
-        recipe.setPreparationTime(request.getPreparationTime());
-        recipe.setCookingTime(request.getCookingTime());
-        recipe.setServings(request.getServings());
-        recipe.setDifficultyLevel(request.getDifficultyLevel());
-        recipe.setImageUrl(request.getImageUrl());
-        recipe.setCategories(request.getCategories());
-        recipe.setDietaryTags(request.getDietaryTags());
-        recipe.setAuthor(currentUser);
-        
-        // Set nutrition info
-        Recipe.NutritionInfo nutritionInfo = new Recipe.NutritionInfo();
-        nutritionInfo.setCalories(request.getCalories());
-        nutritionInfo.setProtein(request.getProtein());
-        nutritionInfo.setCarbohydrates(request.getCarbohydrates());
-        nutritionInfo.setFat(request.getFat());
-        nutritionInfo.setFiber(request.getFiber());
-        nutritionInfo.setSugar(request.getSugar());
-        nutritionInfo.setSodium(request.getSodium());
-        recipe.setNutritionInfo(nutritionInfo);
-        
-        // Set status based on user role
-        if (currentUser.getRole() == User.Role.ADMIN) {
-            recipe.setStatus(Recipe.RecipeStatus.APPROVED);
-        } else {
-            recipe.setStatus(Recipe.RecipeStatus.PENDING);
-        }
+        Recipe recipe = newRecipe(request, currentUser);
         
         Recipe savedRecipe = recipeRepository.save(recipe);
+        ratingStatsRepository.save(new RecipeRatingStats(savedRecipe.getId()));
         
         // Create ingredients
-        if (request.getIngredients() != null) {
-            for (RecipeCreateRequest.IngredientDto ingredientDto : request.getIngredients()) {
-                Ingredient ingredient = new Ingredient();
-                ingredient.setName(ingredientDto.getName());
-                ingredient.setQuantity(ingredientDto.getQuantity());
-                ingredient.setUnit(ingredientDto.getUnit());
-                ingredient.setNotes(ingredientDto.getNotes());
-                ingredient.setRecipe(savedRecipe);
-                ingredientRepository.save(ingredient);
-            }
-        }
+        ingredientRepository.saveAll(toIngredients(request, savedRecipe));
+        
+        eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.CREATED,
+                savedRecipe.getId(), savedRecipe, ingredientNames(request)));
         
         return savedRecipe;
     }
     
     public Recipe updateRecipe(Long id, RecipeCreateRequest request) {
-        Recipe recipe = getRecipeById(id);
+        Recipe recipe = getRecipeEntity(id);
         User currentUser = authService.getCurrentUser();
         
         // Check if user can update this recipe
@@ -114,84 +122,248 @@ public class RecipeService {
         nutritionInfo.setSugar(request.getSugar());
         nutritionInfo.setSodium(request.getSodium());
         
-        // Update ingredients
-        ingredientRepository.deleteAll(recipe.getIngredients());
-        
-        if (request.getIngredients() != null) {
-            for (RecipeCreateRequest.IngredientDto ingredientDto : request.getIngredients()) {
-                Ingredient ingredient = new Ingredient();
-                ingredient.setName(ingredientDto.getName());
-                ingredient.setQuantity(ingredientDto.getQuantity());
-                ingredient.setUnit(ingredientDto.getUnit());
-                ingredient.setNotes(ingredientDto.getNotes());
-                ingredient.setRecipe(recipe);
-                ingredientRepository.save(ingredient);
-            }
-        }
+        // Replace ingredients: one bulk DELETE, then batched INSERTs
+        ingredientRepository.deleteByRecipe(recipe);
+        ingredientRepository.saveAll(toIngredients(request, recipe));
         
-        return recipeRepository.save(recipe);
+        Recipe savedRecipe = recipeRepository.save(recipe);
+        eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED,
+                savedRecipe.getId(), savedRecipe, ingredientNames(request)));
+        
+        return savedRecipe;
     }
     
     public Recipe getRecipeById(Long id) {
-        Recipe recipe = recipeRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Recipe not found with id: " + id));
-        
-        // Calculate and set computed fields
-        Double avgRating = ratingRepository.findAverageRatingByRecipe(recipe);
-        Long totalRatings = ratingRepository.countByRecipe(recipe);
+        Recipe recipe = getRecipeEntity(id);
         
-        recipe.setAverageRating(avgRating != null ? avgRating : 0.0);
-        recipe.setTotalRatings(totalRatings.intValue());
+        // Set computed fields from the precomputed rating aggregates
+        RecipeRatingStats stats = ratingStatsRepository.findById(id)
+                .orElseGet(() -> new RecipeRatingStats(id));
+        recipe.setAverageRating(stats.getAverageRating());
+        recipe.setTotalRatings(stats.getRatingCount());
         
         return recipe;
     }
     
-    public Page<Recipe> getAllApprovedRecipes(Pageable pageable) {
-        return recipeRepository.findByStatus(Recipe.RecipeStatus.APPROVED, pageable);
+    /**
+     * The recipe with its ingredients and rating aggregates, from the recipe cache. Hits
+     * do not open a transaction; a miss loads the detail with three statements.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public RecipeDetail getRecipeDetail(Long id) {
+        return recipeCache.getRecipe(id, this::loadRecipeDetail);
     }
     
-    public Page<Recipe> searchRecipes(String keyword, Pageable pageable) {
-        return recipeRepository.findApprovedByTitleOrDescriptionContaining(keyword, pageable);
+    private RecipeDetail loadRecipeDetail(Long id) {
+        Recipe recipe = recipeRepository.findWithAuthorById(id)
+                .orElseThrow(() -> new RuntimeException("Recipe not found with id: " + id));
+        RecipeRatingStats stats = ratingStatsRepository.findById(id)
+                .orElseGet(() -> new RecipeRatingStats(id));
+        return new RecipeDetail(recipe, ingredientRepository.findByRecipeOrderByName(recipe), stats);
     }
     
-    public Page<Recipe> getRecipesByCategories(List<Recipe.RecipeCategory> categories, Pageable pageable) {
-        return recipeRepository.findApprovedByCategories(categories, pageable);
+    // Resolves the recipe without computing rating aggregates
+    public Recipe getRecipeEntity(Long id) {
+        return recipeRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Recipe not found with id: " + id));
     }
     
-    public Page<Recipe> getRecipesByDietaryTags(List<String> tags, Pageable pageable) {
-        return recipeRepository.findApprovedByDietaryTags(tags, pageable);
+    public RecipeRatingStats getRatingStats(Long recipeId) {
+        return ratingStatsRepository.findById(recipeId).orElseGet(() -> {
+            getRecipeEntity(recipeId);
+            return new RecipeRatingStats(recipeId);
+        });
     }
     
-    public Page<Recipe> getRecipesByCalorieRange(Integer minCalories, Integer maxCalories, Pageable pageable) {
-        return recipeRepository.findApprovedByCalorieRange(minCalories, maxCalories, pageable);
+    // Listings page over recipe ids and then load the page as RecipeSummary rows, so a
+    // listing costs the same handful of statements whatever the page size.
+    
+    public Page<RecipeSummary> getAllApprovedRecipes(Pageable pageable) {
+        return getSummaryPage(recipeRepository.findIdsByStatus(Recipe.RecipeStatus.APPROVED, pageable));
     }
     
-    public Page<Recipe> getRecipesByMaxTime(Integer maxTime, Pageable pageable) {
-        return recipeRepository.findApprovedByMaxTotalTime(maxTime, pageable);
+    public Page<RecipeSummary> searchRecipes(String keyword, Pageable pageable) {
+        RecipeSearchIndex.SearchResult result = recipeSearchIndex.search(
+                keyword, (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize());
+        return new PageImpl<>(getRecipeSummaries(result.getRecipeIds()), pageable, result.getTotalHits());
     }
     
-    public Page<Recipe> getRecipesByDifficulty(Recipe.DifficultyLevel difficulty, Pageable pageable) {
-        return recipeRepository.findApprovedByDifficulty(difficulty, pageable);
+    public Page<RecipeSummary> getRecipesByCategories(List<Recipe.RecipeCategory> categories, Pageable pageable) {
+        return getSummaryPage(recipeFilterIndex.approvedByCategories(
+                categories, (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize()), pageable);
     }
     
-    public Page<Recipe> getTopRatedRecipes(Pageable pageable) {
-        return recipeRepository.findTopRatedApprovedRecipes(pageable);
+    public Page<RecipeSummary> getRecipesByDietaryTags(List<String> tags, Pageable pageable) {
+        return getSummaryPage(recipeFilterIndex.approvedByDietaryTags(
+                tags, (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize()), pageable);
     }
     
-    public Page<Recipe> getLatestRecipes(Pageable pageable) {
-        return recipeRepository.findLatestApprovedRecipes(pageable);
+    public Page<RecipeSummary> getRecipesByCalorieRange(Integer minCalories, Integer maxCalories, Pageable pageable) {
+        return getSummaryPage(recipeFilterIndex.approvedByCalorieRange(
+                minCalories, maxCalories, (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE),
+                pageable.getPageSize()), pageable);
     }
     
-    public Page<Recipe> getMostFavoritedRecipes(Pageable pageable) {
-        return recipeRepository.findMostFavoritedApprovedRecipes(pageable);
+    public Page<RecipeSummary> getRecipesByMaxTime(Integer maxTime, Pageable pageable) {
+        return getSummaryPage(recipeFilterIndex.approvedByMaxTime(
+                maxTime, (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize()), pageable);
     }
     
-    public Page<Recipe> getUserRecipes(User user, Pageable pageable) {
-        return recipeRepository.findByAuthor(user, pageable);
+    public Page<RecipeSummary> getRecipesByDifficulty(Recipe.DifficultyLevel difficulty, Pageable pageable) {
+        return getSummaryPage(recipeFilterIndex.approvedByDifficulty(
+                difficulty, (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize()), pageable);
+    }
+    
+    /**
+     * Evaluates all filters of the query at once and returns the page together with the
+     * category, dietary tag and difficulty facet counts, so one request serves a filter UI.
+     */
+    public RecipeQueryResult queryRecipes(RecipeQuery query, Pageable pageable) {
+        RecipeFilterIndex.FacetedPage result = recipeFilterIndex.query(
+                query, (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize(), MAX_TAG_FACETS);
+        return new RecipeQueryResult(getSummaryPage(result.getPage(), pageable), result.getCategoryCounts(),
+                result.getDietaryTagCounts(), result.getDifficultyCounts());
+    }
+    
+    /**
+     * Approved recipes ranked by how many of their ingredients the given pantry items
+     * cover, from the pantry index.
+     */
+    public Page<PantryRecipe> findRecipesByPantry(List<String> pantryItems, Integer maxMissing, Pageable pageable) {
+        PantryIndex.PantryPage page = pantryIndex.search(pantryItems, maxMissing,
+                (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize());
+        
+        List<Long> ids = page.getMatches().stream().map(PantryIndex.PantryMatch::getRecipeId).collect(Collectors.toList());
+        Map<Long, RecipeSummary> summariesById = getRecipeSummaries(ids).stream()
+                .collect(Collectors.toMap(RecipeSummary::getId, Function.identity()));
+        
+        List<PantryRecipe> recipes = new ArrayList<>();
+        for (PantryIndex.PantryMatch match : page.getMatches()) {
+            RecipeSummary summary = summariesById.get(match.getRecipeId());
+            if (summary != null) {
+                recipes.add(new PantryRecipe(summary, match.getMatchedIngredients(), match.getTotalIngredients(),
+                        match.getMissingIngredients()));
+            }
+        }
+        return new PageImpl<>(recipes, pageable, page.getTotal());
+    }
+    
+    // Top-rated and latest pages are served from the recipe cache
+    
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Page<RecipeSummary> getTopRatedRecipes(Pageable pageable) {
+        return recipeCache.getPage(RecipeCache.Listing.TOP_RATED, pageable, () -> getSummaryPage(
+                recipeLeaderboard.topRated((int) Math.min(pageable.getOffset(), Integer.MAX_VALUE),
+                        pageable.getPageSize()), pageable));
+    }
+    
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Page<RecipeSummary> getLatestRecipes(Pageable pageable) {
+        return recipeCache.getPage(RecipeCache.Listing.LATEST, pageable,
+                () -> getSummaryPage(recipeRepository.findLatestApprovedIds(pageable)));
+    }
+    
+    public Page<RecipeSummary> getMostFavoritedRecipes(Pageable pageable) {
+        RecipeLeaderboard.LeaderboardPage page = recipeLeaderboard.mostFavorited(
+                (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE), pageable.getPageSize());
+        return new PageImpl<>(getRecipeSummaries(page.getRecipeIds()), pageable, page.getTotal());
+    }
+    
+    // Keyset (cursor) listings: `after` is the nextCursor of the previous page, or empty for the first page
+    
+    public CursorPage<RecipeSummary> getLatestRecipes(String after, int size) {
+        return createdAtKeyset(after, size, recipeRepository::findApprovedIdsAfter);
+    }
+    
+    public CursorPage<RecipeSummary> getRecipesByCategories(List<Recipe.RecipeCategory> categories, String after, int size) {
+        return createdAtKeyset(after, size, (createdAt, id, pageable) ->
+                recipeRepository.findApprovedIdsByCategoriesAfter(categories, createdAt, id, pageable));
+    }
+    
+    public CursorPage<RecipeSummary> getRecipesByDietaryTags(List<String> tags, String after, int size) {
+        return createdAtKeyset(after, size, (createdAt, id, pageable) ->
+                recipeRepository.findApprovedIdsByDietaryTagsAfter(tags, createdAt, id, pageable));
+    }
+    
+    public CursorPage<RecipeSummary> getRecipesByCalorieRange(Integer minCalories, Integer maxCalories, String after, int size) {
+        return createdAtKeyset(after, size, (createdAt, id, pageable) ->
+                recipeRepository.findApprovedIdsByCalorieRangeAfter(minCalories, maxCalories, createdAt, id, pageable));
+    }
+    
+    public CursorPage<RecipeSummary> getRecipesByMaxTime(Integer maxTime, String after, int size) {
+        return createdAtKeyset(after, size, (createdAt, id, pageable) ->
+                recipeRepository.findApprovedIdsByMaxTotalTimeAfter(maxTime, createdAt, id, pageable));
+    }
+    
+    public CursorPage<RecipeSummary> getRecipesByDifficulty(Recipe.DifficultyLevel difficulty, String after, int size) {
+        return createdAtKeyset(after, size, (createdAt, id, pageable) ->
+                recipeRepository.findApprovedIdsByDifficultyAfter(difficulty, createdAt, id, pageable));
+    }
+    
+    public CursorPage<RecipeSummary> searchRecipes(String keyword, String after, int size) {
+        RecipeSearchIndex.SearchResult result;
+        if (after.isEmpty()) {
+            result = recipeSearchIndex.search(keyword, 0, size + 1);
+        } else {
+            String[] cursor = CursorPage.decodeCursor(after, 2);
+            result = recipeSearchIndex.searchAfter(keyword, parseDouble(cursor[0]), parseLong(cursor[1]), size + 1);
+        }
+        
+        List<Long> ids = result.getRecipeIds();
+        String nextCursor = null;
+        if (ids.size() > size) {
+            ids = ids.subList(0, size);
+            nextCursor = CursorPage.encodeCursor(result.getScores().get(size - 1), ids.get(size - 1));
+        }
+        return new CursorPage<>(getRecipeSummaries(ids), nextCursor);
+    }
+    
+    public CursorPage<RecipeSummary> getTopRatedRecipes(String after, int size) {
+        double score = Double.POSITIVE_INFINITY;
+        int ratingCount = Integer.MAX_VALUE;
+        long id = Long.MAX_VALUE;
+        if (!after.isEmpty()) {
+            String[] cursor = CursorPage.decodeCursor(after, 3);
+            score = parseDouble(cursor[0]);
+            ratingCount = (int) parseLong(cursor[1]);
+            id = parseLong(cursor[2]);
+        }
+        
+        List<RecipeLeaderboard.Position> positions = recipeLeaderboard.topRatedAfter(score, ratingCount, id, size + 1);
+        String nextCursor = null;
+        if (positions.size() > size) {
+            positions = positions.subList(0, size);
+            RecipeLeaderboard.Position last = positions.get(size - 1);
+            nextCursor = CursorPage.encodeCursor(last.getRatingScore(), last.getRatingCount(), last.getRecipeId());
+        }
+        return new CursorPage<>(getRecipeSummaries(recipeIds(positions)), nextCursor);
+    }
+    
+    public CursorPage<RecipeSummary> getMostFavoritedRecipes(String after, int size) {
+        long favoriteCount = Long.MAX_VALUE;
+        long id = Long.MAX_VALUE;
+        if (!after.isEmpty()) {
+            String[] cursor = CursorPage.decodeCursor(after, 2);
+            favoriteCount = parseLong(cursor[0]);
+            id = parseLong(cursor[1]);
+        }
+        
+        List<RecipeLeaderboard.Position> positions = recipeLeaderboard.mostFavoritedAfter(favoriteCount, id, size + 1);
+        String nextCursor = null;
+        if (positions.size() > size) {
+            positions = positions.subList(0, size);
+            RecipeLeaderboard.Position last = positions.get(size - 1);
+            nextCursor = CursorPage.encodeCursor(last.getFavoriteCount(), last.getRecipeId());
+        }
+        return new CursorPage<>(getRecipeSummaries(recipeIds(positions)), nextCursor);
+    }
+    
+    public Page<RecipeSummary> getUserRecipes(User user, Pageable pageable) {
+        return getSummaryPage(recipeRepository.findIdsByAuthor(user, pageable));
     }
     
     public void deleteRecipe(Long id) {
-        Recipe recipe = getRecipeById(id);
+        Recipe recipe = getRecipeEntity(id);
         User currentUser = authService.getCurrentUser();
         
         // Check if user can delete this recipe
@@ -201,22 +373,186 @@ public class RecipeService {
         }
         
         recipeRepository.delete(recipe);
+        ratingStatsRepository.deleteById(id);
+        eventPublisher.publishEvent(RecipeChangedEvent.deleted(id));
     }
     
     // Admin methods
     public Recipe approveRecipe(Long id) {
         Recipe recipe = getRecipeById(id);
         recipe.setStatus(Recipe.RecipeStatus.APPROVED);
-        return recipeRepository.save(recipe);
+        Recipe savedRecipe = recipeRepository.save(recipe);
+        eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.APPROVED,
+                savedRecipe.getId(), savedRecipe, ingredientNames(savedRecipe)));
+        return savedRecipe;
     }
     
     public Recipe rejectRecipe(Long id) {
         Recipe recipe = getRecipeById(id);
         recipe.setStatus(Recipe.RecipeStatus.REJECTED);
-        return recipeRepository.save(recipe);
+        Recipe savedRecipe = recipeRepository.save(recipe);
+        eventPublisher.publishEvent(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.REJECTED,
+                savedRecipe.getId(), savedRecipe, ingredientNames(savedRecipe)));
+        return savedRecipe;
     }
     
     public Page<Recipe> getPendingRecipes(Pageable pageable) {
         return recipeRepository.findByStatus(Recipe.RecipeStatus.PENDING, pageable);
     }
+    
+    public Page<RecipeSummary> getSummaryPage(Page<Long> ids) {
+        return new PageImpl<>(getRecipeSummaries(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+    
+    private Page<RecipeSummary> getSummaryPage(RecipeLeaderboard.LeaderboardPage page, Pageable pageable) {
+        return new PageImpl<>(getRecipeSummaries(page.getRecipeIds()), pageable, page.getTotal());
+    }
+    
+    /**
+     * Loads summaries for the given recipe ids, preserving their order. Runs three
+     * statements regardless of how many ids are passed: the scalar columns, then the
+     * categories and dietary tags of all recipes at once.
+     */
+    public List<RecipeSummary> getRecipeSummaries(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, RecipeSummary> summariesById = recipeRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(RecipeSummary::getId, Function.identity()));
+        
+        for (Object[] row : recipeRepository.findCategoriesByRecipeIdIn(ids)) {
+            summariesById.get((Long) row[0]).getCategories().add((Recipe.RecipeCategory) row[1]);
+        }
+        for (Object[] row : recipeRepository.findDietaryTagsByRecipeIdIn(ids)) {
+            summariesById.get((Long) row[0]).getDietaryTags().add((String) row[1]);
+        }
+        
+        List<RecipeSummary> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            RecipeSummary summary = summariesById.get(id);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+    
+    // Builds an unsaved recipe authored by the given user; admin recipes skip moderation
+    Recipe newRecipe(RecipeCreateRequest request, User author) {
+        Recipe recipe = new Recipe();
+        recipe.setTitle(request.getTitle());
+        recipe.setDescription(request.getDescription());
+        recipe.setInstructions(request.getInstructions());
+        recipe.setPreparationTime(request.getPreparationTime());
+        recipe.setCookingTime(request.getCookingTime());
+        recipe.setServings(request.getServings());
+        recipe.setDifficultyLevel(request.getDifficultyLevel());
+        recipe.setImageUrl(request.getImageUrl());
+        recipe.setCategories(request.getCategories());
+        recipe.setDietaryTags(request.getDietaryTags());
+        recipe.setAuthor(author);
+        
+        // Set nutrition info
+        Recipe.NutritionInfo nutritionInfo = new Recipe.NutritionInfo();
+        nutritionInfo.setCalories(request.getCalories());
+        nutritionInfo.setProtein(request.getProtein());
+        nutritionInfo.setCarbohydrates(request.getCarbohydrates());
+        nutritionInfo.setFat(request.getFat());
+        nutritionInfo.setFiber(request.getFiber());
+        nutritionInfo.setSugar(request.getSugar());
+        nutritionInfo.setSodium(request.getSodium());
+        recipe.setNutritionInfo(nutritionInfo);
+        
+        // Set status based on user role
+        if (author.getRole() == User.Role.ADMIN) {
+            recipe.setStatus(Recipe.RecipeStatus.APPROVED);
+        } else {
+            recipe.setStatus(Recipe.RecipeStatus.PENDING);
+        }
+        
+        return recipe;
+    }
+    
+    List<Ingredient> toIngredients(RecipeCreateRequest request, Recipe recipe) {
+        if (request.getIngredients() == null) {
+            return List.of();
+        }
+        
+        List<Ingredient> ingredients = new ArrayList<>(request.getIngredients().size());
+        for (RecipeCreateRequest.IngredientDto ingredientDto : request.getIngredients()) {
+            Ingredient ingredient = new Ingredient();
+            ingredient.setName(ingredientDto.getName());
+            ingredient.setQuantity(ingredientDto.getQuantity());
+            ingredient.setUnit(ingredientDto.getUnit());
+            ingredient.setNotes(ingredientDto.getNotes());
+            ingredient.setRecipe(recipe);
+            ingredients.add(ingredient);
+        }
+        return ingredients;
+    }
+    
+    List<String> ingredientNames(RecipeCreateRequest request) {
+        if (request.getIngredients() == null) {
+            return List.of();
+        }
+        return request.getIngredients().stream()
+                .map(RecipeCreateRequest.IngredientDto::getName)
+                .collect(Collectors.toList());
+    }
+    
+    private List<String> ingredientNames(Recipe recipe) {
+        return recipe.getIngredients().stream()
+                .map(Ingredient::getName)
+                .collect(Collectors.toList());
+    }
+    
+    private CursorPage<RecipeSummary> createdAtKeyset(String after, int size, CreatedAtKeysetQuery query) {
+        // Sentinel position ahead of every recipe for the first page
+        LocalDateTime createdAt = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+        Long id = Long.MAX_VALUE;
+        if (!after.isEmpty()) {
+            String[] cursor = CursorPage.decodeCursor(after, 2);
+            try {
+                createdAt = LocalDateTime.parse(cursor[0]);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+            id = parseLong(cursor[1]);
+        }
+        
+        Slice<Long> slice = query.find(createdAt, id, PageRequest.of(0, size));
+        List<RecipeSummary> summaries = getRecipeSummaries(slice.getContent());
+        String nextCursor = null;
+        if (slice.hasNext() && !summaries.isEmpty()) {
+            RecipeSummary last = summaries.get(summaries.size() - 1);
+            nextCursor = CursorPage.encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        return new CursorPage<>(summaries, nextCursor);
+    }
+    
+    @FunctionalInterface
+    private interface CreatedAtKeysetQuery {
+        Slice<Long> find(LocalDateTime createdAt, Long id, Pageable pageable);
+    }
+    
+    private static List<Long> recipeIds(List<RecipeLeaderboard.Position> positions) {
+        return positions.stream().map(RecipeLeaderboard.Position::getRecipeId).collect(Collectors.toList());
+    }
+    
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+    
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
 }
\ No newline at end of file
@@ -1,10 +1,16 @@
 package com.healthyrecipe.service;
 
+import com.healthyrecipe.dto.recipe.RecipeSummary;
 import com.healthyrecipe.entity.Recipe;
 import com.healthyrecipe.entity.User;
-import com.healthyrecipe.repository.RecipeRepository;
+import com.healthyrecipe.index.AllergenIndex;
+import com.healthyrecipe.index.CollaborativeFilteringIndex;
+import com.healthyrecipe.index.RecipeLeaderboard;
+import com.healthyrecipe.index.RecipeScoringEngine;
+import com.healthyrecipe.index.SimilarRecipeIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
@@ -16,134 +22,150 @@ import java.util.stream.Collectors;
 @Service
 public class RecommendationService {
     
+    // Total time limit of the quick listing, in minutes
+    static final int QUICK_MAX_TIME = 30;
+    
+    static final List<String> HEALTHY_TAGS = List.of("healthy", "nutritious", "low-sodium", "whole-foods", "clean-eating");
+    
     @Autowired
-    private RecipeRepository recipeRepository;
+    private RecipeService recipeService;
     
     @Autowired
     private AuthService authService;
     
-    public Page<Recipe> getPersonalizedRecommendations(Pageable pageable) {
+    @Autowired
+    private RecipeCache recipeCache;
+    
+    @Autowired
+    private AllergenIndex allergenIndex;
+    
+    @Autowired
+    private RecipeLeaderboard recipeLeaderboard;
+    
+    @Autowired
+    private RecipeScoringEngine recipeScoringEngine;
+    
+    @Autowired
+    private SimilarRecipeIndex similarRecipeIndex;
+    
+    @Autowired
+    private CollaborativeFilteringIndex collaborativeFilteringIndex;
+    
+    /**
+     * Ranks all approved recipes for the current user, combining dietary preferences,
+     * fitness goal, calorie target and rating, and excluding the user's allergies.
+     */
+    public Page<RecipeSummary> getPersonalizedRecommendations(Pageable pageable) {
         User currentUser = authService.getCurrentUser();
         
         // Get user's dietary preferences and fitness goals
         Set<User.DietaryPreference> dietaryPreferences = currentUser.getDietaryPreferences();
         User.FitnessGoal fitnessGoal = currentUser.getFitnessGoal();
-        Integer calorieTarget = currentUser.getDailyCalorieTarget();
-        Set<String> allergies = currentUser.getAllergies();
         
-        // Build recommendation criteria
         List<String> dietaryTags = new ArrayList<>();
-        
         if (dietaryPreferences != null) {
             dietaryTags.addAll(dietaryPreferences.stream()
                     .map(pref -> pref.name().toLowerCase().replace('_', '-'))
                     .collect(Collectors.toList()));
         }
         
-        // If user has dietary preferences, find recipes with matching tags
-        if (!dietaryTags.isEmpty()) {
-            return recipeRepository.findApprovedByDietaryTags(dietaryTags, pageable);
-        }
+        RecipeScoringEngine.Profile profile = new RecipeScoringEngine.Profile(dietaryTags,
+                fitnessGoal != null ? fitnessGoalTags(fitnessGoal) : List.of(), fitnessGoal,
+                currentUser.getDailyCalorieTarget(), currentUser.getAllergies());
         
-        // If user has calorie target, find recipes within range
-        if (calorieTarget != null) {
-            int minCalories = calorieTarget - 200; // 200 calorie buffer
-            int maxCalories = calorieTarget + 200;
-            return recipeRepository.findApprovedByCalorieRange(minCalories, maxCalories, pageable);
-        }
-        
-        // Default to top-rated recipes
-        return recipeRepository.findTopRatedApprovedRecipes(pageable);
+        RecipeLeaderboard.LeaderboardPage page = recipeScoringEngine.topRecipes(
+                profile, (int) pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(recipeService.getRecipeSummaries(page.getRecipeIds()), pageable, page.getTotal());
     }
     
-    public Page<Recipe> getRecipesByFitnessGoal(User.FitnessGoal fitnessGoal, Pageable pageable) {
-        List<String> recommendedTags = new ArrayList<>();
+    /**
+     * Recipes liked by users who like the same recipes as the current user, from the
+     * collaborative filtering model. Users without likes the model can use yet get
+     * {@link #getPersonalizedRecommendations} instead.
+     */
+    public Page<RecipeSummary> getCollaborativeRecommendations(Pageable pageable) {
+        User currentUser = authService.getCurrentUser();
+        Set<String> allergies = currentUser.getAllergies() != null ? currentUser.getAllergies() : Set.of();
         
-        switch (fitnessGoal) {
-            case WEIGHT_LOSS:
-                recommendedTags.add("low-calorie");
-                recommendedTags.add("low-fat");
-                recommendedTags.add("high-fiber");
-                break;
-            case WEIGHT_GAIN:
-                recommendedTags.add("high-calorie");
-                recommendedTags.add("high-protein");
-                break;
-            case MUSCLE_GAIN:
-                recommendedTags.add("high-protein");
-                recommendedTags.add("post-workout");
-                break;
-            case MAINTAIN_WEIGHT:
-                recommendedTags.add("balanced");
-                recommendedTags.add("moderate-calorie");
-                break;
-            case GENERAL_HEALTH:
-                recommendedTags.add("healthy");
-                recommendedTags.add("nutritious");
-                recommendedTags.add("whole-foods");
-                break;
+        RecipeLeaderboard.LeaderboardPage page = collaborativeFilteringIndex.recommend(currentUser.getId(),
+                allergenIndex.safeFor(allergies), (int) pageable.getOffset(), pageable.getPageSize());
+        if (page.getTotal() == 0) {
+            return getPersonalizedRecommendations(pageable);
         }
+        return new PageImpl<>(recipeService.getRecipeSummaries(page.getRecipeIds()), pageable, page.getTotal());
+    }
+    
+    public Page<RecipeSummary> getRecipesByFitnessGoal(User.FitnessGoal fitnessGoal, Pageable pageable) {
+        List<String> recommendedTags = fitnessGoalTags(fitnessGoal);
         
         if (!recommendedTags.isEmpty()) {
-            return recipeRepository.findApprovedByDietaryTags(recommendedTags, pageable);
+            return recipeService.getRecipesByDietaryTags(recommendedTags, pageable);
         }
         
-        return recipeRepository.findTopRatedApprovedRecipes(pageable);
+        return recipeService.getTopRatedRecipes(pageable);
     }
     
-    public Page<Recipe> getQuickRecipes(Pageable pageable) {
-        // Recipes that can be prepared in 30 minutes or less
-        return recipeRepository.findApprovedByMaxTotalTime(30, pageable);
+    // Quick, healthy and beginner pages are served from the recipe cache
+    
+    public Page<RecipeSummary> getQuickRecipes(Pageable pageable) {
+        return recipeCache.getPage(RecipeCache.Listing.QUICK, pageable,
+                () -> recipeService.getRecipesByMaxTime(QUICK_MAX_TIME, pageable));
     }
     
-    public Page<Recipe> getHealthyRecipes(Pageable pageable) {
-        List<String> healthyTags = List.of("healthy", "nutritious", "low-sodium", "whole-foods", "clean-eating");
-        return recipeRepository.findApprovedByDietaryTags(healthyTags, pageable);
+    public Page<RecipeSummary> getHealthyRecipes(Pageable pageable) {
+        return recipeCache.getPage(RecipeCache.Listing.HEALTHY, pageable,
+                () -> recipeService.getRecipesByDietaryTags(HEALTHY_TAGS, pageable));
     }
     
-    public Page<Recipe> getBeginnerFriendlyRecipes(Pageable pageable) {
-        return recipeRepository.findApprovedByDifficulty(Recipe.DifficultyLevel.EASY, pageable);
+    public Page<RecipeSummary> getBeginnerFriendlyRecipes(Pageable pageable) {
+        return recipeCache.getPage(RecipeCache.Listing.BEGINNER, pageable,
+                () -> recipeService.getRecipesByDifficulty(Recipe.DifficultyLevel.EASY, pageable));
     }
     
-    public Page<Recipe> getRecipesForAllergies(Set<String> allergies, Pageable pageable) {
-        // This is a simplified implementation
-        // In a real system, you'd want to exclude recipes containing allergens
-        List<String> allergyFreeTags = new ArrayList<>();
-        
-        if (allergies.contains("gluten")) {
-            allergyFreeTags.add("gluten-free");
-        }
-        if (allergies.contains("dairy")) {
-            allergyFreeTags.add("dairy-free");
-        }
-        if (allergies.contains("nuts")) {
-            allergyFreeTags.add("nut-free");
-        }
-        
-        if (!allergyFreeTags.isEmpty()) {
-            return recipeRepository.findApprovedByDietaryTags(allergyFreeTags, pageable);
+    /**
+     * Top-rated approved recipes containing none of the given allergens, filtered
+     * through the allergen index in leaderboard order.
+     */
+    public Page<RecipeSummary> getRecipesForAllergies(Set<String> allergies, Pageable pageable) {
+        if (allergies == null || allergies.isEmpty()) {
+            return recipeService.getTopRatedRecipes(pageable);
         }
         
-        return recipeRepository.findTopRatedApprovedRecipes(pageable);
+        RecipeLeaderboard.LeaderboardPage page = recipeLeaderboard.topRated(allergenIndex.safeFor(allergies),
+                (int) pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(recipeService.getRecipeSummaries(page.getRecipeIds()), pageable, page.getTotal());
     }
     
-    public Page<Recipe> getSimilarRecipes(Long recipeId, Pageable pageable) {
-        // Find recipes with similar categories or tags
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new RuntimeException("Recipe not found"));
-        
-        Set<Recipe.RecipeCategory> categories = recipe.getCategories();
-        
-        if (!categories.isEmpty()) {
-            List<Recipe.RecipeCategory> categoryList = new ArrayList<>(categories);
-            return recipeRepository.findApprovedByCategories(categoryList, pageable);
+    /**
+     * Approved recipes most similar to the given one, from the precomputed similar
+     * recipe index. Recipes not in the index (not approved) are ranked on demand.
+     */
+    public Page<RecipeSummary> getSimilarRecipes(Long recipeId, Pageable pageable) {
+        List<Long> neighbors = similarRecipeIndex.neighbors(recipeId);
+        if (neighbors == null) {
+            neighbors = similarRecipeIndex.similarTo(recipeService.getRecipeEntity(recipeId));
         }
         
-        // Fallback to same difficulty level
-        if (recipe.getDifficultyLevel() != null) {
-            return recipeRepository.findApprovedByDifficulty(recipe.getDifficultyLevel(), pageable);
+        int from = (int) Math.min(pageable.getOffset(), neighbors.size());
+        int to = Math.min(from + pageable.getPageSize(), neighbors.size());
+        return new PageImpl<>(recipeService.getRecipeSummaries(neighbors.subList(from, to)), pageable,
+                neighbors.size());
+    }
+    
+    private static List<String> fitnessGoalTags(User.FitnessGoal fitnessGoal) {
+        switch (fitnessGoal) {
+            case WEIGHT_LOSS:
+                return List.of("low-calorie", "low-fat", "high-fiber");
+            case WEIGHT_GAIN:
+                return List.of("high-calorie", "high-protein");
+            case MUSCLE_GAIN:
+                return List.of("high-protein", "post-workout");
+            case MAINTAIN_WEIGHT:
+                return List.of("balanced", "moderate-calorie");
+            case GENERAL_HEALTH:
+                return List.of("healthy", "nutritious", "whole-foods");
+            default:
+                return List.of();
         }
-        
-        return recipeRepository.findLatestApprovedRecipes(pageable);
     }
 }
\ No newline at end of file
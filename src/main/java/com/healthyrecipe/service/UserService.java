@@ -0,0 +1,226 @@
+package com.healthyrecipe.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthyrecipe.dto.CursorPage;
+import com.healthyrecipe.dto.user.UserSummary;
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.UserChangedEvent;
+import com.healthyrecipe.index.UserSearchIndex;
+import com.healthyrecipe.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Admin user listings. Every listing takes the same optional filters (role, account
+ * status, name substring) and comes as an offset page, a keyset page or an NDJSON
+ * stream, so memory use is bounded by the page size or the export fetch size rather
+ * than by the number of accounts. Paged listings with a name are served from
+ * {@link UserSearchIndex} and ranked by match quality; the others are newest first.
+ */
+@Service
+public class UserService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    
+    // Records written between flushes to the client
+    private static final int FLUSH_INTERVAL = UserRepository.EXPORT_FETCH_SIZE;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    // Saves a user whose profile, role or status changed, and reindexes it
+    public User saveUser(User user) {
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(saved));
+        return saved;
+    }
+    
+    @Transactional(readOnly = true)
+    public Page<UserSummary> getUsers(User.Role role, User.AccountStatus status, String name, Pageable pageable) {
+        if (name != null && !name.isBlank()) {
+            UserSearchIndex.SearchResult result = userSearchIndex.search(
+                    name, role, status, (int) pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(getUserSummaries(result.getUserIds()), pageable, result.getTotalHits());
+        }
+        
+        Page<UserSummary> page = userRepository.findSummaries(role, status, pageable);
+        fillCollections(page.getContent());
+        return page;
+    }
+    
+    // Keyset listing: `after` is the nextCursor of the previous page, or empty for the first page
+    @Transactional(readOnly = true)
+    public CursorPage<UserSummary> getUsers(User.Role role, User.AccountStatus status, String name,
+                                            String after, int size) {
+        if (name != null && !name.isBlank()) {
+            return searchUsers(role, status, name, after, size);
+        }
+        
+        long id = Long.MAX_VALUE;
+        if (!after.isEmpty()) {
+            id = parseLong(CursorPage.decodeCursor(after, 1)[0]);
+        }
+        
+        Slice<UserSummary> slice = userRepository.findSummariesAfter(role, status, id, PageRequest.of(0, size));
+        List<UserSummary> users = slice.getContent();
+        fillCollections(users);
+        String nextCursor = slice.hasNext() && !users.isEmpty()
+                ? CursorPage.encodeCursor(users.get(users.size() - 1).getId())
+                : null;
+        return new CursorPage<>(users, nextCursor);
+    }
+    
+    private CursorPage<UserSummary> searchUsers(User.Role role, User.AccountStatus status, String name,
+                                                String after, int size) {
+        UserSearchIndex.SearchResult result;
+        if (after.isEmpty()) {
+            result = userSearchIndex.search(name, role, status, 0, size + 1);
+        } else {
+            String[] cursor = CursorPage.decodeCursor(after, 2);
+            result = userSearchIndex.searchAfter(name, role, status, (int) parseLong(cursor[0]), parseLong(cursor[1]),
+                    size + 1);
+        }
+        
+        List<Long> ids = result.getUserIds();
+        String nextCursor = null;
+        if (ids.size() > size) {
+            ids = ids.subList(0, size);
+            nextCursor = CursorPage.encodeCursor(result.getRanks().get(size - 1), ids.get(size - 1));
+        }
+        return new CursorPage<>(getUserSummaries(ids), nextCursor);
+    }
+    
+    /**
+     * Streams the matching users as NDJSON in id order. Users, their dietary preferences
+     * and their allergies are read through three server-side cursors and merged in a
+     * single pass.
+     */
+    public void exportUsers(User.Role role, User.AccountStatus status, String name, OutputStream output) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        
+        String pattern = namePattern(name);
+        long start = System.nanoTime();
+        long exported = transactionTemplate.execute(tx -> {
+            try (Stream<UserSummary> users = userRepository.streamSummaries(role, status, pattern);
+                 Stream<Object[]> preferences = userRepository.streamDietaryPreferences(role, status, pattern);
+                 Stream<Object[]> allergies = userRepository.streamAllergies(role, status, pattern)) {
+                
+                return writeRecords(output, users.iterator(), new OrderedRows(preferences.iterator()),
+                        new OrderedRows(allergies.iterator()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        logger.info("Exported {} users in {} ms", exported, (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    private long writeRecords(OutputStream output, Iterator<UserSummary> users, OrderedRows preferences,
+                              OrderedRows allergies) throws IOException {
+        OutputStream out = new BufferedOutputStream(output);
+        long count = 0;
+        
+        while (users.hasNext()) {
+            UserSummary user = users.next();
+            preferences.forEachRow(user.getId(),
+                    row -> user.getDietaryPreferences().add((User.DietaryPreference) row[1]));
+            allergies.forEachRow(user.getId(), row -> user.getAllergies().add((String) row[1]));
+            
+            out.write(objectMapper.writeValueAsBytes(user));
+            out.write('\n');
+            
+            if (++count % FLUSH_INTERVAL == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+        return count;
+    }
+    
+    // Summaries of the given users, in the order of the ids
+    private List<UserSummary> getUserSummaries(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, UserSummary> summariesById = userRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(UserSummary::getId, Function.identity()));
+        List<UserSummary> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserSummary summary = summariesById.get(id);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        fillCollections(summaries);
+        return summaries;
+    }
+    
+    // Fills dietary preferences and allergies of the given users with one query each
+    private void fillCollections(List<UserSummary> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        
+        Map<Long, UserSummary> usersById = users.stream()
+                .collect(Collectors.toMap(UserSummary::getId, Function.identity()));
+        for (Object[] row : userRepository.findDietaryPreferencesByUserIdIn(usersById.keySet())) {
+            usersById.get((Long) row[0]).getDietaryPreferences().add((User.DietaryPreference) row[1]);
+        }
+        for (Object[] row : userRepository.findAllergiesByUserIdIn(usersById.keySet())) {
+            usersById.get((Long) row[0]).getAllergies().add((String) row[1]);
+        }
+    }
+    
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+    
+    private static String namePattern(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        return "%" + name.trim().toLowerCase(Locale.ROOT) + "%";
+    }
+}
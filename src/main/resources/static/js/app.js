@@ -1124,7 +1124,7 @@ async function loadUsers() {
 
         let users = [];
         if (response.ok) {
-            users = await response.json();
+            users = (await response.json()).content;
         } else {
             // Sample data for demo
             users = [
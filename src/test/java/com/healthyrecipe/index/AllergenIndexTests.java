@@ -0,0 +1,122 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import static com.healthyrecipe.index.AllergenIndex.Allergen;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AllergenIndexTests {
+
+    private AllergenIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new AllergenIndex();
+        put(1L, Recipe.RecipeStatus.APPROVED, "Oat milk", "Almond butter", "Rolled oats");
+        put(2L, Recipe.RecipeStatus.APPROVED, "Peanut butter", "Rice noodles", "Soy sauce");
+        put(3L, Recipe.RecipeStatus.APPROVED, "2 large Eggs, beaten", "Parmesan cheese");
+        put(4L, Recipe.RecipeStatus.APPROVED, "Oyster mushrooms", "Eggplant", "Sliced kiwis");
+        put(5L, Recipe.RecipeStatus.PENDING, "Rice");
+    }
+
+    @Test
+    void keywordsMatchWholeWordsAndPlurals() {
+        assertEquals(mask(Allergen.EGGS, Allergen.DAIRY), AllergenIndex.allergenMask(List.of("Eggs", "Butter")));
+        assertEquals(mask(Allergen.SHELLFISH), AllergenIndex.allergenMask(List.of("Shrimps")));
+        assertEquals(mask(Allergen.GLUTEN), AllergenIndex.allergenMask(List.of("whole-wheat FLOUR")));
+        // Neither "eggplant" nor "peanuts" contains a separate allergen word
+        assertEquals(0, AllergenIndex.allergenMask(List.of("Eggplant", "Cream-of-tartar")));
+        assertEquals(mask(Allergen.PEANUTS), AllergenIndex.allergenMask(List.of("Salted peanuts")));
+    }
+
+    @Test
+    void exclusionsOverrideKeywordsForTheirClassOnly() {
+        assertEquals(mask(Allergen.TREE_NUTS), AllergenIndex.allergenMask(List.of("Almond milk")));
+        assertEquals(mask(Allergen.PEANUTS), AllergenIndex.allergenMask(List.of("Peanut butter")));
+        assertEquals(0, AllergenIndex.allergenMask(List.of("Buckwheat noodles", "Oyster mushroom")));
+        assertEquals(mask(Allergen.GLUTEN, Allergen.SOY), AllergenIndex.allergenMask(List.of("Soy sauce")));
+    }
+
+    @Test
+    void allergiesResolveToClassesOrFreeTerms() {
+        assertEquals(mask(Allergen.TREE_NUTS, Allergen.PEANUTS), AllergenIndex.allergyMask(Set.of("Nuts")));
+        assertEquals(mask(Allergen.FISH, Allergen.SHELLFISH), AllergenIndex.allergyMask(Set.of(" seafood ")));
+        assertTrue(AllergenIndex.isClassified(Set.of("Milk", "tree nut", "")));
+        assertFalse(AllergenIndex.isClassified(Set.of("milk", "kiwi")));
+    }
+
+    @Test
+    void safeForExcludesClassesAndFreeTerms() {
+        LongPredicate noDairy = index.safeFor(Set.of("DAIRY"));
+        assertTrue(noDairy.test(1L));
+        assertTrue(noDairy.test(2L));
+        assertFalse(noDairy.test(3L));
+
+        LongPredicate noNuts = index.safeFor(Set.of("nuts"));
+        assertFalse(noNuts.test(1L));
+        assertFalse(noNuts.test(2L));
+        assertTrue(noNuts.test(3L));
+
+        // Unknown allergies match ingredient words, with plurals
+        assertFalse(index.safeFor(Set.of("Kiwi")).test(4L));
+        assertTrue(index.safeFor(Set.of("kiw")).test(4L));
+        assertTrue(index.safeFor(Set.of("egg", "shellfish")).test(4L));
+
+        // Recipes that are not approved are never safe
+        assertFalse(index.safeFor(Set.of()).test(5L));
+    }
+
+    @Test
+    void changesCommittedDuringRebuildSurviveTheSwap() {
+        RecipeRepository recipeRepository = mock(RecipeRepository.class);
+        IngredientRepository ingredientRepository = mock(IngredientRepository.class);
+        ReflectionTestUtils.setField(index, "recipeRepository", recipeRepository);
+        ReflectionTestUtils.setField(index, "ingredientRepository", ingredientRepository);
+        List<Object[]> rows = List.of(new Object[] { 1L, "Oat milk" }, new Object[] { 3L, "Eggs" });
+        // The rows were read before recipe 5 was approved and recipe 3 rejected
+        when(ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED))
+                .thenAnswer(invocation -> {
+                    put(5L, Recipe.RecipeStatus.APPROVED, "Shrimp");
+                    put(3L, Recipe.RecipeStatus.REJECTED);
+                    return rows;
+                });
+        when(recipeRepository.findIdsByStatus(Recipe.RecipeStatus.APPROVED)).thenReturn(List.of(1L, 3L));
+        index.rebuild();
+
+        assertTrue(index.safeFor(Set.of("eggs")).test(1L));
+        assertFalse(index.safeFor(Set.of()).test(3L));
+        assertTrue(index.safeFor(Set.of("eggs")).test(5L));
+        assertFalse(index.safeFor(Set.of("shellfish")).test(5L));
+        assertFalse(index.safeFor(Set.of()).test(2L));
+    }
+
+    private void put(Long recipeId, Recipe.RecipeStatus status, String... ingredients) {
+        Recipe recipe = new Recipe();
+        recipe.setId(recipeId);
+        recipe.setStatus(status);
+        index.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED, recipeId, recipe,
+                List.of(ingredients)));
+    }
+
+    private static int mask(Allergen... allergens) {
+        int mask = 0;
+        for (Allergen allergen : allergens) {
+            mask |= 1 << allergen.ordinal();
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,129 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Favorite;
+import com.healthyrecipe.entity.Rating;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.repository.FavoriteRepository;
+import com.healthyrecipe.repository.RatingRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import com.healthyrecipe.repository.UserRepository;
+import com.healthyrecipe.security.UserPrincipal;
+import com.healthyrecipe.service.FavoriteService;
+import com.healthyrecipe.service.RatingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Like changes applied to the model between rebuilds must leave it with the same like
+ * and co-occurrence counts as a fresh build from the database.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:cftestdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.rating-buffer.enabled=false",
+    "app.cf.update-interval-ms=3600000"
+})
+class CollaborativeFilteringIndexTests {
+
+    @Autowired
+    private CollaborativeFilteringIndex index;
+
+    @Autowired
+    private FavoriteService favoriteService;
+
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private FavoriteRepository favoriteRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void incrementalUpdatesMatchFreshBuild() {
+        User author = userRepository.save(new User("cfauthor", "cfauthor@example.com", "password", "Test", "Author"));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(userRepository.save(new User("cfuser" + i, "cfuser" + i + "@example.com",
+                    "password", "Test", "User")));
+        }
+        List<Long> recipes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Recipe recipe = new Recipe("CF recipe " + i, "A test recipe", "Cook", 5, 5, 1, author);
+            recipe.setStatus(Recipe.RecipeStatus.APPROVED);
+            recipes.add(recipeRepository.save(recipe).getId());
+        }
+
+        // Likes present at the initial build
+        favoriteRepository.save(new Favorite(users.get(0), recipeRepository.getReferenceById(recipes.get(0))));
+        favoriteRepository.save(new Favorite(users.get(1), recipeRepository.getReferenceById(recipes.get(0))));
+        ratingRepository.save(new Rating(5, null, users.get(0), recipeRepository.getReferenceById(recipes.get(1))));
+        ratingRepository.save(new Rating(4, null, users.get(1), recipeRepository.getReferenceById(recipes.get(2))));
+        ratingRepository.save(new Rating(5, null, users.get(2), recipeRepository.getReferenceById(recipes.get(1))));
+        index.rebuild();
+
+        // Favorited and rated high: still one like
+        login(users.get(0));
+        ratingService.createOrUpdateRating(recipes.get(0), 5, null);
+        // Unfavorited while still rated high: the like stays
+        favoriteService.removeFromFavorites(recipes.get(0));
+        // Several new likes by one user in the same batch
+        favoriteService.addToFavorites(recipes.get(3));
+        ratingService.createOrUpdateRating(recipes.get(4), 4, null);
+        favoriteService.addToFavorites(recipes.get(5));
+
+        login(users.get(1));
+        favoriteService.addToFavorites(recipes.get(3));
+        // Rated low while favorited: still liked, then the favorite goes too
+        ratingService.createOrUpdateRating(recipes.get(0), 2, null);
+        favoriteService.removeFromFavorites(recipes.get(0));
+        // Like lost and gained again in the same batch
+        ratingService.createOrUpdateRating(recipes.get(2), 1, null);
+        ratingService.createOrUpdateRating(recipes.get(2), 5, null);
+
+        login(users.get(3));
+        favoriteService.addToFavorites(recipes.get(4));
+        favoriteService.addToFavorites(recipes.get(5));
+        favoriteService.addToFavorites(recipes.get(3));
+        ratingService.createOrUpdateRating(recipes.get(5), 5, null);
+
+        index.applyPendingUpdates();
+        Map<Long, Integer> incrementalLikes = index.likeCounts();
+        Map<Long, Map<Long, Integer>> incrementalNeighbors = index.neighborCounts();
+
+        index.rebuild();
+        assertEquals(index.likeCounts(), incrementalLikes);
+        assertEquals(index.neighborCounts(), incrementalNeighbors);
+    }
+
+    private static void login(User user) {
+        UserPrincipal principal = UserPrincipal.create(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
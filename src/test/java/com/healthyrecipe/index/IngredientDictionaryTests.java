@@ -0,0 +1,62 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IngredientDictionaryTests {
+
+    private IngredientDictionary dictionary;
+    private IngredientRepository ingredientRepository;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new IngredientDictionary();
+        ingredientRepository = mock(IngredientRepository.class);
+        ReflectionTestUtils.setField(dictionary, "ingredientRepository", ingredientRepository);
+    }
+
+    @Test
+    void changesCommittedDuringRebuildSurviveTheSwap() {
+        List<Object[]> rows = List.of(new Object[] { 1L, "Chicken breast" }, new Object[] { 2L, "Chicken thigh" });
+        // The rows were read before recipe 3 was created and recipe 2 changed to beef
+        when(ingredientRepository.findRecipeIdAndName()).thenAnswer(invocation -> {
+            put(3L, "chicken  breast");
+            put(2L, "Beef");
+            return rows;
+        });
+        dictionary.rebuild();
+
+        assertEquals(List.of("chicken breast:2"), suggestions("chi"));
+        assertEquals(List.of("chicken breast:2", "beef:1"), suggestions("b"));
+
+        // Counts stay consistent for later changes
+        dictionary.onRecipeChanged(RecipeChangedEvent.deleted(3L));
+        put(2L, "Chicken thigh");
+        assertEquals(List.of("chicken breast:1", "chicken thigh:1"), suggestions("chicken"));
+        assertEquals(List.of("chicken breast:1"), suggestions("b"));
+    }
+
+    private void put(Long recipeId, String... ingredients) {
+        Recipe recipe = new Recipe();
+        recipe.setId(recipeId);
+        dictionary.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED, recipeId, recipe,
+                List.of(ingredients)));
+    }
+
+    private List<String> suggestions(String prefix) {
+        return dictionary.suggest(prefix, 10).stream()
+                .map(suggestion -> suggestion.getName() + ":" + suggestion.getCount())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,105 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PantryIndexTests {
+
+    private static final List<String> PANTRY = List.of("Tomatoes", "fresh basil");
+
+    private PantryIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PantryIndex();
+        put(1L, Recipe.RecipeStatus.APPROVED, "2 ripe tomatoes, diced", "Basil");
+        put(2L, Recipe.RecipeStatus.APPROVED, "tomato", "basil", "pasta");
+        put(3L, Recipe.RecipeStatus.APPROVED, "tomato", "onion");
+        put(4L, Recipe.RecipeStatus.APPROVED, "tomato", "basil", "garlic");
+        put(5L, Recipe.RecipeStatus.APPROVED, "rice", "beans");
+    }
+
+    @Test
+    void ranksByCoverageThenFewestMissingThenNewest() {
+        PantryIndex.PantryPage page = index.search(PANTRY, null, 0, 10);
+
+        assertEquals(List.of(1L, 4L, 2L, 3L), recipeIds(page));
+        assertEquals(4, page.getTotal());
+        PantryIndex.PantryMatch newer = page.getMatches().get(1);
+        assertEquals(2, newer.getMatchedIngredients());
+        assertEquals(3, newer.getTotalIngredients());
+        assertEquals(List.of("garlic"), newer.getMissingIngredients());
+    }
+
+    @Test
+    void maxMissingLimitsMissingIngredients() {
+        assertEquals(List.of(1L), recipeIds(index.search(PANTRY, 0, 0, 10)));
+        assertEquals(List.of(1L, 4L, 2L, 3L), recipeIds(index.search(PANTRY, 1, 0, 10)));
+    }
+
+    @Test
+    void pagesThroughTheRanking() {
+        assertEquals(List.of(4L, 2L), recipeIds(index.search(PANTRY, null, 1, 2)));
+
+        PantryIndex.PantryPage pastTheEnd = index.search(PANTRY, null, 10, 10);
+        assertTrue(pastTheEnd.getMatches().isEmpty());
+        assertEquals(4, pastTheEnd.getTotal());
+    }
+
+    @Test
+    void hugePagesOnlyAllocateForTheCandidates() {
+        assertEquals(List.of(1L, 4L, 2L, 3L), recipeIds(index.search(PANTRY, null, 0, Integer.MAX_VALUE)));
+        assertTrue(index.search(PANTRY, null, Integer.MAX_VALUE, Integer.MAX_VALUE).getMatches().isEmpty());
+    }
+
+    @Test
+    void followsRecipeChanges() {
+        put(4L, Recipe.RecipeStatus.REJECTED);
+        put(6L, Recipe.RecipeStatus.APPROVED, "Tomato", "zucchini");
+
+        // 6 covers as much as 3 and is newer; 4 was rejected
+        assertEquals(List.of(1L, 2L, 6L, 3L), recipeIds(index.search(PANTRY, null, 0, 10)));
+    }
+
+    @Test
+    void changesCommittedDuringRebuildSurviveTheSwap() {
+        IngredientRepository ingredientRepository = mock(IngredientRepository.class);
+        ReflectionTestUtils.setField(index, "ingredientRepository", ingredientRepository);
+        List<Object[]> rows = List.of(new Object[] { 1L, "tomato" }, new Object[] { 1L, "basil" },
+                new Object[] { 3L, "tomato" });
+        // The rows were read before recipe 6 was approved and recipe 1 rejected
+        when(ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED))
+                .thenAnswer(invocation -> {
+                    put(6L, Recipe.RecipeStatus.APPROVED, "tomato", "basil");
+                    put(1L, Recipe.RecipeStatus.REJECTED);
+                    return rows;
+                });
+        index.rebuild();
+
+        assertEquals(List.of(6L, 3L), recipeIds(index.search(PANTRY, null, 0, 10)));
+    }
+
+    private void put(Long recipeId, Recipe.RecipeStatus status, String... ingredients) {
+        Recipe recipe = new Recipe();
+        recipe.setId(recipeId);
+        recipe.setStatus(status);
+        index.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED, recipeId, recipe,
+                List.of(ingredients)));
+    }
+
+    private static List<Long> recipeIds(PantryIndex.PantryPage page) {
+        return page.getMatches().stream().map(PantryIndex.PantryMatch::getRecipeId).collect(Collectors.toList());
+    }
+}
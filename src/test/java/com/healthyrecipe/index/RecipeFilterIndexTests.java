@@ -0,0 +1,297 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.dto.recipe.RecipeQuery;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.RecipeRepository;
+import com.healthyrecipe.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.mockito.AdditionalAnswers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Every filter served from the bitmaps must return the same recipes, in the same
+ * newest-first order, as the JPQL query it replaced, both after a rebuild and after
+ * recipe changes applied from events.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:filtertestdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class RecipeFilterIndexTests {
+
+    private static final List<String> TAGS = List.of("vegan", "vegetarian", "gluten-free", "keto", "high-protein");
+
+    private static final List<RecipeQuery> QUERIES = List.of(
+            new RecipeQuery(null, null, null, null, null, null),
+            new RecipeQuery(List.of(Recipe.RecipeCategory.DINNER, Recipe.RecipeCategory.LUNCH), List.of("vegan"),
+                    null, 650, null, null),
+            new RecipeQuery(null, List.of("vegan", "gluten-free"), 250, null, 45,
+                    List.of(Recipe.DifficultyLevel.EASY, Recipe.DifficultyLevel.MEDIUM)),
+            new RecipeQuery(List.of(Recipe.RecipeCategory.SNACK), null, 2000, null, null, null),
+            new RecipeQuery(null, List.of("keto", "unknown"), null, null, null, null));
+
+    @Autowired
+    private RecipeFilterIndex index;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Random random = new Random(42);
+
+    private User author;
+
+    @BeforeAll
+    void seedRecipes() {
+        author = userRepository.save(new User("filterauthor", "filterauthor@example.com", "password", "Test", "Author"));
+        for (int i = 0; i < 80; i++) {
+            recipeRepository.save(randomize(new Recipe("Filter recipe " + i, "A filter test recipe", "Cook",
+                    10, 10, 2, author)));
+        }
+        index.rebuild();
+    }
+
+    @Test
+    void matchesTheDatabaseAfterRebuildAndAfterChanges() {
+        assertMatchesDatabase();
+
+        List<Recipe> recipes = recipeRepository.findAll();
+        for (int i = 0; i < 20; i++) {
+            Recipe changed = recipeRepository.save(randomize(recipes.get(random.nextInt(recipes.size()))));
+            index.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED, changed.getId(),
+                    changed, List.of()));
+        }
+        for (int i = 0; i < 3; i++) {
+            Long deleted = recipes.get(i * 7).getId();
+            recipeRepository.deleteById(deleted);
+            index.onRecipeChanged(RecipeChangedEvent.deleted(deleted));
+        }
+        for (int i = 0; i < 10; i++) {
+            Recipe created = recipeRepository.save(randomize(new Recipe("New filter recipe " + i,
+                    "A filter test recipe", "Cook", 10, 10, 2, author)));
+            index.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.CREATED, created.getId(),
+                    created, List.of()));
+        }
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    void recipeCreatedDuringRebuildIsKept() {
+        RecipeRepository reading = mock(RecipeRepository.class, AdditionalAnswers.delegatesTo(recipeRepository));
+        List<Long> created = new ArrayList<>();
+        // The recipe is created and committed, in its own transaction, right after the features were read
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        when(reading.findFilterFeaturesOrderByCreatedAt()).thenAnswer(invocation -> {
+            List<Object[]> rows = recipeRepository.findFilterFeaturesOrderByCreatedAt();
+            Recipe recipe = new Recipe("Rebuild recipe", "A filter test recipe", "Cook", 10, 10, 2, author);
+            recipe.setStatus(Recipe.RecipeStatus.APPROVED);
+            recipe.setCategories(Set.of(Recipe.RecipeCategory.BEVERAGE));
+            newTransaction.executeWithoutResult(status -> recipeRepository.save(recipe));
+            created.add(recipe.getId());
+            index.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.CREATED, recipe.getId(),
+                    recipe, List.of()));
+            return rows;
+        });
+
+        ReflectionTestUtils.setField(index, "recipeRepository", reading);
+        try {
+            index.rebuild();
+        } finally {
+            ReflectionTestUtils.setField(index, "recipeRepository", recipeRepository);
+        }
+
+        assertTrue(index.approvedByCategories(List.of(Recipe.RecipeCategory.BEVERAGE), 0, 1000)
+                .getRecipeIds().contains(created.get(0)));
+        assertMatchesDatabase();
+    }
+
+    private void assertMatchesDatabase() {
+        List<Recipe.RecipeCategory> categories = List.of(Recipe.RecipeCategory.DINNER, Recipe.RecipeCategory.SOUP);
+        assertPage(reference(new RecipeQuery(categories, null, null, null, null, null)),
+                index.approvedByCategories(categories, 0, 1000));
+
+        for (String tag : TAGS) {
+            assertPage(referenceAnyTag(List.of(tag, "keto")), index.approvedByDietaryTags(List.of(tag, "keto"), 0, 1000));
+        }
+
+        int[][] calorieRanges = { { 0, 99 }, { 150, 449 }, { 300, 300 }, { 0, 50 }, { 1950, 5000 }, { 2100, 2200 } };
+        for (int[] range : calorieRanges) {
+            assertPage(reference(new RecipeQuery(null, null, range[0], range[1], null, null)),
+                    index.approvedByCalorieRange(range[0], range[1], 0, 1000));
+        }
+
+        for (int maxTime : new int[] { 2, 4, 5, 33, 120, 179, 180, 500 }) {
+            assertPage(reference(new RecipeQuery(null, null, null, null, maxTime, null)),
+                    index.approvedByMaxTime(maxTime, 0, 1000));
+        }
+
+        for (Recipe.DifficultyLevel difficulty : Recipe.DifficultyLevel.values()) {
+            assertPage(reference(new RecipeQuery(null, null, null, null, null, List.of(difficulty))),
+                    index.approvedByDifficulty(difficulty, 0, 1000));
+        }
+
+        for (RecipeQuery query : QUERIES) {
+            RecipeFilterIndex.FacetedPage result = index.query(query, 0, 1000, TAGS.size());
+            assertPage(reference(query), result.getPage());
+
+            // Category and difficulty facets leave out the query's own filter on that field
+            for (Recipe.RecipeCategory category : Recipe.RecipeCategory.values()) {
+                assertEquals(reference(withCategory(query, category)).size(),
+                        result.getCategoryCounts().get(category).intValue(), "category " + category);
+            }
+            for (Recipe.DifficultyLevel difficulty : Recipe.DifficultyLevel.values()) {
+                assertEquals(reference(withDifficulty(query, difficulty)).size(),
+                        result.getDifficultyCounts().get(difficulty).intValue(), "difficulty " + difficulty);
+            }
+            Map<String, Long> tagCounts = new HashMap<>();
+            for (String tag : TAGS) {
+                long count = reference(withTag(query, tag)).size();
+                if (count > 0) {
+                    tagCounts.put(tag, count);
+                }
+            }
+            assertEquals(tagCounts, result.getDietaryTagCounts());
+        }
+
+        // Pages are slices of the same order
+        List<Long> all = index.approvedByDifficulty(Recipe.DifficultyLevel.EASY, 0, 1000).getRecipeIds();
+        assertEquals(all.subList(Math.min(3, all.size()), Math.min(8, all.size())),
+                index.approvedByDifficulty(Recipe.DifficultyLevel.EASY, 3, 5).getRecipeIds());
+    }
+
+    private static void assertPage(List<Long> expected, RecipeLeaderboard.LeaderboardPage page) {
+        assertEquals(expected, page.getRecipeIds());
+        assertEquals(expected.size(), page.getTotal());
+    }
+
+    // The JPQL filters the index replaced, ordered newest first
+    private List<Long> reference(RecipeQuery query) {
+        StringBuilder jpql = new StringBuilder("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED'");
+        Map<String, Object> parameters = new HashMap<>();
+        if (!query.getCategories().isEmpty()) {
+            jpql.append(" AND EXISTS (SELECT 1 FROM Recipe r2 JOIN r2.categories c WHERE r2 = r AND c IN :categories)");
+            parameters.put("categories", query.getCategories());
+        }
+        for (int i = 0; i < query.getDietaryTags().size(); i++) {
+            jpql.append(" AND EXISTS (SELECT 1 FROM Recipe r2 JOIN r2.dietaryTags dt WHERE r2 = r AND dt = :tag")
+                    .append(i).append(")");
+            parameters.put("tag" + i, query.getDietaryTags().get(i));
+        }
+        if (query.getMinCalories() != null) {
+            jpql.append(" AND r.nutritionInfo.calories >= :minCalories");
+            parameters.put("minCalories", query.getMinCalories());
+        }
+        if (query.getMaxCalories() != null) {
+            jpql.append(" AND r.nutritionInfo.calories <= :maxCalories");
+            parameters.put("maxCalories", query.getMaxCalories());
+        }
+        if (query.getMaxTime() != null) {
+            jpql.append(" AND r.preparationTime + r.cookingTime <= :maxTime");
+            parameters.put("maxTime", query.getMaxTime());
+        }
+        if (!query.getDifficulties().isEmpty()) {
+            jpql.append(" AND r.difficultyLevel IN :difficulties");
+            parameters.put("difficulties", query.getDifficulties());
+        }
+        return run(jpql, parameters);
+    }
+
+    private List<Long> referenceAnyTag(List<String> tags) {
+        StringBuilder jpql = new StringBuilder("SELECT r.id FROM Recipe r WHERE r.status = 'APPROVED' " +
+                "AND EXISTS (SELECT 1 FROM Recipe r2 JOIN r2.dietaryTags dt WHERE r2 = r AND dt IN :tags)");
+        return run(jpql, Map.of("tags", tags));
+    }
+
+    private List<Long> run(StringBuilder jpql, Map<String, Object> parameters) {
+        jpql.append(" ORDER BY r.createdAt DESC, r.id DESC");
+        TypedQuery<Long> typed = entityManager.createQuery(jpql.toString(), Long.class);
+        parameters.forEach(typed::setParameter);
+        return typed.getResultList();
+    }
+
+    private static RecipeQuery withCategory(RecipeQuery query, Recipe.RecipeCategory category) {
+        return new RecipeQuery(List.of(category), query.getDietaryTags(), query.getMinCalories(),
+                query.getMaxCalories(), query.getMaxTime(), query.getDifficulties());
+    }
+
+    private static RecipeQuery withDifficulty(RecipeQuery query, Recipe.DifficultyLevel difficulty) {
+        return new RecipeQuery(query.getCategories(), query.getDietaryTags(), query.getMinCalories(),
+                query.getMaxCalories(), query.getMaxTime(), List.of(difficulty));
+    }
+
+    private static RecipeQuery withTag(RecipeQuery query, String tag) {
+        List<String> tags = new ArrayList<>(query.getDietaryTags());
+        tags.add(tag);
+        return new RecipeQuery(query.getCategories(), tags, query.getMinCalories(),
+                query.getMaxCalories(), query.getMaxTime(), query.getDifficulties());
+    }
+
+    // Random features, including missing values and values past the last range bucket
+    private Recipe randomize(Recipe recipe) {
+        Recipe.RecipeStatus[] statuses = Recipe.RecipeStatus.values();
+        recipe.setStatus(random.nextInt(4) == 0 ? statuses[random.nextInt(statuses.length)]
+                : Recipe.RecipeStatus.APPROVED);
+        Recipe.DifficultyLevel[] difficulties = Recipe.DifficultyLevel.values();
+        recipe.setDifficultyLevel(random.nextInt(8) == 0 ? null : difficulties[random.nextInt(difficulties.length)]);
+        if (recipe.getNutritionInfo() == null) {
+            // Hibernate loads an embeddable whose columns are all null as null
+            recipe.setNutritionInfo(new Recipe.NutritionInfo());
+        }
+        recipe.getNutritionInfo().setCalories(random.nextInt(10) == 0 ? null : random.nextInt(2400));
+        recipe.setPreparationTime(1 + random.nextInt(100));
+        recipe.setCookingTime(1 + random.nextInt(150));
+
+        Set<Recipe.RecipeCategory> categories = new HashSet<>();
+        for (Recipe.RecipeCategory category : Recipe.RecipeCategory.values()) {
+            if (random.nextInt(4) == 0) {
+                categories.add(category);
+            }
+        }
+        recipe.setCategories(categories);
+        Set<String> tags = new HashSet<>();
+        for (String tag : TAGS) {
+            if (random.nextInt(3) == 0) {
+                tags.add(tag);
+            }
+        }
+        recipe.setDietaryTags(tags);
+        return recipe;
+    }
+}
@@ -0,0 +1,115 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.FavoriteRepository;
+import com.healthyrecipe.repository.RecipeRatingStatsRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecipeLeaderboardTests {
+
+    private RecipeLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        leaderboard = new RecipeLeaderboard();
+        ReflectionTestUtils.setField(leaderboard, "bayesianPriorWeight", 5.0);
+        ReflectionTestUtils.setField(leaderboard, "bayesianPriorMean", 3.0);
+        for (long id = 1; id <= 4; id++) {
+            approve(id);
+        }
+        leaderboard.onRatingChanged(new RatingChangedEvent(10L, 1L, 0, 1));
+        leaderboard.onRatingChanged(new RatingChangedEvent(10L, 2L, 0, 5));
+        leaderboard.onRatingChanged(new RatingChangedEvent(11L, 2L, 0, 2));
+    }
+
+    @Test
+    void unratedRecipesRankAfterRatedOnes() {
+        assertEquals(List.of(2L, 1L, 4L, 3L), leaderboard.topRated(0, 10).getRecipeIds());
+        assertEquals(4, leaderboard.topRated(0, 10).getTotal());
+        assertEquals(List.of(1L, 4L), leaderboard.topRated(1, 2).getRecipeIds());
+        assertTrue(leaderboard.topRated(10, 10).getRecipeIds().isEmpty());
+    }
+
+    @Test
+    void cursorPagesFollowTheSameOrder() {
+        List<RecipeLeaderboard.Position> first = leaderboard.topRatedAfter(Double.POSITIVE_INFINITY,
+                Integer.MAX_VALUE, Long.MAX_VALUE, 2);
+        RecipeLeaderboard.Position last = first.get(1);
+        List<RecipeLeaderboard.Position> second = leaderboard.topRatedAfter(last.getRatingScore(),
+                last.getRatingCount(), last.getRecipeId(), 2);
+
+        assertEquals(List.of(2L, 1L), ids(first));
+        assertEquals(List.of(4L, 3L), ids(second));
+    }
+
+    @Test
+    void filteredPagesCountOnlyAcceptedRecipes() {
+        RecipeLeaderboard.LeaderboardPage page = leaderboard.topRated(id -> id != 1L, 1, 1);
+
+        assertEquals(List.of(4L), page.getRecipeIds());
+        assertEquals(3, page.getTotal());
+        assertTrue(leaderboard.topRated(id -> true, 4, 10).getRecipeIds().isEmpty());
+    }
+
+    @Test
+    void firstRatingMovesARecipeAmongTheRated() {
+        leaderboard.onRatingChanged(new RatingChangedEvent(10L, 3L, 0, 2));
+
+        assertEquals(List.of(2L, 3L, 1L, 4L), leaderboard.topRated(0, 10).getRecipeIds());
+    }
+
+    @Test
+    void changesCommittedDuringRebuildSurviveIt() {
+        RecipeRepository recipeRepository = mock(RecipeRepository.class);
+        RecipeRatingStatsRepository ratingStatsRepository = mock(RecipeRatingStatsRepository.class);
+        FavoriteRepository favoriteRepository = mock(FavoriteRepository.class);
+        ReflectionTestUtils.setField(leaderboard, "recipeRepository", recipeRepository);
+        ReflectionTestUtils.setField(leaderboard, "ratingStatsRepository", ratingStatsRepository);
+        ReflectionTestUtils.setField(leaderboard, "favoriteRepository", favoriteRepository);
+
+        // The rows were read before recipe 3 got its first rating and recipe 5 was approved
+        when(recipeRepository.findIdsByStatus(Recipe.RecipeStatus.APPROVED)).thenAnswer(invocation -> {
+            leaderboard.onRatingChanged(new RatingChangedEvent(10L, 3L, 0, 4));
+            approve(5L);
+            return List.of(1L, 2L, 3L, 4L);
+        });
+        when(ratingStatsRepository.findAll()).thenReturn(List.of(stats(1L, 1, 1), stats(2L, 7, 2)));
+        when(favoriteRepository.countFavoritesGroupedByRecipe()).thenReturn(List.of());
+        leaderboard.rebuild();
+
+        assertEquals(List.of(3L, 2L, 1L, 5L, 4L), leaderboard.topRated(0, 10).getRecipeIds());
+    }
+
+    private static RecipeRatingStats stats(Long recipeId, long sum, int count) {
+        RecipeRatingStats stats = new RecipeRatingStats(recipeId);
+        stats.setRatingSum(sum);
+        stats.setRatingCount(count);
+        return stats;
+    }
+
+    private void approve(long id) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setStatus(Recipe.RecipeStatus.APPROVED);
+        leaderboard.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.APPROVED, id, recipe,
+                List.of()));
+    }
+
+    private static List<Long> ids(List<RecipeLeaderboard.Position> positions) {
+        return positions.stream().map(RecipeLeaderboard.Position::getRecipeId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,75 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RatingChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeScoringEngineTests {
+
+    private static final RecipeScoringEngine.Profile VEGAN =
+            new RecipeScoringEngine.Profile(List.of("vegan"), List.of(), null, null, Set.of());
+
+    private RecipeScoringEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new RecipeScoringEngine();
+        put(1L, Recipe.RecipeStatus.APPROVED, "vegan");
+        put(2L, Recipe.RecipeStatus.APPROVED);
+        put(3L, Recipe.RecipeStatus.APPROVED);
+        // The first snapshot has no bit for "vegan"
+        engine.refreshIfStale();
+    }
+
+    @Test
+    void ranksByPreferenceThenNewest() {
+        assertEquals(List.of(1L, 3L, 2L), engine.topRecipes(VEGAN, 0, 10).getRecipeIds());
+        assertEquals(3, engine.topRecipes(VEGAN, 0, 10).getTotal());
+    }
+
+    @Test
+    void patchesChangesIntoTheSnapshot() {
+        engine.onRatingChanged(new RatingChangedEvent(10L, 2L, 0, 5));
+        put(1L, Recipe.RecipeStatus.REJECTED);
+        put(4L, Recipe.RecipeStatus.APPROVED, "vegan");
+
+        RecipeLeaderboard.LeaderboardPage page = engine.topRecipes(VEGAN, 0, 10);
+        assertEquals(List.of(4L, 2L, 3L), page.getRecipeIds());
+        assertEquals(3, page.getTotal());
+    }
+
+    @Test
+    void rebuildsForTagsTheSnapshotCannotHold() {
+        RecipeScoringEngine.Profile keto = new RecipeScoringEngine.Profile(List.of("keto"), List.of(), null, null, Set.of());
+        put(5L, Recipe.RecipeStatus.APPROVED, "keto");
+        assertTrue(!engine.topRecipes(keto, 0, 10).getRecipeIds().contains(5L));
+
+        engine.refreshIfStale();
+        assertEquals(List.of(5L, 3L, 2L, 1L), engine.topRecipes(keto, 0, 10).getRecipeIds());
+    }
+
+    @Test
+    void hugePagesOnlyAllocateForTheRecipes() {
+        assertEquals(List.of(1L, 3L, 2L), engine.topRecipes(VEGAN, 0, Integer.MAX_VALUE).getRecipeIds());
+        assertTrue(engine.topRecipes(VEGAN, Integer.MAX_VALUE, Integer.MAX_VALUE).getRecipeIds().isEmpty());
+    }
+
+    private void put(Long recipeId, Recipe.RecipeStatus status, String... dietaryTags) {
+        Recipe recipe = new Recipe();
+        recipe.setId(recipeId);
+        recipe.setStatus(status);
+        recipe.setPreparationTime(10);
+        recipe.setCookingTime(20);
+        recipe.setDietaryTags(Set.of(dietaryTags));
+        engine.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED, recipeId, recipe,
+                List.of()));
+    }
+}
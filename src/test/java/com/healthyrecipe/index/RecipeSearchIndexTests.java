@@ -0,0 +1,94 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecipeSearchIndexTests {
+
+    private RecipeSearchIndex index;
+    private RecipeRepository recipeRepository;
+
+    @BeforeEach
+    void setUp() {
+        index = new RecipeSearchIndex();
+        recipeRepository = mock(RecipeRepository.class);
+        IngredientRepository ingredientRepository = mock(IngredientRepository.class);
+        when(ingredientRepository.findRecipeIdAndNameByRecipeStatus(Recipe.RecipeStatus.APPROVED))
+                .thenReturn(List.of());
+        ReflectionTestUtils.setField(index, "recipeRepository", recipeRepository);
+        ReflectionTestUtils.setField(index, "ingredientRepository", ingredientRepository);
+    }
+
+    @Test
+    void changesCommittedDuringRebuildSurviveTheSwap() {
+        Recipe soup = recipe(1L, "Tomato soup");
+        Recipe stew = recipe(2L, "Bean stew");
+        index.onRecipeChanged(approved(soup));
+        index.onRecipeChanged(approved(stew));
+
+        // The rows were read before a new recipe was approved and the stew deleted
+        when(recipeRepository.findByStatus(Recipe.RecipeStatus.APPROVED)).thenAnswer(invocation -> {
+            index.onRecipeChanged(approved(recipe(3L, "Lentil curry")));
+            index.onRecipeChanged(RecipeChangedEvent.deleted(2L));
+            return List.of(soup, stew);
+        });
+        index.rebuild();
+
+        assertEquals(List.of(3L), index.search("lentil", 0, 10).getRecipeIds());
+        assertTrue(index.search("stew", 0, 10).getRecipeIds().isEmpty());
+        assertEquals(List.of(1L), index.search("soup", 0, 10).getRecipeIds());
+    }
+
+    @Test
+    void prefixKeepsTheMostFrequentExpansions() {
+        StringBuilder rareTerms = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            rareTerms.append(String.format("ca%03d ", i));
+        }
+        index.onRecipeChanged(approved(recipe(1L, rareTerms.toString())));
+        index.onRecipeChanged(approved(recipe(2L, "Carrot salad")));
+        index.onRecipeChanged(approved(recipe(3L, "Carrot cake")));
+
+        List<Long> hits = new ArrayList<>(index.search("ca", 0, 10).getRecipeIds());
+        hits.sort(null);
+        assertEquals(List.of(1L, 2L, 3L), hits);
+    }
+
+    @Test
+    void prefixThatIsAWordAlwaysMatchesIt() {
+        StringBuilder longerTerms = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longerTerms.append(String.format("pea%03d ", i));
+        }
+        index.onRecipeChanged(approved(recipe(1L, longerTerms.toString())));
+        index.onRecipeChanged(approved(recipe(2L, longerTerms.toString())));
+        index.onRecipeChanged(approved(recipe(3L, "Pea risotto")));
+
+        assertTrue(index.search("pea", 0, 10).getRecipeIds().contains(3L));
+    }
+
+    private static Recipe recipe(Long id, String title) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTitle(title);
+        recipe.setStatus(Recipe.RecipeStatus.APPROVED);
+        return recipe;
+    }
+
+    private static RecipeChangedEvent approved(Recipe recipe) {
+        return new RecipeChangedEvent(RecipeChangedEvent.ChangeType.APPROVED, recipe.getId(), recipe, List.of());
+    }
+}
@@ -0,0 +1,104 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import com.healthyrecipe.repository.IngredientRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SimilarRecipeIndexTests {
+
+    private SimilarRecipeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SimilarRecipeIndex();
+        ReflectionTestUtils.setField(index, "neighborCount", 2);
+        put(1L, Recipe.RecipeStatus.APPROVED, "rice", "beans", "onion", "garlic");
+        put(2L, Recipe.RecipeStatus.APPROVED, "rice", "beans", "onion", "garlic", "corn");
+        put(3L, Recipe.RecipeStatus.APPROVED, "rice", "beans", "tomato", "lime");
+        put(4L, Recipe.RecipeStatus.APPROVED, "flour", "butter", "sugar", "eggs");
+    }
+
+    @Test
+    void ranksMostSimilarFirst() {
+        assertEquals(List.of(2L, 3L), index.neighbors(1L));
+        assertEquals(List.of(1L, 3L), index.neighbors(2L));
+    }
+
+    @Test
+    void reRanksListsThatLoseARecipeWhenRead() {
+        put(2L, Recipe.RecipeStatus.REJECTED);
+
+        assertNull(index.neighbors(2L));
+        assertEquals(List.of(3L, 4L), index.neighbors(1L));
+    }
+
+    @Test
+    void reRanksStaleListsInTheBackground() {
+        put(2L, Recipe.RecipeStatus.REJECTED);
+        index.refreshStale();
+
+        assertEquals(List.of(3L, 4L), index.neighbors(1L));
+        assertEquals(List.of(1L, 4L), index.neighbors(3L));
+    }
+
+    @Test
+    void offersNewRecipesToTheirCandidates() {
+        put(5L, Recipe.RecipeStatus.APPROVED, "rice", "beans", "onion", "garlic");
+
+        assertEquals(List.of(5L, 2L), index.neighbors(1L));
+        assertEquals(List.of(1L, 2L), index.neighbors(5L));
+    }
+
+    @Test
+    void changesCommittedDuringRebuildSurviveIt() {
+        RecipeRepository recipeRepository = mock(RecipeRepository.class);
+        IngredientRepository ingredientRepository = mock(IngredientRepository.class);
+        ReflectionTestUtils.setField(index, "recipeRepository", recipeRepository);
+        ReflectionTestUtils.setField(index, "ingredientRepository", ingredientRepository);
+
+        Recipe.RecipeStatus approved = Recipe.RecipeStatus.APPROVED;
+        when(recipeRepository.findCategoriesByStatus(approved)).thenReturn(List.of(
+                new Object[] { 1L, Recipe.RecipeCategory.LUNCH },
+                new Object[] { 2L, Recipe.RecipeCategory.LUNCH },
+                new Object[] { 3L, Recipe.RecipeCategory.LUNCH }));
+        when(ingredientRepository.findRecipeIdAndNameByRecipeStatus(approved)).thenReturn(List.of(
+                new Object[] { 1L, "rice" }, new Object[] { 1L, "beans" }, new Object[] { 1L, "onion" },
+                new Object[] { 2L, "rice" }, new Object[] { 2L, "beans" }, new Object[] { 2L, "onion" },
+                new Object[] { 3L, "rice" }, new Object[] { 3L, "beans" }, new Object[] { 3L, "lime" }));
+        // The rows were read before recipe 5 was approved and recipe 2 rejected
+        List<Object[]> rows = List.of(new Object[] { 1L, null, null, null, null, null },
+                new Object[] { 2L, null, null, null, null, null },
+                new Object[] { 3L, null, null, null, null, null });
+        when(recipeRepository.findScoringFeaturesByStatus(approved)).thenAnswer(invocation -> {
+            put(5L, approved, "rice", "beans", "onion");
+            put(2L, Recipe.RecipeStatus.REJECTED);
+            return rows;
+        });
+        index.rebuild();
+
+        assertNull(index.neighbors(2L));
+        assertEquals(List.of(5L, 3L), index.neighbors(1L));
+        assertEquals(List.of(1L, 3L), index.neighbors(5L));
+    }
+
+    private void put(Long recipeId, Recipe.RecipeStatus status, String... ingredients) {
+        Recipe recipe = new Recipe();
+        recipe.setId(recipeId);
+        recipe.setStatus(status);
+        recipe.setCategories(Set.of(Recipe.RecipeCategory.LUNCH));
+        index.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED, recipeId, recipe,
+                List.of(ingredients)));
+    }
+}
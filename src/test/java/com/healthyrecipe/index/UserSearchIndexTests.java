@@ -0,0 +1,94 @@
+package com.healthyrecipe.index;
+
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.event.UserChangedEvent;
+import com.healthyrecipe.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserSearchIndexTests {
+
+    private UserSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserSearchIndex();
+        put(1L, "annabel", "Ann", "Smith", User.Role.USER);
+        put(2L, "joanna", "Jo", "Anne", User.Role.USER);
+        put(3L, "ann", "Zed", "Young", User.Role.CHEF);
+        put(4L, "bob", "Hannah", "Lee", User.Role.USER);
+        put(5L, "annie", "Al", "Brown", User.Role.ADMIN);
+        put(6L, "kay", "Anna", "Kim", User.Role.USER);
+    }
+
+    @Test
+    void shortQueriesRankExactThenPrefixThenSubstringNewestFirst() {
+        UserSearchIndex.SearchResult result = index.search("ANN", null, null, 0, 10);
+
+        assertEquals(List.of(3L, 1L, 6L, 5L, 2L, 4L), result.getUserIds());
+        assertEquals(List.of(3, 3, 2, 2, 2, 1), result.getRanks());
+        assertEquals(6, result.getTotalHits());
+    }
+
+    @Test
+    void longQueriesAreCheckedAgainstTheNames() {
+        // "annie" and "anne" share trigrams with "anna" without containing it
+        UserSearchIndex.SearchResult result = index.search("anna", null, null, 0, 10);
+
+        assertEquals(List.of(6L, 1L, 4L, 2L), result.getUserIds());
+        assertEquals(List.of(3, 2, 1, 1), result.getRanks());
+    }
+
+    @Test
+    void filtersAndPagesKeepTheOrder() {
+        assertEquals(List.of(5L), index.search("ann", User.Role.ADMIN, null, 0, 10).getUserIds());
+        assertEquals(List.of(6L, 5L), index.search("ann", null, null, 2, 2).getUserIds());
+        assertEquals(List.of(6L, 5L),
+                index.searchAfter("ann", null, null, UserSearchIndex.RANK_EXACT, 1L, 2).getUserIds());
+        assertEquals(List.of(4L),
+                index.searchAfter("ann", null, null, UserSearchIndex.RANK_PREFIX, 2L, 2).getUserIds());
+    }
+
+    @Test
+    void followsRenames() {
+        put(3L, "zed", "Zed", "Young", User.Role.CHEF);
+        put(4L, "bob", "Ann", "Lee", User.Role.USER);
+
+        assertEquals(List.of(4L, 1L, 6L, 5L, 2L), index.search("ann", null, null, 0, 10).getUserIds());
+    }
+
+    @Test
+    void changesCommittedDuringRebuildSurviveTheSwap() {
+        UserRepository userRepository = mock(UserRepository.class);
+        ReflectionTestUtils.setField(index, "userRepository", userRepository);
+        // The rows were read before user 2 was renamed and user 7 signed up
+        List<Object[]> rows = List.of(
+                new Object[] { 1L, "annabel", "Ann", "Smith", User.Role.USER, User.AccountStatus.ACTIVE },
+                new Object[] { 2L, "joanna", "Jo", "Anne", User.Role.USER, User.AccountStatus.ACTIVE });
+        when(userRepository.streamSearchFields()).thenAnswer(invocation -> {
+            put(2L, "zed", "Zed", "Young", User.Role.USER);
+            put(7L, "annika", "Nika", "Ray", User.Role.USER);
+            return rows.stream();
+        });
+        index.rebuild();
+
+        assertEquals(List.of(1L, 7L), index.search("ann", null, null, 0, 10).getUserIds());
+        assertEquals(List.of(2L), index.search("zed", null, null, 0, 10).getUserIds());
+    }
+
+    private void put(Long id, String username, String firstName, String lastName, User.Role role) {
+        User user = new User(username, username + "@example.com", "password", firstName, lastName);
+        user.setId(id);
+        user.setRole(role);
+        user.setStatus(User.AccountStatus.ACTIVE);
+        index.onUserChanged(new UserChangedEvent(user));
+    }
+}
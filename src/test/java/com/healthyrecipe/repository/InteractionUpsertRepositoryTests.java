@@ -0,0 +1,114 @@
+package com.healthyrecipe.repository;
+
+import com.healthyrecipe.entity.Rating;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:upserttestdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class InteractionUpsertRepositoryTests {
+
+    @Autowired
+    private InteractionUpsertRepository upsertRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private FavoriteRepository favoriteRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Recipe recipe;
+
+    @BeforeEach
+    void setUp() {
+        long n = userRepository.count();
+        user = userRepository.save(new User("upsert" + n, "upsert" + n + "@example.com", "password", "Test", "User"));
+        recipe = recipeRepository.save(new Recipe("Upsert recipe " + n, "A test recipe", "Cook", 5, 5, 1, user));
+    }
+
+    @Test
+    void upsertRatingInsertsThenReplacesAndReturnsThePreviousRating() {
+        assertEquals(0, upsertRepository.upsertRating(user.getId(), recipe.getId(), 3, "good"));
+        assertRating(3, "good");
+
+        assertEquals(3, upsertRepository.upsertRating(user.getId(), recipe.getId(), 5, null));
+        assertRating(5, null);
+
+        assertEquals(5, upsertRepository.upsertRating(user.getId(), recipe.getId(), 1, "changed my mind"));
+        assertRating(1, "changed my mind");
+        assertEquals(1, ratingRepository.findAll().stream()
+                .filter(rating -> rating.getRecipe().getId().equals(recipe.getId())).count());
+    }
+
+    @Test
+    void upsertRatingRetriesWhenAConcurrentFirstVoteWinsTheInsert() {
+        // The concurrent vote commits its row just as this MERGE, having found none, inserts
+        JdbcTemplate racing = spy(jdbcTemplate);
+        boolean[] raced = { false };
+        doAnswer(invocation -> {
+            if (!raced[0]) {
+                raced[0] = true;
+                upsertRepository.upsertRating(user.getId(), recipe.getId(), 2, "first");
+                throw new DuplicateKeyException("Unique index or primary key violation");
+            }
+            return invocation.callRealMethod();
+        }).when(racing).queryForList(anyString(), eq(Integer.class), any(Object[].class));
+
+        ReflectionTestUtils.setField(upsertRepository, "jdbcTemplate", racing);
+        try {
+            assertEquals(2, upsertRepository.upsertRating(user.getId(), recipe.getId(), 4, "second"));
+        } finally {
+            ReflectionTestUtils.setField(upsertRepository, "jdbcTemplate", jdbcTemplate);
+        }
+        assertRating(4, "second");
+    }
+
+    @Test
+    void favoritesAreInsertedAndDeletedOnce() {
+        assertTrue(upsertRepository.insertFavorite(user.getId(), recipe.getId()));
+        assertFalse(upsertRepository.insertFavorite(user.getId(), recipe.getId()));
+        assertEquals(1, favoriteRepository.findRecipeIdsByUserIdAndRecipeIdIn(user.getId(),
+                List.of(recipe.getId())).size());
+
+        assertTrue(upsertRepository.deleteFavorite(user.getId(), recipe.getId()));
+        assertFalse(upsertRepository.deleteFavorite(user.getId(), recipe.getId()));
+    }
+
+    private void assertRating(int expected, String comment) {
+        Rating rating = ratingRepository.findByUserAndRecipe(user, recipe).orElseThrow();
+        assertEquals(expected, rating.getRating());
+        assertEquals(comment, rating.getComment());
+    }
+}
@@ -0,0 +1,83 @@
+package com.healthyrecipe.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request JWT cost in AuthTokenFilter. {@code legacy} reproduces the previous
+ * path (derive the key and build a parser, once to validate and again to read the
+ * subject); the others use JwtUtils with its prebuilt parser, with and without the
+ * verified-token cache.
+ *
+ * Not run by the test suite. Run with:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtAuthBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String SECRET = "benchmarkSecretKey123456789012345678901234567890";
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86400000);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheMaxSize", 10000);
+        jwtUtils.init();
+
+        UserPrincipal principal = new UserPrincipal(1L, "benchmark", "benchmark@example.com", "password",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @Benchmark
+    public String legacy() {
+        Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token);
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    @Benchmark
+    public String verifyOnce() {
+        return jwtUtils.parseClaims(token).getSubject();
+    }
+
+    @Benchmark
+    public String verifyCached() {
+        return jwtUtils.verifyJwtToken(token).getSubject();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtAuthBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,53 @@
+package com.healthyrecipe.security;
+
+import com.healthyrecipe.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class UserPrincipalCacheTests {
+
+    private UserPrincipalCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserPrincipalCache();
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        cache.init();
+    }
+
+    @Test
+    void loadsOncePerUsernameUntilInvalidated() {
+        UserPrincipal first = cache.get("jane", this::load);
+        assertSame(first, cache.get("jane", this::load));
+        assertEquals(1, loads.get());
+
+        cache.invalidate("jane");
+        cache.get("jane", this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() {
+        // The role changes and is invalidated while the old principal is being loaded
+        cache.get("jane", username -> {
+            cache.invalidate(username);
+            return load(username);
+        });
+
+        cache.get("jane", this::load);
+        assertEquals(2, loads.get());
+    }
+
+    private UserPrincipal load(String username) {
+        loads.incrementAndGet();
+        return UserPrincipal.create(new User(username, username + "@example.com", "password", "Test", "User"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.healthyrecipe.service;
+
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.event.FavoriteChangedEvent;
+import com.healthyrecipe.event.RecipeChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FavoriteCacheTests {
+
+    private FavoriteCache cache;
+    private final Map<Long, List<Long>> stored = new HashMap<>();
+    private final Map<Long, Integer> loads = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        cache = new FavoriteCache();
+        ReflectionTestUtils.setField(cache, "maxUsers", 100L);
+        cache.init();
+        stored.put(1L, new ArrayList<>(List.of(10L, 11L)));
+        stored.put(2L, new ArrayList<>(List.of(10L)));
+    }
+
+    @Test
+    void loadsOncePerUserUntilTheirFavoritesChange() {
+        assertTrue(cache.getFavorites(1L, this::load).contains(11L));
+        cache.getFavorites(1L, this::load);
+        cache.getFavorites(2L, this::load);
+        assertEquals(1, loads.get(1L));
+
+        stored.get(1L).add(12L);
+        cache.onFavoriteChanged(new FavoriteChangedEvent(1L, 12L, true));
+
+        assertTrue(cache.getFavorites(1L, this::load).contains(12L));
+        cache.getFavorites(2L, this::load);
+        assertEquals(2, loads.get(1L));
+        assertEquals(1, loads.get(2L));
+    }
+
+    @Test
+    void recipeDeletionDropsEveryUser() {
+        cache.getFavorites(1L, this::load);
+        cache.getFavorites(2L, this::load);
+
+        cache.onRecipeChanged(new RecipeChangedEvent(RecipeChangedEvent.ChangeType.UPDATED, 10L, new Recipe(),
+                List.of()));
+        cache.getFavorites(1L, this::load);
+        assertEquals(1, loads.get(1L));
+
+        stored.values().forEach(ids -> ids.remove(10L));
+        cache.onRecipeChanged(RecipeChangedEvent.deleted(10L));
+
+        assertFalse(cache.getFavorites(1L, this::load).contains(10L));
+        assertFalse(cache.getFavorites(2L, this::load).contains(10L));
+        assertEquals(2, loads.get(1L));
+        assertEquals(2, loads.get(2L));
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() {
+        // The user favorites a recipe while their previous favorites are being read
+        Roaring64Bitmap loaded = cache.getFavorites(1L, userId -> {
+            List<Long> before = load(userId);
+            stored.get(userId).add(12L);
+            cache.onFavoriteChanged(new FavoriteChangedEvent(userId, 12L, true));
+            return before;
+        });
+        assertFalse(loaded.contains(12L));
+
+        assertTrue(cache.getFavorites(1L, this::load).contains(12L));
+        assertEquals(2, loads.get(1L));
+    }
+
+    private List<Long> load(Long userId) {
+        loads.merge(userId, 1, Integer::sum);
+        return new ArrayList<>(stored.get(userId));
+    }
+}
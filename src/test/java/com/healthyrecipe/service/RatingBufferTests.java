@@ -0,0 +1,150 @@
+package com.healthyrecipe.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RatingBufferTests {
+
+    private RatingBuffer buffer;
+    private RatingService ratingService;
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new RatingBuffer();
+        ratingService = mock(RatingService.class);
+        authService = mock(AuthService.class);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "maxPending", 10);
+        ReflectionTestUtils.setField(buffer, "ratingService", ratingService);
+        ReflectionTestUtils.setField(buffer, "recipeService", mock(RecipeService.class));
+        ReflectionTestUtils.setField(buffer, "authService", authService);
+        when(ratingService.applyBufferedRatings(anyLong(), anyMap()))
+                .thenAnswer(invocation -> invocation.<Map<?, ?>>getArgument(1).size());
+    }
+
+    @Test
+    void flushWritesTheLatestVotesGroupedByRecipe() {
+        submitAs(1L, 10L, 2);
+        submitAs(1L, 10L, 5);
+        submitAs(2L, 10L, 4);
+        submitAs(1L, 20L, 3);
+
+        buffer.flush();
+
+        Map<Long, Map<Long, Integer>> written = writtenVotes(2);
+        assertEquals(Map.of(10L, Map.of(1L, 5, 2L, 4), 20L, Map.of(1L, 3)), written);
+
+        buffer.flush();
+        verify(ratingService, times(2)).applyBufferedRatings(anyLong(), anyMap());
+    }
+
+    @Test
+    void retriesAFailedRecipeVoteByVote() {
+        when(ratingService.applyBufferedRatings(eq(10L), argThat(votes -> votes != null && votes.size() > 1)))
+                .thenThrow(new IllegalStateException("batch failed"));
+        when(ratingService.applyBufferedRatings(eq(10L), argThat(votes -> onlyVote(votes, 2L, 4))))
+                .thenThrow(new IllegalStateException("bad vote"));
+        submitAs(1L, 10L, 5);
+        submitAs(2L, 10L, 4);
+        submitAs(3L, 10L, 3);
+
+        buffer.flush();
+
+        // The group, then each vote alone; only user 2's vote is dropped
+        verify(ratingService, times(4)).applyBufferedRatings(eq(10L), anyMap());
+        verify(ratingService).applyBufferedRatings(eq(10L), argThat(votes -> onlyVote(votes, 1L, 5)));
+        verify(ratingService).applyBufferedRatings(eq(10L), argThat(votes -> onlyVote(votes, 3L, 3)));
+    }
+
+    @Test
+    void refusesVotesWhenFullOrDisabled() {
+        ReflectionTestUtils.setField(buffer, "maxPending", 1);
+        assertTrue(submitAs(1L, 10L, 5));
+        // A newer vote for a held pair replaces it even when full
+        assertTrue(submitAs(1L, 10L, 4));
+        assertFalse(submitAs(2L, 10L, 4));
+
+        ReflectionTestUtils.setField(buffer, "enabled", false);
+        assertFalse(submitAs(3L, 20L, 4));
+    }
+
+    @Test
+    void shutdownWritesHeldVotes() {
+        submitAs(1L, 10L, 5);
+
+        buffer.flushOnShutdown();
+
+        assertEquals(Map.of(10L, Map.of(1L, 5)), writtenVotes(1));
+    }
+
+    @Test
+    void synchronousWritesDropTheHeldVote() {
+        submitAs(1L, 10L, 2);
+        when(ratingService.createOrUpdateRating(10L, 5, null)).thenReturn(3);
+
+        assertEquals(3, buffer.rateNow(10L, 5, null));
+        buffer.flush();
+
+        verify(ratingService, never()).applyBufferedRatings(anyLong(), anyMap());
+    }
+
+    @Test
+    void ownReadsShowVotesNotWrittenYet() {
+        when(ratingService.getUserRatingsForRecipes(any()))
+                .thenAnswer(invocation -> new HashMap<>(Map.of(10L, 2, 30L, 1)));
+        submitAs(1L, 10L, 5);
+        submitAs(1L, 20L, 4);
+        submitAs(2L, 30L, 3);
+
+        when(authService.getCurrentUserId()).thenReturn(1L);
+        assertEquals(Map.of(10L, 5, 20L, 4, 30L, 1), buffer.getUserRatingsForRecipes(Set.of(10L, 20L, 30L)));
+    }
+
+    private boolean submitAs(Long userId, Long recipeId, int rating) {
+        when(authService.getCurrentUserId()).thenReturn(userId);
+        return buffer.submit(recipeId, rating, null);
+    }
+
+    private static boolean onlyVote(Map<Long, RatingBuffer.Vote> votes, Long userId, int rating) {
+        return votes != null && votes.size() == 1 && votes.containsKey(userId)
+                && votes.get(userId).getRating() == rating;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Map<Long, Integer>> writtenVotes(int calls) {
+        ArgumentCaptor<Long> recipeIds = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Map<Long, RatingBuffer.Vote>> votes = ArgumentCaptor.forClass(Map.class);
+        verify(ratingService, times(calls)).applyBufferedRatings(recipeIds.capture(), votes.capture());
+
+        Map<Long, Map<Long, Integer>> written = new HashMap<>();
+        List<Long> ids = recipeIds.getAllValues();
+        for (int i = 0; i < ids.size(); i++) {
+            Map<Long, Integer> ratings = new HashMap<>();
+            votes.getAllValues().get(i).forEach((userId, vote) -> ratings.put(userId, vote.getRating()));
+            written.put(ids.get(i), ratings);
+        }
+        return written;
+    }
+}
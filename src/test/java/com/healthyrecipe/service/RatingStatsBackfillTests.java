@@ -0,0 +1,110 @@
+package com.healthyrecipe.service;
+
+import com.healthyrecipe.entity.Rating;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.repository.InteractionUpsertRepository;
+import com.healthyrecipe.repository.RatingRepository;
+import com.healthyrecipe.repository.RecipeRatingStatsRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import com.healthyrecipe.repository.UserRepository;
+import com.healthyrecipe.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Rating aggregate rows missing for recipes inserted outside RecipeService are created
+ * from the ratings table, at startup or on the recipe's next rating.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:ratingstatstestdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.rating-buffer.enabled=false"
+})
+class RatingStatsBackfillTests {
+
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private InteractionUpsertRepository interactionUpsertRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private RecipeRatingStatsRepository ratingStatsRepository;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void backfillsRecipesWithoutAggregates() {
+        User author = userRepository.save(new User("statsauthor", "statsauthor@example.com", "password", "Test", "Author"));
+        User rater = userRepository.save(new User("statsrater", "statsrater@example.com", "password", "Test", "Rater"));
+        Recipe rated = saveRecipe("Rated before aggregates", author);
+        Recipe unrated = saveRecipe("Never rated", author);
+        ratingRepository.save(new Rating(5, null, author, rated));
+        ratingRepository.save(new Rating(2, null, rater, rated));
+
+        ratingService.backfillRatingStats();
+
+        assertStats(rated.getId(), 7, 2, 0, 1, 0, 0, 1);
+        assertStats(unrated.getId(), 0, 0, 0, 0, 0, 0, 0);
+        assertFalse(interactionUpsertRepository.insertRatingStats(rated.getId()));
+    }
+
+    @Test
+    void createsMissingAggregateOnFirstRating() {
+        User author = userRepository.save(new User("firstauthor", "firstauthor@example.com", "password", "Test", "Author"));
+        User rater = userRepository.save(new User("firstrater", "firstrater@example.com", "password", "Test", "Rater"));
+        Recipe recipe = saveRecipe("Inserted behind the service", author);
+        ratingRepository.save(new Rating(3, null, author, recipe));
+
+        login(rater);
+        ratingService.createOrUpdateRating(recipe.getId(), 4, null);
+        assertStats(recipe.getId(), 7, 2, 0, 0, 1, 1, 0);
+
+        ratingService.createOrUpdateRating(recipe.getId(), 5, null);
+        assertStats(recipe.getId(), 8, 2, 0, 0, 1, 0, 1);
+    }
+
+    private Recipe saveRecipe(String title, User author) {
+        Recipe recipe = new Recipe(title, "A test recipe", "Cook", 5, 5, 1, author);
+        recipe.setStatus(Recipe.RecipeStatus.APPROVED);
+        return recipeRepository.save(recipe);
+    }
+
+    private void assertStats(Long recipeId, long sum, int count, int... starCounts) {
+        RecipeRatingStats stats = ratingStatsRepository.findById(recipeId).orElseThrow();
+        assertEquals(sum, stats.getRatingSum());
+        assertEquals(count, stats.getRatingCount());
+        for (int star = 1; star <= 5; star++) {
+            assertEquals(starCounts[star - 1], stats.getStarCount(star), "count of " + star + " stars");
+        }
+    }
+
+    private static void login(User user) {
+        UserPrincipal principal = UserPrincipal.create(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
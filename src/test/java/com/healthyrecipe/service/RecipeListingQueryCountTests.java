@@ -0,0 +1,198 @@
+package com.healthyrecipe.service;
+
+import com.healthyrecipe.dto.CursorPage;
+import com.healthyrecipe.dto.recipe.RecipeQuery;
+import com.healthyrecipe.dto.recipe.RecipeQueryResult;
+import com.healthyrecipe.dto.recipe.RecipeSummary;
+import com.healthyrecipe.entity.Recipe;
+import com.healthyrecipe.entity.RecipeRatingStats;
+import com.healthyrecipe.entity.User;
+import com.healthyrecipe.index.RecipeFilterIndex;
+import com.healthyrecipe.index.RecipeLeaderboard;
+import com.healthyrecipe.index.RecipeSearchIndex;
+import com.healthyrecipe.repository.RecipeRatingStatsRepository;
+import com.healthyrecipe.repository.RecipeRepository;
+import com.healthyrecipe.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Listing endpoints must not issue per-row selects for a recipe's author or its
+ * categories and dietary tags: the number of SQL statements per page is fixed.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:listingtestdb",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class RecipeListingQueryCountTests {
+
+    private static final int RECIPE_COUNT = 30;
+
+    @Autowired
+    private RecipeService recipeService;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private RecipeRatingStatsRepository ratingStatsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RecipeSearchIndex recipeSearchIndex;
+
+    @Autowired
+    private RecipeLeaderboard recipeLeaderboard;
+
+    @Autowired
+    private RecipeFilterIndex recipeFilterIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeAll
+    void seedRecipes() {
+        for (int i = 0; i < 3; i++) {
+            User author = userRepository.save(new User("author" + i, "author" + i + "@example.com",
+                    "password", "Test", "Author"));
+
+            for (int j = 0; j < RECIPE_COUNT / 3; j++) {
+                Recipe recipe = new Recipe("Quinoa bowl " + i + "-" + j, "A listing test recipe",
+                        "Cook and serve", 10, 15, 2, author);
+                recipe.setStatus(Recipe.RecipeStatus.APPROVED);
+                recipe.setDifficultyLevel(Recipe.DifficultyLevel.EASY);
+                recipe.setCategories(Set.of(Recipe.RecipeCategory.LUNCH, Recipe.RecipeCategory.DINNER));
+                recipe.setDietaryTags(Set.of("vegan", "gluten-free", "high-protein"));
+                recipe.getNutritionInfo().setCalories(400);
+                recipe = recipeRepository.save(recipe);
+                ratingStatsRepository.save(new RecipeRatingStats(recipe.getId()));
+            }
+        }
+
+        recipeSearchIndex.rebuild();
+        recipeLeaderboard.rebuild();
+        recipeFilterIndex.rebuild();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void offsetListingsRunFixedNumberOfStatements() {
+        assertConstantStatements(size -> recipeService.getAllApprovedRecipes(PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getLatestRecipes(PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getRecipesByCategories(
+                List.of(Recipe.RecipeCategory.LUNCH, Recipe.RecipeCategory.DINNER), PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getRecipesByDietaryTags(
+                List.of("vegan", "gluten-free"), PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getRecipesByCalorieRange(300, 500, PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getRecipesByMaxTime(30, PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getRecipesByDifficulty(
+                Recipe.DifficultyLevel.EASY, PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.searchRecipes("quinoa", PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getTopRatedRecipes(PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.getMostFavoritedRecipes(PageRequest.of(0, size)));
+        assertConstantStatements(size -> recipeService.queryRecipes(new RecipeQuery(
+                List.of(Recipe.RecipeCategory.DINNER), List.of("vegan"), null, 500, 30, null),
+                PageRequest.of(0, size)).getRecipes());
+    }
+
+    @Test
+    void cursorListingsRunFixedNumberOfStatements() {
+        assertConstantStatements(size -> recipeService.getLatestRecipes("", size).getContent());
+        assertConstantStatements(size -> recipeService.getRecipesByDietaryTags(
+                List.of("vegan", "gluten-free"), "", size).getContent());
+        assertConstantStatements(size -> recipeService.getTopRatedRecipes("", size).getContent());
+    }
+
+    @Test
+    void multiValuedFiltersDoNotDuplicateRecipes() {
+        Page<RecipeSummary> byTags = recipeService.getRecipesByDietaryTags(
+                List.of("vegan", "gluten-free", "high-protein"), PageRequest.of(0, 100));
+        assertEquals(RECIPE_COUNT, byTags.getTotalElements());
+        assertEquals(RECIPE_COUNT, distinctIds(byTags.getContent()));
+
+        Page<RecipeSummary> byCategories = recipeService.getRecipesByCategories(
+                List.of(Recipe.RecipeCategory.LUNCH, Recipe.RecipeCategory.DINNER), PageRequest.of(0, 100));
+        assertEquals(RECIPE_COUNT, byCategories.getTotalElements());
+        assertEquals(RECIPE_COUNT, distinctIds(byCategories.getContent()));
+
+        CursorPage<RecipeSummary> cursorPage = recipeService.getRecipesByDietaryTags(
+                List.of("vegan", "gluten-free"), "", 100);
+        assertEquals(RECIPE_COUNT, distinctIds(cursorPage.getContent()));
+    }
+
+    @Test
+    void combinedQueryAppliesAllFiltersAndCountsFacets() {
+        RecipeQueryResult result = recipeService.queryRecipes(new RecipeQuery(
+                List.of(Recipe.RecipeCategory.LUNCH), List.of("vegan", "gluten-free"), 300, 500, 30,
+                List.of(Recipe.DifficultyLevel.EASY)), PageRequest.of(0, 100));
+        assertEquals(RECIPE_COUNT, result.getRecipes().getTotalElements());
+        assertEquals(RECIPE_COUNT, distinctIds(result.getRecipes().getContent()));
+        assertEquals(RECIPE_COUNT, result.getCategories().get(Recipe.RecipeCategory.DINNER));
+        assertEquals(0, result.getCategories().get(Recipe.RecipeCategory.BREAKFAST));
+        assertEquals(RECIPE_COUNT, result.getDietaryTags().get("high-protein"));
+        assertEquals(RECIPE_COUNT, result.getDifficulties().get(Recipe.DifficultyLevel.EASY));
+
+        RecipeQueryResult hard = recipeService.queryRecipes(new RecipeQuery(
+                null, null, null, null, null, List.of(Recipe.DifficultyLevel.HARD)), PageRequest.of(0, 10));
+        assertEquals(0, hard.getRecipes().getTotalElements());
+        assertEquals(RECIPE_COUNT, hard.getDifficulties().get(Recipe.DifficultyLevel.EASY));
+        assertTrue(hard.getDietaryTags().isEmpty());
+
+        RecipeQueryResult allTags = recipeService.queryRecipes(new RecipeQuery(
+                null, List.of("vegan", "keto"), null, null, null, null), PageRequest.of(0, 10));
+        assertEquals(0, allTags.getRecipes().getTotalElements());
+    }
+
+    @Test
+    void summariesCarryCollectionsAndAuthor() {
+        RecipeSummary summary = recipeService.getLatestRecipes(PageRequest.of(0, 1)).getContent().get(0);
+        assertEquals(Set.of(Recipe.RecipeCategory.LUNCH, Recipe.RecipeCategory.DINNER), summary.getCategories());
+        assertEquals(Set.of("vegan", "gluten-free", "high-protein"), summary.getDietaryTags());
+        assertTrue(summary.getAuthorUsername().startsWith("author"));
+        assertEquals(25, summary.getTotalTime());
+    }
+
+    private void assertConstantStatements(IntFunction<Iterable<?>> listing) {
+        long small = countStatements(listing, 5);
+        long large = countStatements(listing, 25);
+        assertEquals(small, large, "statement count should not grow with page size");
+    }
+
+    private long countStatements(IntFunction<Iterable<?>> listing, int size) {
+        statistics.clear();
+        int rows = 0;
+        for (Object ignored : listing.apply(size)) {
+            rows++;
+        }
+        assertEquals(size, rows);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static long distinctIds(List<RecipeSummary> summaries) {
+        return summaries.stream().map(RecipeSummary::getId).collect(Collectors.toSet()).size();
+    }
+}